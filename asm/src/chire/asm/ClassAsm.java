@@ -7,6 +7,7 @@ import chire.asm.util.Format;
 import org.objectweb.asm.*;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -17,10 +18,25 @@ public class ClassAsm {
 
     private final Map<String, Integer> varsKey = new LinkedHashMap<>();
 
+    // 基本类型的局部变量，其余局部变量均为Object
+    private final Map<String, Type> varsType = new HashMap<>();
+
+    // 下一个可用的局部变量槽位，long与double占两个槽位
+    private int nextLocal = 0;
+
+    // 当前方法的返回类型
+    private Type returnType = Type.VOID_TYPE;
+
     protected Map<String, ClassBuilder.ClassVarBuild> classVarBuilds = new LinkedHashMap<>();
 
     protected Map<String, ClassBuilder.StaticBuild> staticVarBuilds = new LinkedHashMap<>();
 
+    // 已经声明的静态变量 -> 类型，之后在方法中也能声明新的静态变量
+    private final Map<String, String> staticVars = new HashMap<>();
+
+    // 所在循环的结束位置，最内层的循环在最后
+    private final List<Label> loopEnds = new ArrayList<>();
+
     public final String className;
 
     public final String superClass;
@@ -33,6 +49,34 @@ public class ClassAsm {
 
     private final List<String> levelStack = new ArrayList<>();
 
+    // 提升到常量类中的不可变值 -> 字段名，只记录在最外层的类中
+    private final Map<Object, String> constants = new LinkedHashMap<>();
+
+    // 与constants的顺序一致，在常量类的静态初始化中生成值
+    private final List<VarVisitor> constantInits = new ArrayList<>();
+
+    // 帧类中保存暂停位置的实例变量，python的标识符中不会出现$
+    public static final String FRAME_STATE = "$state";
+
+    // 不为null时局部变量保存为帧类的实例变量，见defineFrame
+    private ClassAsm frame = null;
+
+    // 帧类中已经声明的局部变量及其类型
+    private final Map<String, Type> frameVars = new HashMap<>();
+
+    // 每个暂停点之后继续执行的位置，下标为状态，0为方法开始处
+    private final List<Label> resumes = new ArrayList<>();
+
+    private Label frameEnd;
+
+    private Label frameDispatch;
+
+    // 类关闭前才生成的方法，生成时还可能加入新的方法
+    private final List<Consumer<ClassAsm>> laterMethods = new ArrayList<>();
+
+    // 已经分配的隐藏变量名的个数，按生成顺序编号，同样的源码总是得到同样的名字
+    private int hiddenNames = 0;
+
     public ClassAsm(String className, String superClass) {
         this(className, superClass, null);
     }
@@ -93,6 +137,7 @@ public class ClassAsm {
 
     public void defineFunction(int access, String name, Args args, Class<?> returnType) {
         varsKey.clear();
+        varsType.clear();
         mv = cw.visitMethod(access, name, Format.formatArgs(args, returnType), null, null);
 
         //TODO 由于varsKey的局限性，在此需要判断是否为内部方法，否则会导致 0号变量被错误识别。(占位就行)
@@ -104,14 +149,50 @@ public class ClassAsm {
             varsKey.put(var, varsKey.size());
         }
 
+        nextLocal = varsKey.size();
+        this.returnType = returnType == null ? Type.VOID_TYPE : Type.getType(returnType);
+
+        mv.visitCode();
+    }
+
+    /**
+     * 以方法描述符定义方法，基本类型的参数与{@link #defineLocalVar(String, Type)}声明的变量一样读写。
+     */
+    public void defineFunction(int access, String name, String descriptor, String[] argNames) {
+        varsKey.clear();
+        varsType.clear();
+        mv = cw.visitMethod(access, name, descriptor, null, null);
+
+        nextLocal = 0;
+        if ((access & ACC_STATIC) == 0) {
+            varsKey.put("this", 0);
+            nextLocal = 1;
+        }
+
+        Type[] argTypes = Type.getArgumentTypes(descriptor);
+        for (int i = 0; i < argTypes.length; i++) {
+            varsKey.put(argNames[i], nextLocal);
+            if (argTypes[i].getSort() != Type.OBJECT && argTypes[i].getSort() != Type.ARRAY) varsType.put(argNames[i], argTypes[i]);
+
+            nextLocal += argTypes[i].getSize();
+        }
+
+        this.returnType = Type.getReturnType(descriptor);
+
         mv.visitCode();
     }
 
+    public Type getReturnType() {
+        return returnType;
+    }
+
     public void defineClassVar(int access, String name, Class<?> returnType) {
         defineClassVar(access, name, Format.formatPack(returnType));
     }
 
     public void defineClassVar(int access, String name, String returnType) {
+        if ((access & ACC_STATIC) != 0) staticVars.put(name, returnType);
+
         FieldVisitor fv = cw.visitField(access, name, returnType+";", null, null);
         fv.visitEnd();
     }
@@ -174,13 +255,40 @@ public class ClassAsm {
     }
 
     public void invokeMethod(int opcode, String owner, String name, String type){
-        mv.visitMethodInsn(opcode, owner, name, type, false);
+        mv.visitMethodInsn(opcode, owner, name, type, opcode == INVOKEINTERFACE);
     }
 
     public void invokeMethod(int opcode, Class<?> owner, String name, String type){
         invokeMethod(opcode, Format.formatPack(owner, false), name, type);
     }
 
+    /**
+     * @param bootstrapArgs 引导方法的静态参数，支持String、Integer与Type
+     */
+    public void invokeDynamic(String name, String type, String bootstrapOwner, String bootstrapName, Object... bootstrapArgs) {
+        StringBuilder bootstrapType = new StringBuilder("(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;");
+
+        for (Object arg : bootstrapArgs) {
+            if (arg instanceof String) {
+                bootstrapType.append("Ljava/lang/String;");
+            } else if (arg instanceof Integer) {
+                bootstrapType.append("I");
+            } else if (arg instanceof Type) {
+                bootstrapType.append("Ljava/lang/Class;");
+            } else {
+                throw new RuntimeException("no key");
+            }
+        }
+
+        bootstrapType.append(")Ljava/lang/invoke/CallSite;");
+
+        mv.visitInvokeDynamicInsn(name, type, new Handle(H_INVOKESTATIC, bootstrapOwner, bootstrapName, bootstrapType.toString(), false), bootstrapArgs);
+    }
+
+    public void invokeDynamic(String name, String type, Class<?> bootstrapOwner, String bootstrapName, Object... bootstrapArgs) {
+        invokeDynamic(name, type, Format.formatPack(bootstrapOwner, false), bootstrapName, bootstrapArgs);
+    }
+
     public void newClass(Class<?> name) {
         newClass(Format.formatStrType(name));
     }
@@ -195,22 +303,259 @@ public class ClassAsm {
     }
 
     public void varInsn(int opcode, String name) {
-        if (varsKey.containsKey(name)) {
+        if (frame != null && !varsKey.containsKey(name)) {
+            if (opcode == ALOAD) {
+                frameLoad(name, Type.getType(Object.class));
+            } else if (opcode == ASTORE) {
+                frameStore(name, Type.getType(Object.class));
+            } else {
+                throw new RuntimeException("no key");
+            }
+        } else if (varsKey.containsKey(name)) {
             mv.visitVarInsn(opcode, varsKey.get(name));
         } else {
-            varsKey.put(name, varsKey.size());
-            mv.visitVarInsn(opcode, varsKey.size()-1);
+            varsKey.put(name, nextLocal);
+            mv.visitVarInsn(opcode, nextLocal++);
         }
     }
 
+    /**基本类型的局部变量在读取时装箱*/
     public void invokeLocalVar(String name) {
-        if (varsKey.containsKey(name)) {
+        if (varsType.containsKey(name)) {
+            Type type = varsType.get(name);
+
+            loadLocalVar(name);
+            boxInsn(type);
+        } else if (varsKey.containsKey(name)) {
             mv.visitVarInsn(ALOAD, varsKey.get(name));
+        } else if (frameVars.containsKey(name)) {
+            frameLoad(name, frameVars.get(name));
         } else {
             throw new RuntimeException("no key");
         }
     }
 
+    /**
+     * 声明基本类型的局部变量并初始化为0，之后使用{@link #loadLocalVar(String)}与{@link #storeLocalVar(String)}读写。
+     */
+    public void defineLocalVar(String name, Type type) {
+        varsType.put(name, type);
+
+        if (frame != null) {
+            frameVar(name, type);
+        } else {
+            varsKey.put(name, nextLocal);
+            nextLocal += type.getSize();
+        }
+
+        switch (type.getSort()) {
+            case Type.LONG:
+                mv.visitInsn(LCONST_0);
+                break;
+            case Type.DOUBLE:
+                mv.visitInsn(DCONST_0);
+                break;
+            case Type.FLOAT:
+                mv.visitInsn(FCONST_0);
+                break;
+            default:
+                mv.visitInsn(ICONST_0);
+        }
+
+        storeLocalVar(name);
+    }
+
+    /**
+     * 变量改为使用新的局部变量，原来的变量不再使用；在第一次写入之前不能读取
+     * @param type 基本类型，Object类型时为null
+     */
+    public void redefineLocalVar(String name, Type type) {
+        if (frame != null) throw new RuntimeException("no key");
+
+        varsKey.put(name, nextLocal);
+        if (type == null) {
+            varsType.remove(name);
+            nextLocal++;
+        } else {
+            varsType.put(name, type);
+            nextLocal += type.getSize();
+        }
+    }
+
+    /**将栈顶的基本类型装箱为对应的包装类*/
+    public void boxInsn(Type type) {
+        String owner;
+
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                owner = "java/lang/Boolean";
+                break;
+            case Type.INT:
+                owner = "java/lang/Integer";
+                break;
+            case Type.LONG:
+                owner = "java/lang/Long";
+                break;
+            case Type.FLOAT:
+                owner = "java/lang/Float";
+                break;
+            case Type.DOUBLE:
+                owner = "java/lang/Double";
+                break;
+            default:
+                throw new RuntimeException("no key: " + type);
+        }
+
+        mv.visitMethodInsn(INVOKESTATIC, owner, "valueOf", "(" + type.getDescriptor() + ")L" + owner + ";", false);
+    }
+
+    /**@return 基本类型局部变量的类型，Object类型或不存在时为null*/
+    public boolean hasLocalVar(String name) {
+        return varsKey.containsKey(name) || frameVars.containsKey(name);
+    }
+
+    public Type getLocalType(String name) {
+        return varsType.get(name);
+    }
+
+    /**@return 未声明时为null*/
+    public String getStaticVarType(String name) {
+        return staticVars.get(name);
+    }
+
+    public void loadLocalVar(String name) {
+        Type type = varsType.get(name);
+        if (type == null) throw new RuntimeException("no key");
+
+        if (frame != null && !varsKey.containsKey(name)) {
+            frameLoad(name, type);
+        } else {
+            mv.visitVarInsn(type.getOpcode(ILOAD), varsKey.get(name));
+        }
+    }
+
+    public void storeLocalVar(String name) {
+        Type type = varsType.get(name);
+        if (type == null) throw new RuntimeException("no key");
+
+        if (frame != null && !varsKey.containsKey(name)) {
+            frameStore(name, type);
+        } else {
+            mv.visitVarInsn(type.getOpcode(ISTORE), varsKey.get(name));
+        }
+    }
+
+    /**
+     * 之后的局部变量都保存为帧类的实例变量，当前方法的0号变量为帧类的实例。
+     * 方法返回后局部变量仍然保留，{@link #yieldInsn()}返回后再次调用方法时从暂停处继续执行，
+     * 方法的代码结束后调用{@link #closeFrame(VarVisitor)}。
+     * @param vars 已经保存在帧中的变量，例如由调用者写入的参数
+     */
+    public void defineFrame(ClassAsm frame, String[] vars) {
+        this.frame = frame;
+        frameVars.clear();
+        resumes.clear();
+        frameEnd = new Label();
+        frameDispatch = new Label();
+
+        frame.cw.visitField(ACC_PUBLIC, FRAME_STATE, "I", null, null).visitEnd();
+        for (String var : vars) {
+            frameVar(var, Type.getType(Object.class));
+        }
+
+        // 暂停点的数量在代码结束后才知道，按状态跳转的tableswitch放在方法末尾
+        mv.visitJumpInsn(GOTO, frameDispatch);
+
+        Label start = new Label();
+        mv.visitLabel(start);
+        resumes.add(start);
+    }
+
+    /**
+     * @return 编译器使用的不会重复的变量名，python的标识符中不会出现$
+     */
+    public String hiddenName(String prefix) {
+        return prefix + "$" + hiddenNames++;
+    }
+
+    /**
+     * 一个方法生成的过程中不能定义另一个方法，需要的方法在类关闭前由method生成
+     */
+    public void defineLater(Consumer<ClassAsm> method) {
+        laterMethods.add(method);
+    }
+
+    public boolean hasFrame() {
+        return frame != null;
+    }
+
+    /**记录暂停位置并返回栈顶的值，再次调用时从这里继续执行，栈上不能有其他值*/
+    public void yieldInsn() {
+        Label resume = new Label();
+
+        mv.visitVarInsn(ALOAD, 0);
+        intInsn(resumes.size());
+        mv.visitFieldInsn(PUTFIELD, frame.className, FRAME_STATE, "I");
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(resume);
+        resumes.add(resume);
+    }
+
+    /**跳转到方法的结束处*/
+    public void frameEndInsn() {
+        mv.visitJumpInsn(GOTO, frameEnd);
+    }
+
+    /**
+     * 结束后状态为-1，之后的调用都直接返回结束的值
+     * @param end 方法结束时的返回值，栈顶留下Object
+     */
+    public void closeFrame(VarVisitor end) {
+        mv.visitLabel(frameEnd);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_M1);
+        mv.visitFieldInsn(PUTFIELD, frame.className, FRAME_STATE, "I");
+        end.init(this);
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(frameDispatch);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, frame.className, FRAME_STATE, "I");
+        mv.visitTableSwitchInsn(0, resumes.size() - 1, frameEnd, resumes.toArray(new Label[0]));
+
+        frame = null;
+        frameVars.clear();
+    }
+
+    private void frameVar(String name, Type type) {
+        if (frameVars.containsKey(name)) return;
+
+        frameVars.put(name, type);
+        frame.cw.visitField(ACC_PUBLIC, name, type.getDescriptor(), null, null).visitEnd();
+    }
+
+    private void frameLoad(String name, Type type) {
+        frameVar(name, type);
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, frame.className, name, frameVars.get(name).getDescriptor());
+    }
+
+    /**栈顶的值写入帧，long与double占两个槽位，需要DUP_X2把帧放到值的下面*/
+    private void frameStore(String name, Type type) {
+        frameVar(name, type);
+
+        mv.visitVarInsn(ALOAD, 0);
+        if (type.getSize() == 2) {
+            mv.visitInsn(DUP_X2);
+            mv.visitInsn(POP);
+        } else {
+            mv.visitInsn(SWAP);
+        }
+        mv.visitFieldInsn(PUTFIELD, frame.className, name, frameVars.get(name).getDescriptor());
+    }
+
     public void invokeThis() {
         mv.visitVarInsn(ALOAD, 0);
     }
@@ -227,6 +572,10 @@ public class ClassAsm {
         mv.visitIntInsn(opcode, type);
     }
 
+    public void mVisitLdcInsn(Object value) {
+        mv.visitLdcInsn(value);
+    }
+
     public void ldcInsn(Object obj){
         //Java 8不支持var，每个类型都需要特定类型字节码支持。
         if (obj instanceof Boolean) {
@@ -236,8 +585,11 @@ public class ClassAsm {
             mv.visitLdcInsn(obj);
             mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;", false);
         } else if (obj instanceof Integer) {
-            mv.visitIntInsn(SIPUSH, (Integer) obj);
+            intInsn((Integer) obj);
             mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+        } else if (obj instanceof Long) {
+            mv.visitLdcInsn(obj);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
         } else if (obj instanceof Double) {
             mv.visitLdcInsn(obj);
             mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", false);
@@ -247,6 +599,42 @@ public class ClassAsm {
             mv.visitLdcInsn(obj);
         }
     }
+    /**按数值范围选择最短的int常量指令*/
+    public void intInsn(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * 读取只在常量类的静态初始化中创建一次的不可变值，相等的key共用一个字段。
+     * 常量类为最外层的类名加上$$Const，在最外层的类关闭时生成
+     * @param init 在常量类的静态初始化中生成值，栈顶留下Object
+     */
+    public void constantInsn(Object key, VarVisitor init) {
+        ClassAsm root = this;
+        while (root.outer != null) root = root.outer;
+
+        String name = root.constants.get(key);
+        if (name == null) {
+            name = "c" + root.constants.size();
+            root.constants.put(key, name);
+            root.constantInits.add(init);
+        }
+
+        mv.visitFieldInsn(GETSTATIC, root.getConstantClass(), name, "Ljava/lang/Object;");
+    }
+
+    public String getConstantClass() {
+        return className + "$$Const";
+    }
+
     public void ldcInsns(String type, Object... objs){
         int ICONST_NUM = ICONST_0 + objs.length;
 
@@ -265,6 +653,21 @@ public class ClassAsm {
         mv.visitJumpInsn(opcod, label);
     }
 
+    public void enterLoop(Label end) {
+        loopEnds.add(end);
+    }
+
+    public void exitLoop() {
+        loopEnds.remove(loopEnds.size() - 1);
+    }
+
+    /**跳转到最内层循环的结束位置*/
+    public void breakInsn() {
+        if (loopEnds.isEmpty()) throw new RuntimeException("'break' outside loop");
+
+        mv.visitJumpInsn(GOTO, loopEnds.get(loopEnds.size() - 1));
+    }
+
     public void mLabel(Label label) {
         mv.visitLabel(label);
     }
@@ -281,6 +684,10 @@ public class ClassAsm {
         }
     }
 
+    public void toReturn(Type type) {
+        mv.visitInsn(type.getOpcode(IRETURN));
+    }
+
     public void endReturn(boolean returnValue) {
         toReturn(returnValue);
         end();
@@ -296,6 +703,11 @@ public class ClassAsm {
     }
 
     public void closeClass(){
+        for (int i = 0; i < laterMethods.size(); i++) {
+            laterMethods.get(i).accept(this);
+        }
+        laterMethods.clear();
+
         if (!initialize) {
             defineConstruct(ACC_PUBLIC, new Args(), this.superClass, "()V");
             endReturn();
@@ -303,9 +715,32 @@ public class ClassAsm {
             initialize = true;
         }
 
+        if (outer == null) closeConstants();
+
         cw.visitEnd();
     }
 
+    private void closeConstants() {
+        if (constants.isEmpty()) return;
+
+        ClassAsm holder = new ClassAsm(getConstantClass(), "java/lang/Object");
+        holder.mv = holder.cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        holder.mv.visitCode();
+
+        int i = 0;
+        for (String name : constants.values()) {
+            holder.cw.visitField(ACC_STATIC | ACC_FINAL, name, "Ljava/lang/Object;", null, null).visitEnd();
+
+            constantInits.get(i++).init(holder);
+            holder.mv.visitFieldInsn(PUTSTATIC, holder.className, name, "Ljava/lang/Object;");
+        }
+
+        holder.endReturn();
+        holder.cw.visitEnd();
+
+        innerClasses.put(holder.className, holder.cw.toByteArray());
+    }
+
     public ClassAsm closeInnerClass() {
         outer.innerClasses.putAll(getByte());
 
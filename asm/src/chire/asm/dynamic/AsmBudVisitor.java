@@ -3,6 +3,7 @@ package chire.asm.dynamic;
 import chire.asm.ClassAsm;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.CallBuilder;
+import org.objectweb.asm.Label;
 
 public interface AsmBudVisitor<T extends BlockBuilder<T>> {
     CallBuilder<T> visit(CallBuilder.ParameterBuilder<T> builder);
@@ -26,4 +27,9 @@ public interface AsmBudVisitor<T extends BlockBuilder<T>> {
     interface SetBlockBuilder<T extends BlockBuilder<T>> {
         BlockBuilder<T> visit(BlockBuilder<T> builder);
     }
+
+    /**自己生成跳转的条件，不成立时跳转到label*/
+    interface JumpBuilder<T extends BlockBuilder<T>> {
+        void visit(BlockBuilder<T> builder, Label label);
+    }
 }
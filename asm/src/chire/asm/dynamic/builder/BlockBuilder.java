@@ -174,6 +174,24 @@ public class BlockBuilder<T extends BlockBuilder<T>> extends Builder<T> {
             });
         }
 
+        public IfElseBuilder setContent(
+                AsmBudVisitor.JumpBuilder<T> condition,
+                AsmBudVisitor.IfBuilder<T> visitor
+        ) {
+            T callBuilder = create();
+
+            classAsm.setState("set-content-if");
+            condition.visit(callBuilder, label);
+            classAsm.releaseState();
+
+            BlockBuilder<T> ke = visitor.visit(callBuilder);
+
+            return new IfElseBuilder(ke.classAsm, ke.type).setIn(ouB -> {
+                ouB.classAsm.mLabel(label);
+                return ouB;
+            });
+        }
+
         public BlockBuilder<T> toElse(AsmBudVisitor.IfBuilder<T> visitor) {
             classAsm.jumpInsn(Opcodes.GOTO, exit);
             BlockBuilder<T> builder = this.outBui.visit(new BlockBuilder<>(classAsm, type));
@@ -216,7 +234,31 @@ public class BlockBuilder<T extends BlockBuilder<T>> extends Builder<T> {
 
             callBuilder.classAsm.jumpInsn(opcode, label);
 
+            classAsm.enterLoop(label);
+            BlockBuilder<T> ke = visitor.visit(callBuilder);
+            ke.classAsm.exitLoop();
+
+            ke.classAsm.jumpInsn(Opcodes.GOTO, exit);
+            ke.classAsm.mLabel(label);
+
+            return ke;
+        }
+
+        public BlockBuilder<T> setContent(
+                AsmBudVisitor.JumpBuilder<T> condition,
+                AsmBudVisitor.IfBuilder<T> visitor
+        ) {
+            classAsm.mLabel(exit);
+
+            T callBuilder = create();
+
+            classAsm.setState("set-content-if");
+            condition.visit(callBuilder, label);
+            classAsm.releaseState();
+
+            classAsm.enterLoop(label);
             BlockBuilder<T> ke = visitor.visit(callBuilder);
+            ke.classAsm.exitLoop();
 
             ke.classAsm.jumpInsn(Opcodes.GOTO, exit);
             ke.classAsm.mLabel(label);
@@ -252,6 +294,10 @@ public class BlockBuilder<T extends BlockBuilder<T>> extends Builder<T> {
         return new CallBuilder<>(classAsm, this.type).callMethod(Opcodes.INVOKESTATIC, owner, var, parameters, returnType);
     }
 
+    public CallBuilder.MethodBuilder<T> callDynamic(String var, Class<?>[] parameters, Class<?> returnType, Class<?> bootstrapOwner, String bootstrapName, Object... bootstrapArgs) {
+        return new CallBuilder<>(classAsm, this.type).callDynamic(var, parameters, returnType, bootstrapOwner, bootstrapName, bootstrapArgs);
+    }
+
     public CallBuilder<T> call(String owner, String var, String type) {
         return call(Opcodes.GETSTATIC, owner, var, type);
     }
@@ -214,6 +214,23 @@ public class CallBuilder<T extends BlockBuilder<T>> extends Builder<T>{
         return methodBuilder;
     }
 
+    /**
+     * 以invokedynamic调用，由bootstrapOwner中的bootstrapName链接调用点
+     */
+    public MethodBuilder<T> callDynamic(String var, Class<?>[] parameters, Class<?> returnType, Class<?> bootstrapOwner, String bootstrapName, Object... bootstrapArgs) {
+        MethodBuilder<T> methodBuilder = new MethodBuilder<>(classAsm, type, parameters);
+
+        methodBuilder.end(builder -> {
+            classAsm.invokeDynamic(var, Format.formatParameter(parameters, returnType), bootstrapOwner, bootstrapName, bootstrapArgs);
+
+            if (returnType != null && !classAsm.getState().contains("content")) classAsm.mVisitInsn(Opcodes.POP);
+
+            return this;
+        });
+
+        return methodBuilder;
+    }
+
     public CallBuilder<T> callLocal(String name) {
         classAsm.invokeLocalVar(name);
 
@@ -204,6 +204,12 @@ public class ClassBuilder extends Builder<AsmBuddy> {
         return new FunctionDefinition(classAsm);
     }
 
+    public FunctionDefinition defineFunction(int access, String name, String descriptor, String[] argNames) {
+        classAsm.defineFunction(access, name, descriptor, argNames);
+
+        return new FunctionDefinition(classAsm);
+    }
+
     public FunctionDefinition defineFunction(int access, String name, Args args) {
         return defineFunction(access, name, args, null);
     }
@@ -0,0 +1,726 @@
+package chire.python;
+
+import chire.python.antlr.Python3Parser;
+import chire.python.antlr.Python3ParserBaseVisitor;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.ClassStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.VarStatement;
+import chire.python.stmt.content.control.*;
+import chire.python.stmt.content.decl.ArgStatement;
+import chire.python.stmt.content.decl.ImportStatement;
+import chire.python.stmt.content.decl.IndexStatement;
+import chire.python.stmt.content.decl.ParametersStatement;
+import chire.python.stmt.content.expr.*;
+import chire.python.stmt.type.*;
+import chire.python.util.type.RemoveQuotes;
+import chire.python.util.type.TypeChecker;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**直接由语法树生成PyStatement，不再二次扫描token*/
+public class PyAstBuilder extends Python3ParserBaseVisitor<PyStatement> {
+    private final Python3Parser.File_inputContext tree;
+
+    public ArrayList<PyStatement> statements = new ArrayList<>();
+
+    // 推导式中可见的循环变量 -> 改名后的token
+    private final Map<String, Token> comprehensionNames = new HashMap<>();
+
+    // 已经解析的推导式个数，用于给循环变量改名
+    private int comprehensions = 0;
+
+    /**所有层级中出现的import，用于构建模块依赖图*/
+    public ArrayList<ImportStatement> imports = new ArrayList<>();
+
+    public PyAstBuilder(Python3Parser.File_inputContext tree) {
+        this.tree = tree;
+    }
+
+    public ArrayList<PyStatement> parse() {
+        for (Python3Parser.StmtContext stmt : tree.stmt()) {
+            statements.addAll(stmt(stmt));
+        }
+
+        return statements;
+    }
+
+    private ArrayList<PyStatement> stmt(Python3Parser.StmtContext ctx) {
+        if (ctx.simple_stmts() != null) {
+            return simpleStmts(ctx.simple_stmts());
+        }
+
+        ArrayList<PyStatement> body = new ArrayList<>();
+        body.add(compoundStmt(ctx.compound_stmt()));
+        return body;
+    }
+
+    private ArrayList<PyStatement> block(Python3Parser.BlockContext ctx) {
+        if (ctx.simple_stmts() != null) {
+            return simpleStmts(ctx.simple_stmts());
+        }
+
+        ArrayList<PyStatement> body = new ArrayList<>();
+
+        for (Python3Parser.StmtContext stmt : ctx.stmt()) {
+            body.addAll(stmt(stmt));
+        }
+
+        return body;
+    }
+
+    private ArrayList<PyStatement> simpleStmts(Python3Parser.Simple_stmtsContext ctx) {
+        ArrayList<PyStatement> body = new ArrayList<>();
+
+        for (Python3Parser.Simple_stmtContext stmt : ctx.simple_stmt()) {
+            if (stmt.expr_stmt() != null) {
+                PyStatement statement = exprStmt(stmt.expr_stmt());
+                if (statement != null) body.add(statement);
+            } else if (stmt.import_stmt() != null) {
+                body.addAll(importStmt(stmt.import_stmt()));
+            } else if (stmt.flow_stmt() != null) {
+                body.add(flowStmt(stmt.flow_stmt()));
+            } else if (stmt.pass_stmt() != null) {
+                body.add(new PassStatement());
+            } else {
+                throw error(stmt);
+            }
+        }
+
+        return body;
+    }
+
+    private PyStatement compoundStmt(Python3Parser.Compound_stmtContext ctx) {
+        if (ctx.if_stmt() != null) return ifStmt(ctx.if_stmt());
+        if (ctx.while_stmt() != null) return whileStmt(ctx.while_stmt());
+        if (ctx.for_stmt() != null) return forStmt(ctx.for_stmt());
+        if (ctx.funcdef() != null) return funcdef(ctx.funcdef());
+        if (ctx.classdef() != null) return classdef(ctx.classdef());
+
+        throw error(ctx);
+    }
+
+    private IfStatement ifStmt(Python3Parser.If_stmtContext ctx) {
+        List<Python3Parser.TestContext> conditions = ctx.test();
+        List<Python3Parser.BlockContext> blocks = ctx.block();
+
+        IfStatement elseStmt = null;
+        int branch = conditions.size();
+
+        if (blocks.size() > branch) {
+            elseStmt = new IfStatement(null, block(blocks.get(branch)));
+        }
+
+        for (int i = branch - 1; i >= 0; i--) {
+            elseStmt = new IfStatement(visit(conditions.get(i)), block(blocks.get(i)), elseStmt);
+        }
+
+        return elseStmt;
+    }
+
+    private WhileStatement whileStmt(Python3Parser.While_stmtContext ctx) {
+        //TODO while-else 暂不支持
+        if (ctx.ELSE() != null) throw error(ctx);
+
+        return new WhileStatement(visit(ctx.test()), block(ctx.block(0)));
+    }
+
+    private ForStatement forStmt(Python3Parser.For_stmtContext ctx) {
+        //TODO 这里只支持了单变量循环，之后修改
+        if (ctx.ELSE() != null || ctx.exprlist().expr().size() != 1) throw error(ctx);
+
+        Token variable = nameOf(ctx.exprlist().expr(0));
+        if (variable == null) throw error(ctx.exprlist());
+
+        return new ForStatement(variable, visit(ctx.testlist()), block(ctx.block(0)));
+    }
+
+    private FunStatement funcdef(Python3Parser.FuncdefContext ctx) {
+        ArrayList<ArgStatement> args = new ArrayList<>();
+
+        Python3Parser.TypedargslistContext argsCtx = ctx.parameters().typedargslist();
+        if (argsCtx != null) {
+            if (argsCtx.STAR() != null || argsCtx.POWER() != null) throw error(argsCtx);
+
+            List<Python3Parser.TfpdefContext> names = argsCtx.tfpdef();
+            int defaults = argsCtx.test().size();
+
+            for (int i = 0; i < names.size(); i++) {
+                Python3Parser.TfpdefContext def = names.get(i);
+                int defIndex = i - (names.size() - defaults);
+
+                args.add(new ArgStatement(
+                        def.name().getStart(),
+                        def.test() == null ? null : typeOf(def.test()),
+                        defIndex < 0 ? null : visit(argsCtx.test(defIndex))
+                ));
+            }
+        }
+
+        return new FunStatement(ctx.name().getStart(), args, block(ctx.block()), ctx.test() == null ? null : typeOf(ctx.test()));
+    }
+
+    private ClassStatement classdef(Python3Parser.ClassdefContext ctx) {
+        PyStatement paternal = null;
+
+        if (ctx.arglist() != null) {
+            if (ctx.arglist().argument().size() != 1) throw error(ctx.arglist());
+            paternal = visit(ctx.arglist().argument(0));
+        }
+
+        return new ClassStatement(ctx.name().getStart(), paternal, block(ctx.block()));
+    }
+
+    private FunStatement.TypeStatement typeOf(Python3Parser.TestContext ctx) {
+        Token token = ctx.getStart();
+
+        if (token != ctx.getStop() || (token.getType() != Python3Parser.NAME && token.getType() != Python3Parser.STRING)) {
+            throw error(ctx);
+        }
+
+        return new FunStatement.TypeStatement(token);
+    }
+
+    private PyStatement flowStmt(Python3Parser.Flow_stmtContext ctx) {
+        if (ctx.break_stmt() != null) return new BreakStatement();
+
+        if (ctx.return_stmt() != null) {
+            Python3Parser.TestlistContext value = ctx.return_stmt().testlist();
+            return value == null ? new ReturnStatement() : new ReturnStatement(visit(value));
+        }
+
+        if (ctx.yield_stmt() != null) {
+            Python3Parser.Yield_argContext arg = ctx.yield_stmt().yield_expr().yield_arg();
+            if (arg == null) return new YieldStatement();
+            if (arg.FROM() == null) return new YieldStatement(visit(arg.testlist()));
+
+            // yield from it 等价于 for item in it: yield item
+            Token item = new CommonToken(Python3Parser.NAME, "yield$from");
+            ArrayList<PyStatement> body = new ArrayList<>();
+            body.add(new YieldStatement(new VarCallStatement(item)));
+
+            return new ForStatement(item, visit(arg.test()), body);
+        }
+
+        throw error(ctx);
+    }
+
+    private ArrayList<PyStatement> importStmt(Python3Parser.Import_stmtContext ctx) {
+        ArrayList<PyStatement> body = new ArrayList<>();
+
+        if (ctx.import_name() != null) {
+            for (Python3Parser.Dotted_as_nameContext name : ctx.import_name().dotted_as_names().dotted_as_name()) {
+                List<Python3Parser.NameContext> parts = name.dotted_name().name();
+
+                StringBuilder path = new StringBuilder();
+                for (int i = 0; i < parts.size() - 1; i++) {
+                    if (i > 0) path.append(".");
+                    path.append(parts.get(i).getText());
+                }
+
+                ImportStatement importStatement = new ImportStatement(path.toString(), parts.get(parts.size() - 1).getText());
+                if (name.name() != null) importStatement.toName(name.name().getText());
+
+                body.add(importStatement);
+                imports.add(importStatement);
+            }
+
+            return body;
+        }
+
+        Python3Parser.Import_fromContext from = ctx.import_from();
+
+        //TODO 这里之后要支持父级调用
+        if (from.DOT().size() > 1 || !from.ELLIPSIS().isEmpty() || from.import_as_names() == null) throw error(from);
+
+        String path = from.dotted_name() == null ? "" : from.dotted_name().getText();
+
+        for (Python3Parser.Import_as_nameContext name : from.import_as_names().import_as_name()) {
+            ImportStatement importStatement = new ImportStatement(path, name.name(0).getText());
+            if (name.AS() != null) importStatement.toName(name.name(1).getText());
+
+            body.add(importStatement);
+            imports.add(importStatement);
+        }
+
+        return body;
+    }
+
+    private PyStatement exprStmt(Python3Parser.Expr_stmtContext ctx) {
+        List<Python3Parser.Testlist_star_exprContext> targets = ctx.testlist_star_expr();
+
+        if (ctx.annassign() != null) {
+            Python3Parser.AnnassignContext ann = ctx.annassign();
+            Token name = nameOf(targets.get(0));
+
+            //TODO 这里在创建时未处理空结构的问题。很明显，我应该默认None
+            if (name == null || ann.ASSIGN() == null) throw error(ctx);
+
+            return new VarStatement(name, visit(ann.test(1)), typeOf(ann.test(0)));
+        }
+
+        if (ctx.augassign() != null) {
+            Token name = nameOf(targets.get(0));
+            if (name == null || ctx.testlist() == null) throw error(ctx);
+
+            String operator;
+            switch (ctx.augassign().getStart().getType()) {
+                case Python3Parser.ADD_ASSIGN:
+                    operator = "+";
+                    break;
+                case Python3Parser.SUB_ASSIGN:
+                    operator = "-";
+                    break;
+                case Python3Parser.MULT_ASSIGN:
+                    operator = "*";
+                    break;
+                case Python3Parser.DIV_ASSIGN:
+                    operator = "/";
+                    break;
+                default:
+                    throw new RuntimeException("Characters are not recognized");
+            }
+
+            return new VarStatement(name, new LogicalStatement(new VarCallStatement(name), operator, visit(ctx.testlist())));
+        }
+
+        if (ctx.ASSIGN().isEmpty()) {
+            PyStatement expr = visit(targets.get(0));
+
+            // 只有调用才会产生副作用，其余的表达式语句(例如文档字符串)直接丢弃
+            if (expr instanceof FunCallStatement || expr instanceof SubCallStatement) return expr;
+            return null;
+        }
+
+        if (ctx.ASSIGN().size() != 1 || !ctx.yield_expr().isEmpty()) throw error(ctx);
+
+        return assign(targets.get(0), visit(targets.get(1)));
+    }
+
+    private PyStatement assign(Python3Parser.Testlist_star_exprContext target, PyStatement value) {
+        if (target.test().size() != 1 || !target.star_expr().isEmpty()) throw error(target);
+
+        Python3Parser.Atom_exprContext atomExpr = atomExprOf(target.test(0));
+        if (atomExpr == null || atomExpr.AWAIT() != null) throw error(target);
+
+        List<Python3Parser.TrailerContext> trailers = atomExpr.trailer();
+        Token name = atomExpr.atom().name() == null ? null : atomExpr.atom().name().getStart();
+
+        if (trailers.isEmpty()) {
+            if (name == null) throw error(target);
+            return new VarStatement(name, value);
+        }
+
+        Python3Parser.TrailerContext last = trailers.get(trailers.size() - 1);
+
+        if (trailers.size() == 1 && name != null && last.OPEN_BRACK() != null) {
+            return new VarStatement(name, subscript(last), value, null);
+        }
+
+        if (last.DOT() != null) {
+            return new SubSetStatement(
+                    atomExpr(atomExpr, trailers.size() - 1),
+                    new VarCallStatement(last.name().getStart()),
+                    value
+            );
+        }
+
+        throw error(target);
+    }
+
+    @Override
+    public PyStatement visitTestlist_star_expr(Python3Parser.Testlist_star_exprContext ctx) {
+        if (!ctx.star_expr().isEmpty()) throw error(ctx);
+
+        return sequence(ctx.test(), !ctx.COMMA().isEmpty());
+    }
+
+    @Override
+    public PyStatement visitTestlist(Python3Parser.TestlistContext ctx) {
+        return sequence(ctx.test(), !ctx.COMMA().isEmpty());
+    }
+
+    private PyStatement sequence(List<Python3Parser.TestContext> tests, boolean tuple) {
+        if (!tuple) return visit(tests.get(0));
+
+        ArrayList<PyStatement> list = new ArrayList<>();
+        for (Python3Parser.TestContext test : tests) {
+            list.add(visit(test));
+        }
+
+        return new TupleStatement(list);
+    }
+
+    @Override
+    public PyStatement visitTest(Python3Parser.TestContext ctx) {
+        if (ctx.lambdef() != null || ctx.IF() != null) throw error(ctx);
+
+        return visit(ctx.or_test(0));
+    }
+
+    @Override
+    public PyStatement visitOr_test(Python3Parser.Or_testContext ctx) {
+        PyStatement left = visit(ctx.and_test(0));
+
+        for (int i = 1; i < ctx.and_test().size(); i++) {
+            left = new LogicalStatement(left, ctx.OR(i - 1).getSymbol(), visit(ctx.and_test(i)));
+        }
+
+        return left;
+    }
+
+    @Override
+    public PyStatement visitAnd_test(Python3Parser.And_testContext ctx) {
+        PyStatement left = visit(ctx.not_test(0));
+
+        for (int i = 1; i < ctx.not_test().size(); i++) {
+            left = new LogicalStatement(left, ctx.AND(i - 1).getSymbol(), visit(ctx.not_test(i)));
+        }
+
+        return left;
+    }
+
+    @Override
+    public PyStatement visitNot_test(Python3Parser.Not_testContext ctx) {
+        if (ctx.NOT() != null) return new UnaryStatement("not", visit(ctx.not_test()));
+
+        return visit(ctx.comparison());
+    }
+
+    @Override
+    public PyStatement visitComparison(Python3Parser.ComparisonContext ctx) {
+        if (ctx.expr().size() == 1) return visit(ctx.expr(0));
+
+        if (ctx.expr().size() == 2) {
+            return new IfStatement.JudgmentStatement(visit(ctx.expr(0)), operatorOf(ctx.comp_op(0)), visit(ctx.expr(1)));
+        }
+
+        List<PyStatement> operands = new ArrayList<>();
+        List<Token> operators = new ArrayList<>();
+        for (int i = 0; i < ctx.expr().size(); i++) {
+            operands.add(visit(ctx.expr(i)));
+            if (i < ctx.comp_op().size()) operators.add(operatorOf(ctx.comp_op(i)));
+        }
+
+        return new IfStatement.ChainStatement(operands, operators);
+    }
+
+    private Token operatorOf(Python3Parser.Comp_opContext ctx) {
+        if (ctx.getChildCount() == 1) return ctx.getStart();
+
+        // "not in" 与 "is not" 由两个token组成，合并为一个
+        CommonToken token = new CommonToken(ctx.getStart());
+        token.setText(ctx.getStart().getText() + " " + ctx.getStop().getText());
+        return token;
+    }
+
+    @Override
+    public PyStatement visitExpr(Python3Parser.ExprContext ctx) {
+        if (ctx.atom_expr() != null) return visit(ctx.atom_expr());
+
+        if (ctx.expr().size() == 2) {
+            return new LogicalStatement(visit(ctx.expr(0)), ((TerminalNode) ctx.getChild(1)).getSymbol(), visit(ctx.expr(1)));
+        }
+
+        // 一元运算符: ('+' | '-' | '~')+ expr，只有+和-时直接折叠数字字面量
+        int count = ctx.getChildCount() - 1;
+        boolean range = true;
+        boolean literal = true;
+        for (int i = 0; i < count; i++) {
+            Token operator = ((TerminalNode) ctx.getChild(i)).getSymbol();
+
+            if (operator.getType() == Python3Parser.MINUS) range = !range;
+            else if (operator.getType() == Python3Parser.NOT_OP) literal = false;
+            else if (operator.getType() != Python3Parser.ADD) throw error(ctx);
+        }
+
+        Python3Parser.ExprContext operand = ctx.expr(0);
+        Token number = operand.getStart();
+
+        if (literal && number == operand.getStop() && number.getType() == Python3Parser.NUMBER) {
+            return number(range, number);
+        }
+
+        PyStatement value = visit(operand);
+        for (int i = count - 1; i >= 0; i--) {
+            value = new UnaryStatement(ctx.getChild(i).getText(), value);
+        }
+
+        return value;
+    }
+
+    @Override
+    public PyStatement visitAtom_expr(Python3Parser.Atom_exprContext ctx) {
+        if (ctx.AWAIT() != null) throw error(ctx);
+
+        return atomExpr(ctx, ctx.trailer().size());
+    }
+
+    /**只处理前count个trailer，用于拆分属性赋值的接收者*/
+    private PyStatement atomExpr(Python3Parser.Atom_exprContext ctx, int count) {
+        List<Python3Parser.TrailerContext> trailers = ctx.trailer();
+        PyStatement current;
+        int i = 0;
+
+        if (ctx.atom().name() != null) {
+            Token name = local(ctx.atom().name().getStart());
+
+            if (count > 0 && trailers.get(0).OPEN_PAREN() != null) {
+                current = call(name, trailers.get(0));
+                i = 1;
+            } else if (count > 0 && trailers.get(0).OPEN_BRACK() != null) {
+                current = new IndexStatement(name, subscript(trailers.get(0)));
+                i = 1;
+            } else {
+                current = new VarCallStatement(name);
+            }
+        } else {
+            current = visit(ctx.atom());
+        }
+
+        for (; i < count; i++) {
+            Python3Parser.TrailerContext trailer = trailers.get(i);
+
+            //TODO 暂时只支持对变量名的调用与索引
+            if (trailer.DOT() == null) throw error(trailer);
+
+            Token attr = trailer.name().getStart();
+
+            if (i + 1 < count && trailers.get(i + 1).OPEN_PAREN() != null) {
+                current = new SubCallStatement(current, call(attr, trailers.get(++i)));
+            } else {
+                current = new SubCallStatement(current, new VarCallStatement(attr));
+            }
+        }
+
+        return current;
+    }
+
+    private FunCallStatement call(Token name, Python3Parser.TrailerContext trailer) {
+        FunCallStatement funCall = new FunCallStatement(name);
+        ArrayList<PyStatement> args = new ArrayList<>();
+
+        if (trailer.arglist() != null) {
+            for (Python3Parser.ArgumentContext argument : trailer.arglist().argument()) {
+                args.add(visit(argument));
+            }
+        }
+
+        funCall.setArg(args);
+        return funCall;
+    }
+
+    private PyStatement subscript(Python3Parser.TrailerContext trailer) {
+        List<Python3Parser.Subscript_Context> subscripts = trailer.subscriptlist().subscript_();
+        if (subscripts.size() != 1) throw error(trailer);
+
+        Python3Parser.Subscript_Context subscript = subscripts.get(0);
+        if (subscript.COLON() == null) return visit(subscript.test(0));
+
+        // start:stop:step，省略的部分为None；冒号之前的test是start
+        int colon = subscript.COLON().getSymbol().getTokenIndex();
+        PyStatement start = new NoneStatement();
+        PyStatement stop = new NoneStatement();
+
+        for (Python3Parser.TestContext test : subscript.test()) {
+            if (test.getStart().getTokenIndex() < colon) {
+                start = visit(test);
+            } else {
+                stop = visit(test);
+            }
+        }
+
+        Python3Parser.SliceopContext sliceop = subscript.sliceop();
+        PyStatement step = sliceop == null || sliceop.test() == null ? new NoneStatement() : visit(sliceop.test());
+
+        return new SliceStatement(start, stop, step);
+    }
+
+    @Override
+    public PyStatement visitArgument(Python3Parser.ArgumentContext ctx) {
+        if (ctx.STAR() != null || ctx.POWER() != null || ctx.comp_for() != null) throw error(ctx);
+
+        if (ctx.ASSIGN() != null) {
+            Token name = nameOf(ctx.test(0));
+            if (name == null) throw error(ctx);
+
+            return new ParametersStatement(name, visit(ctx.test(1)));
+        }
+
+        return visit(ctx.test(0));
+    }
+
+    @Override
+    public PyStatement visitAtom(Python3Parser.AtomContext ctx) {
+        if (ctx.name() != null) return new VarCallStatement(local(ctx.name().getStart()));
+        if (ctx.NUMBER() != null) return number(true, ctx.NUMBER().getSymbol());
+        if (ctx.NONE() != null) return new NoneStatement();
+        if (ctx.TRUE() != null) return new ConstStatement<>(ctx.TRUE().getSymbol(), Boolean.class);
+        if (ctx.FALSE() != null) return new ConstStatement<>(ctx.FALSE().getSymbol(), Boolean.class);
+
+        if (!ctx.STRING().isEmpty()) {
+            List<TerminalNode> strings = ctx.STRING();
+            if (strings.size() == 1) return new ConstStatement<>(strings.get(0).getSymbol(), String.class);
+
+            // 相邻的字符串字面量在编译期拼接
+            StringBuilder text = new StringBuilder();
+            for (TerminalNode string : strings) {
+                text.append(RemoveQuotes.removeQuotes(string.getText()));
+            }
+
+            CommonToken token = new CommonToken(strings.get(0).getSymbol());
+            token.setText("\"" + text + "\"");
+            return new ConstStatement<>(token, String.class);
+        }
+
+        if (ctx.OPEN_PAREN() != null) {
+            Python3Parser.Testlist_compContext comp = ctx.testlist_comp();
+            if (comp == null) return new TupleStatement(new ArrayList<>());
+
+            if (!comp.star_expr().isEmpty() || comp.comp_for() != null) throw error(ctx);
+            return sequence(comp.test(), !comp.COMMA().isEmpty());
+        }
+
+        if (ctx.OPEN_BRACK() != null) {
+            ArrayList<PyStatement> list = new ArrayList<>();
+            Python3Parser.Testlist_compContext comp = ctx.testlist_comp();
+
+            if (comp != null) {
+                if (!comp.star_expr().isEmpty()) throw error(ctx);
+                if (comp.comp_for() != null) return comprehension(ComprehensionStatement.Kind.LIST, comp.test(0), null, comp.comp_for());
+
+                for (Python3Parser.TestContext test : comp.test()) {
+                    list.add(visit(test));
+                }
+            }
+
+            return new ListStatement(list);
+        }
+
+        if (ctx.OPEN_BRACE() != null) {
+            Map<PyStatement, PyStatement> args = new LinkedHashMap<>();
+            Python3Parser.DictorsetmakerContext dict = ctx.dictorsetmaker();
+
+            if (dict != null) {
+                if (dict.comp_for() != null && dict.POWER().isEmpty() && dict.star_expr().isEmpty()) {
+                    return dict.COLON().isEmpty()
+                            ? comprehension(ComprehensionStatement.Kind.SET, dict.test(0), null, dict.comp_for())
+                            : comprehension(ComprehensionStatement.Kind.DICT, dict.test(0), dict.test(1), dict.comp_for());
+                }
+
+                //TODO set 与 **解包 暂不支持
+                if (dict.COLON().isEmpty() || !dict.POWER().isEmpty() || dict.comp_for() != null) throw error(ctx);
+
+                for (int i = 0; i < dict.test().size(); i += 2) {
+                    args.put(visit(dict.test(i)), visit(dict.test(i + 1)));
+                }
+            }
+
+            return new DictStatement(args);
+        }
+
+        throw error(ctx);
+    }
+
+    /**
+     * 第一个for的来源在外层作用域中计算，其余部分按顺序计算，循环变量改名后只在推导式中可见
+     */
+    private PyStatement comprehension(ComprehensionStatement.Kind kind, Python3Parser.TestContext element, Python3Parser.TestContext value, Python3Parser.Comp_forContext ctx) {
+        Map<String, Token> outer = new HashMap<>(comprehensionNames);
+        List<PyStatement> clauses = new ArrayList<>();
+        int id = comprehensions++;
+
+        Python3Parser.Comp_iterContext iter;
+        for (ParserRuleContext clause = ctx; clause != null; clause = iter == null ? null : iter.comp_for() != null ? iter.comp_for() : iter.comp_if()) {
+            if (clause instanceof Python3Parser.Comp_forContext) {
+                Python3Parser.Comp_forContext compFor = (Python3Parser.Comp_forContext) clause;
+                if (compFor.ASYNC() != null || compFor.exprlist().expr().size() != 1 || !compFor.exprlist().star_expr().isEmpty()) throw error(compFor);
+
+                Token variable = nameOf(compFor.exprlist().expr(0));
+                if (variable == null) throw error(compFor.exprlist());
+
+                PyStatement iterable = visit(compFor.or_test());
+
+                CommonToken hidden = new CommonToken(variable);
+                hidden.setText(variable.getText() + "$comp" + id);
+                comprehensionNames.put(variable.getText(), hidden);
+
+                clauses.add(new ForStatement(hidden, iterable, new ArrayList<>()));
+                iter = compFor.comp_iter();
+            } else {
+                Python3Parser.Comp_ifContext compIf = (Python3Parser.Comp_ifContext) clause;
+
+                clauses.add(new IfStatement(visit(compIf.test_nocond()), new ArrayList<>()));
+                iter = compIf.comp_iter();
+            }
+        }
+
+        PyStatement key = visit(element);
+        PyStatement val = value == null ? null : visit(value);
+
+        comprehensionNames.clear();
+        comprehensionNames.putAll(outer);
+
+        return new ComprehensionStatement(kind, key, val, clauses);
+    }
+
+    /**@return 推导式中的循环变量改名后的token，其余名字不变*/
+    private Token local(Token name) {
+        return comprehensionNames.getOrDefault(name.getText(), name);
+    }
+
+    private PyStatement number(boolean range, Token key) {
+        if (TypeChecker.isInteger(key.getText())) {
+            long value;
+            try {
+                value = Long.parseLong(key.getText());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("parser error " + key + ": integer literal out of range");
+            }
+
+            // 超出int的字面量为Long，与运算溢出后的类型一致
+            if (value == (int) value) return new NumberStatement<>(range, key, Integer.class);
+            return new NumberStatement<>(range, key, Long.class);
+        } else if (TypeChecker.isFloatingPointNumber(key.getText())) {
+            return new NumberStatement<>(range, key, Double.class);
+        }
+
+        throw new RuntimeException("parser error " + key);
+    }
+
+    /**
+     * @return 若表达式只是一个变量名，返回该名字的token，否则为null
+     */
+    private Token nameOf(ParseTree ctx) {
+        while (ctx.getChildCount() == 1 && !(ctx instanceof Python3Parser.AtomContext)) {
+            ctx = ctx.getChild(0);
+        }
+
+        if (ctx instanceof Python3Parser.AtomContext && ((Python3Parser.AtomContext) ctx).name() != null) {
+            return ((Python3Parser.AtomContext) ctx).name().getStart();
+        }
+
+        return null;
+    }
+
+    private Python3Parser.Atom_exprContext atomExprOf(ParseTree ctx) {
+        while (ctx.getChildCount() == 1 && !(ctx instanceof Python3Parser.Atom_exprContext)) {
+            ctx = ctx.getChild(0);
+        }
+
+        return ctx instanceof Python3Parser.Atom_exprContext ? (Python3Parser.Atom_exprContext) ctx : null;
+    }
+
+    private RuntimeException error(ParserRuleContext ctx) {
+        return new RuntimeException("parser error in " + ctx.getStart() + ": " + ctx.getText());
+    }
+}
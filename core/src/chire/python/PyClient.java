@@ -0,0 +1,110 @@
+package chire.python;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 将参数转发给{@link PyDaemon}的客户端，没有运行中的常驻进程时直接在当前进程中执行。
+ */
+public class PyClient {
+    /**
+     * @param args [--socket path] compile|run|stop [args]...
+     */
+    public static void main(String[] args) throws IOException {
+        Path socket = PyDaemon.defaultSocket();
+
+        if (args.length >= 2 && args[0].equals("--socket")) {
+            socket = Path.of(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        if (args.length == 0) throw new RuntimeException("no key");
+
+        int exit;
+
+        try {
+            exit = forward(socket, args, System.out, System.err);
+        } catch (ConnectException e) {
+            local(args);
+            return;
+        }
+
+        System.exit(exit);
+    }
+
+    /**
+     * 将参数与当前的工作目录转发给常驻进程，输出写入stdout与stderr
+     * @return 常驻进程返回的退出码
+     * @throws ConnectException 常驻进程未运行
+     */
+    public static int forward(Path socket, String[] args, PrintStream stdout, PrintStream stderr) throws IOException {
+        try (SocketChannel channel = connect(socket)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeUTF(Path.of("").toAbsolutePath().toString());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+            for (;;) {
+                int type = in.readUnsignedByte();
+                if (type == PyDaemon.FRAME_EXIT) return in.readInt();
+
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+
+                PrintStream target = type == PyDaemon.FRAME_ERR ? stderr : stdout;
+                target.write(data);
+                target.flush();
+            }
+        }
+    }
+
+    /**
+     * @throws ConnectException 无法连接，包括socket文件不存在与当前平台不支持Unix domain socket
+     */
+    private static SocketChannel connect(Path socket) throws ConnectException {
+        SocketChannel channel = null;
+
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            return channel;
+        } catch (IOException | UnsupportedOperationException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            throw (ConnectException) new ConnectException(socket + ": " + e.getMessage()).initCause(e);
+        }
+    }
+
+    private static void local(String[] args) throws IOException {
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+
+        switch (args[0]) {
+            case "compile":
+                PyCompiler.main(rest);
+                break;
+            case "run":
+                PyInterpreter.main(rest);
+                break;
+            case "stop":
+                break;
+            default:
+                throw new RuntimeException("no key: " + args[0]);
+        }
+    }
+}
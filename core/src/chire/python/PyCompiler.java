@@ -3,56 +3,204 @@ package chire.python;
 import chire.python.antlr.Python3Lexer;
 import chire.python.antlr.Python3Parser;
 import chire.asm.dynamic.builder.ClassBuilder;
+import chire.python.jar.ClassSink;
+import chire.python.jar.DirectorySink;
 import chire.python.jar.JarExporter;
 import chire.python.lib.builtins.PyObject;
+import chire.python.optimize.ConstantFolder;
+import chire.python.optimize.SymbolTable;
 import chire.python.stmt.PyStatement;
+import chire.python.stmt.content.decl.ImportStatement;
+import chire.python.asm.ModuleAsm;
 import chire.python.asm.PythonAsmBuddy;
-import chire.python.util.DirectoryWalker;
+import chire.python.cache.BuildIndex;
+import chire.python.cache.BytecodeCache;
 import chire.python.util.SmartIndenter;
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.Token;
+import chire.python.util.SourceScanner;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PyCompiler {
+    /**编译器版本，生成的字节码发生变化时需要修改，旧的缓存会随之失效*/
+    public static final String VERSION = "0.1.16";
+
     public static boolean debug = false;
 
+    /**编译结果缓存，为null时不使用缓存*/
+    public static BytecodeCache cache = null;
+
+    /**先以SLL预测解析，失败后才回退到完整的LL预测*/
+    public static boolean twoStageParse = true;
+
+    /**生成字节码前折叠常量表达式并删除不会执行的分支*/
+    public static boolean optimize = true;
+
+    /**编译目录时使用的线程数*/
+    public static int threads = Runtime.getRuntime().availableProcessors();
+
+    /**输出旁保存依赖图，之后只重新编译修改过的模块及import了它们的模块，也可以在命令行追加{@code --incremental}*/
+    public static boolean incremental = false;
+
+    // 每个线程复用自己的lexer与parser，DFA缓存在所有parser之间共享，文件之间保持预热
+    private static final ThreadLocal<Python3Lexer> lexers = ThreadLocal.withInitial(() -> new Python3Lexer(null));
+    private static final ThreadLocal<Python3Parser> parsers = ThreadLocal.withInitial(() -> new Python3Parser(null));
+
     /**
-     * @param args [input directory] [output file]
+     * @param args [input directory] [output file] [--include glob]... [--exclude glob]... [--cache directory] [--incremental]
      */
     public static void main(String[] args) throws IOException {
-        if (args.length != 2) throw new RuntimeException("no key");
+        execute(Path.of(""), args);
+    }
 
-        File input = new File(args[0]);
-        File output = new File(args[1]);
+    /**
+     * @param workingDir 参数中的相对路径相对于该目录
+     */
+    public static void execute(Path workingDir, String[] args) throws IOException {
+        if (args.length < 2) throw new RuntimeException("no key");
+
+        File input = workingDir.resolve(args[0]).toFile();
+        File output = workingDir.resolve(args[1]).toFile();
+
+        SourceScanner scanner = new SourceScanner(input.toPath());
+        boolean incremental = PyCompiler.incremental;
+
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--include":
+                    scanner.include(value(args, ++i));
+                    break;
+                case "--exclude":
+                    scanner.exclude(value(args, ++i));
+                    break;
+                case "--cache":
+                    cache = new BytecodeCache(workingDir.resolve(value(args, ++i)));
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                default:
+                    throw new RuntimeException("no key: " + args[i]);
+            }
+        }
 
-        PyCompiler.compileFiles(input, output);
+        if (incremental) {
+            PyCompiler.compileIncremental(scanner, output);
+        } else {
+            PyCompiler.compileFiles(scanner, output);
+        }
     }
 
-    public static Map<String, byte[]> compile(String className, String pythonCode) {
-        CharStream input = CharStreams.fromString(pythonCode);
-        Python3Lexer lexer = new Python3Lexer(input);
+    private static String value(String[] args, int index) {
+        if (index >= args.length) throw new RuntimeException("no key: " + args[index - 1]);
+        return args[index];
+    }
+
+    public static Python3Parser.File_inputContext parse(String pythonCode) {
+        Python3Lexer lexer = lexers.get();
+        lexer.setInputStream(CharStreams.fromString(pythonCode));
+
         CommonTokenStream tokens = new CommonTokenStream(lexer);
-        Python3Parser parser = new Python3Parser(tokens);
-        parser.file_input();  // 触发语法校验，若失败会抛出异常
+        Python3Parser parser = parsers.get();
+        parser.setTokenStream(tokens);
+
+        Python3Parser.File_inputContext tree = null;
+
+        if (twoStageParse) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.removeErrorListeners();
+            parser.setErrorHandler(new BailErrorStrategy());
+
+            try {
+                tree = parser.file_input();
+            } catch (ParseCancellationException e) {
+                // SLL无法确定时重新从头以LL解析，只有真正的语法错误才会在这里报告
+                tokens.seek(0);
+                parser.reset();
+            }
+        }
+
+        if (tree == null) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.removeErrorListeners();
+            parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+
+            tree = parser.file_input();
+        }
 
         if (debug) for (Token token : tokens.getTokens()) {
             System.out.println(token);
         }
 
-        ArrayList<PyStatement> statements = new PyParser(tokens).parse();
+        return tree;
+    }
 
-        ClassBuilder builder = new PythonAsmBuddy(className, PyObject.class).create();
+    /**
+     * 设置了{@link #cache}时，源码、类名与编译选项都未改变的模块直接从缓存读取。
+     */
+    public static Map<String, byte[]> compile(String className, String pythonCode) {
+        return compile(className, pythonCode, null);
+    }
+
+    /**
+     * @param symbols 同一次构建中的其他模块，调用其中的函数、读写其变量时直接绑定；为null或设置了{@link #cache}时只绑定本模块中的
+     */
+    public static Map<String, byte[]> compile(String className, String pythonCode, SymbolTable symbols) {
+        if (cache == null) return generate(className, pythonCode, symbols);
+
+        String key = cache.key(className, pythonCode, VERSION, targetOptions());
+        Map<String, byte[]> clazzes = cache.get(key);
+
+        if (clazzes == null) {
+            // 缓存只以模块自身的源码为键，缓存的字节码不能依赖其他模块
+            clazzes = generate(className, pythonCode, null);
+            store(key, clazzes);
+        }
+
+        return clazzes;
+    }
+
+    private static void store(String key, Map<String, byte[]> clazzes) {
+        try {
+            cache.put(key, clazzes);
+        } catch (IOException e) {
+            // 缓存写入失败不影响编译结果
+            if (debug) e.printStackTrace();
+        }
+    }
+
+    /**会影响生成字节码的编译选项，作为缓存键的一部分*/
+    static String targetOptions() {
+        return "target=1.8" + (optimize ? ",optimize" : "");
+    }
+
+    private static Map<String, byte[]> generate(String className, String pythonCode, SymbolTable symbols) {
+        return generate(className, new PyAstBuilder(parse(pythonCode)).parse(), symbols);
+    }
+
+    private static Map<String, byte[]> generate(String className, ArrayList<PyStatement> statements, SymbolTable symbols) {
+        ModuleAsm module = new ModuleAsm(className, PyObject.class, symbols);
         SmartIndenter indenter = new SmartIndenter("  ");
 
+        if (optimize) statements = new ConstantFolder().fold(statements);
+
+        module.declare(statements);
+
+        ClassBuilder builder = new PythonAsmBuddy(module).create();
+
         for (PyStatement stmt : statements) {
             if (debug) stmt.toString(indenter);
 
@@ -69,24 +217,221 @@ public class PyCompiler {
         return compile(className, pythonCode);
     }
 
+    public static Map<String, byte[]> compileDir(File pyDir) throws IOException {
+        return compileDir(new SourceScanner(pyDir.toPath()));
+    }
+
+    public static Map<String, byte[]> compileDir(SourceScanner scanner) throws IOException {
+        Map<String, byte[]> clazzes = new TreeMap<>();
+        compileDir(scanner, clazzes::put);
+        return clazzes;
+    }
+
+    /**
+     * 使用多个线程编译扫描到的全部py文件，扫描的同时文件就已开始编译。
+     * 已编译但尚未写出的模块最多为线程数的两倍，内存占用不随项目大小增长。
+     * 写入sink的顺序与扫描顺序一致，由sink保证输出稳定，例如jar在关闭时按类名排列条目。
+     */
+    public static void compileDir(SourceScanner scanner, ClassSink sink) throws IOException {
+        SymbolTable symbols = new SymbolTable(scanner);
+
+        ArrayDeque<Future<Map<String, byte[]>>> pending = new ArrayDeque<>();
+        int window = Math.max(1, threads) * 2;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+
+        try {
+            scanner.scan(source -> {
+                pending.add(executor.submit(() -> compile(source, symbols)));
+
+                if (pending.size() >= window) JarExporter.write(await(pending.poll()), sink);
+            });
+
+            while (!pending.isEmpty()) {
+                JarExporter.write(await(pending.poll()), sink);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 没有使用缓存时由符号表取得语法树，被其他模块查询过的模块不再重新解析
+     */
+    private static Map<String, byte[]> compile(SourceScanner.Source source, SymbolTable symbols) throws IOException {
+        if (cache != null) return compile(source.module, Files.readString(source.path), symbols);
+
+        return generate(source.module, symbols.take(source.module).statements, symbols);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     public static void compileFiles(File pyDir, File outputDir) throws IOException {
-        Map<String, byte[]> clazzes = new HashMap<>();
+        compileFiles(new SourceScanner(pyDir.toPath()), outputDir);
+    }
+
+    public static void compileFiles(SourceScanner scanner, File outputDir) throws IOException {
+        if (incremental) {
+            compileIncremental(scanner, outputDir);
+            return;
+        }
+
+        try (ClassSink sink = JarExporter.open(outputDir)) {
+            try {
+                compileDir(scanner, sink);
+            } catch (Throwable e) {
+                sink.abort();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 依据上次构建保存的依赖图({@code output.index})只重新编译修改过的模块以及直接或间接import了它们的模块，
+     * 并直接在原有的输出目录或jar中替换对应的类。没有可用的依赖图时进行完整构建。
+     */
+    public static void compileIncremental(SourceScanner scanner, File output) throws IOException {
+        Path indexFile = Path.of(output.getPath() + ".index");
+        String version = VERSION + "/" + targetOptions();
+
+        BuildIndex previous = output.exists() ? BuildIndex.load(indexFile, version) : null;
+        BuildIndex index = previous == null ? new BuildIndex(version) : previous;
+
+        Map<String, Path> sources = new TreeMap<>();
+        Map<String, String> hashes = new HashMap<>();
+        Set<String> changed = new TreeSet<>();
+
+        for (SourceScanner.Source source : scanner.scan()) {
+            String hash = BytecodeCache.hash(Files.readString(source.path));
+            BuildIndex.Module module = index.get(source.module);
+
+            sources.put(source.module, source.path);
+            hashes.put(source.module, hash);
+            if (module == null || !module.hash.equals(hash)) changed.add(source.module);
+        }
+
+        Set<String> removed = new TreeSet<>(index.modules());
+        removed.removeAll(sources.keySet());
+        changed.addAll(removed);
+
+        Set<String> dirty = previous == null ? sources.keySet() : index.affected(changed, sources.keySet());
+        if (dirty.isEmpty() && removed.isEmpty()) return;
+
+        boolean jar = JarExporter.isJar(output);
+
+        ArrayDeque<Map.Entry<String, Future<Unit>>> pending = new ArrayDeque<>();
+        int window = Math.max(1, threads) * 2;
+
+        SymbolTable symbols = new SymbolTable(sources, dirty);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+
+        // 首次构建直接流式写出，之后的构建通过ZipFileSystem在原jar中替换
+        try (FileSystem jarFs = jar && previous != null ? FileSystems.newFileSystem(output.toPath()) : null;
+             ClassSink sink = jarFs != null ? new DirectorySink(jarFs.getPath("/")) : JarExporter.open(output)) {
+            Path root = jarFs != null ? jarFs.getPath("/") : output.toPath();
 
-        DirectoryWalker.walk(pyDir, file -> {
-            if (file.getName().endsWith(".py")) {
-                String clazzPath = file.toPath().toString().replace(pyDir.toPath()+"\\", "");
-                clazzPath = clazzPath.substring(0, clazzPath.length()-3).replace("\\", ".");
+            try {
+                for (String module : removed) {
+                    deleteClasses(root, index.remove(module));
+                }
 
-                Map<String, byte[]> clamap = PyCompiler.compile(clazzPath, Files.readString(file.toPath()));
+                for (String module : dirty) {
+                    Path path = sources.get(module);
+                    String hash = hashes.get(module);
 
-                clazzes.putAll(clamap);
+                    BuildIndex.Module last = index.get(module);
+
+                    pending.add(Map.entry(module, executor.submit(() -> unit(module, path, hash, last, symbols))));
+
+                    if (pending.size() >= window) replace(index, root, sink, pending.poll());
+                }
+
+                while (!pending.isEmpty()) {
+                    replace(index, root, sink, pending.poll());
+                }
+            } catch (Throwable e) {
+                sink.abort();
+                throw e;
             }
-        });
+        } finally {
+            executor.shutdownNow();
+        }
 
-        if (!outputDir.getName().contains(".")) {
-            JarExporter.saveClass(clazzes, outputDir.getPath());
-        } else {
-            JarExporter.saveJar(clazzes, outputDir.getPath());
+        index.save(indexFile);
+    }
+
+    /**
+     * 编译一个模块并找出它import的模块。没有使用缓存时由符号表取得语法树，每个模块只解析一次；
+     * 设置了{@link #cache}时与{@link #compile(String, String, SymbolTable)}一样先查找缓存，
+     * 命中且源码与上次构建相同时沿用上次记录的import，不需要再解析
+     */
+    private static Unit unit(String module, Path path, String hash, BuildIndex.Module last, SymbolTable symbols) throws IOException {
+        if (cache == null) {
+            SymbolTable.Parsed parsed = symbols.take(module);
+            return unit(module, hash, generate(module, parsed.statements, symbols), parsed.imports);
+        }
+
+        String pythonCode = Files.readString(path);
+        String key = cache.key(module, pythonCode, VERSION, targetOptions());
+        Map<String, byte[]> clazzes = cache.get(key);
+
+        if (clazzes != null && last != null && last.hash.equals(hash)) {
+            return new Unit(clazzes, new BuildIndex.Module(hash, new ArrayList<>(new TreeSet<>(clazzes.keySet())), last.imports));
+        }
+
+        PyAstBuilder ast = new PyAstBuilder(parse(pythonCode));
+        ArrayList<PyStatement> statements = ast.parse();
+
+        if (clazzes == null) {
+            // 缓存只以模块自身的源码为键，缓存的字节码不能依赖其他模块
+            clazzes = generate(module, statements, null);
+            store(key, clazzes);
+        }
+
+        return unit(module, hash, clazzes, ast.imports);
+    }
+
+    private static Unit unit(String module, String hash, Map<String, byte[]> clazzes, List<ImportStatement> imports) {
+        return new Unit(clazzes, new BuildIndex.Module(
+                hash, new ArrayList<>(new TreeSet<>(clazzes.keySet())), BuildIndex.imports(module, imports)
+        ));
+    }
+
+    private static void replace(BuildIndex index, Path root, ClassSink sink, Map.Entry<String, Future<Unit>> result) throws IOException {
+        Unit unit = await(result.getValue());
+
+        deleteClasses(root, index.get(result.getKey()));
+        index.put(result.getKey(), unit.module);
+
+        JarExporter.write(unit.clazzes, sink);
+    }
+
+    private static void deleteClasses(Path root, BuildIndex.Module module) throws IOException {
+        if (module == null) return;
+
+        for (String clazz : module.classes) {
+            Files.deleteIfExists(root.resolve(clazz.replace('.', '/') + ".class"));
+        }
+    }
+
+    private static class Unit {
+        final Map<String, byte[]> clazzes;
+        final BuildIndex.Module module;
+
+        Unit(Map<String, byte[]> clazzes, BuildIndex.Module module) {
+            this.clazzes = clazzes;
+            this.module = module;
         }
     }
 
@@ -95,11 +440,7 @@ public class PyCompiler {
 
         Map<String, byte[]> clamap = PyCompiler.compile(clazzPath, Files.readString(pyFile.toPath()));
 
-        if (!outputDir.getName().contains(".")) {
-            JarExporter.saveClass(clamap, outputDir.getPath());
-        } else {
-            JarExporter.saveJar(clamap, outputDir.getPath());
-        }
+        JarExporter.saveTo(clamap, outputDir);
     }
 
     private static String deriveClassName(File pyFile) {
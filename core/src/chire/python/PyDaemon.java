@@ -0,0 +1,171 @@
+package chire.python;
+
+import chire.python.cache.BytecodeCache;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+/**
+ * 常驻的编译进程，通过Unix domain socket接收{@link PyClient}转发的请求。
+ * JVM、ANTLR的ATN与DFA缓存以及JIT在多次请求之间保持预热。
+ * 请求依次处理，请求期间的标准输出与错误输出转发给客户端。
+ */
+public class PyDaemon {
+    static final int FRAME_EXIT = 0;
+    static final int FRAME_OUT = 1;
+    static final int FRAME_ERR = 2;
+
+    private final Path socket;
+
+    public PyDaemon(Path socket) {
+        this.socket = socket;
+    }
+
+    public static Path defaultSocket() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "javathon-" + System.getProperty("user.name") + ".sock");
+    }
+
+    /**
+     * @param args [socket]
+     */
+    public static void main(String[] args) throws IOException {
+        new PyDaemon(args.length > 0 ? Path.of(args[0]) : defaultSocket()).serve();
+    }
+
+    public void serve() throws IOException {
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+
+            try {
+                Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+            }
+
+            // 提前完成ATN的反序列化
+            PyCompiler.parse("");
+
+            boolean running = true;
+
+            while (running) {
+                try (SocketChannel channel = server.accept()) {
+                    running = handle(channel);
+                } catch (IOException e) {
+                    if (PyCompiler.debug) e.printStackTrace();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    /**
+     * 请求：工作目录、参数个数、参数，均为UTF。第一个参数为compile、run或stop。
+     * 响应：若干输出帧(类型、长度、内容)，最后是带有退出码的结束帧。
+     * @return 是否继续接收请求
+     */
+    private boolean handle(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+        Path workingDir = Path.of(in.readUTF());
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        BytecodeCache cache = PyCompiler.cache;
+
+        int exit = 0;
+
+        try (PrintStream frameOut = new PrintStream(new FrameStream(out, FRAME_OUT), true);
+             PrintStream frameErr = new PrintStream(new FrameStream(out, FRAME_ERR), true)) {
+            System.setOut(frameOut);
+            System.setErr(frameErr);
+
+            try {
+                exit = execute(workingDir, args);
+            } catch (Throwable e) {
+                e.printStackTrace();
+                exit = 1;
+            } finally {
+                System.setOut(stdout);
+                System.setErr(stderr);
+                PyCompiler.cache = cache;
+            }
+        }
+
+        out.writeByte(FRAME_EXIT);
+        out.writeInt(exit);
+        out.flush();
+
+        return !(args.length > 0 && args[0].equals("stop"));
+    }
+
+    private static int execute(Path workingDir, String[] args) throws IOException {
+        if (args.length == 0) throw new RuntimeException("no key");
+
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+
+        switch (args[0]) {
+            case "compile":
+                PyCompiler.execute(workingDir, rest);
+                return 0;
+            case "run":
+                PyInterpreter.reset();
+                PyInterpreter.execute(workingDir, rest);
+                return 0;
+            case "stop":
+                return 0;
+            default:
+                throw new RuntimeException("no key: " + args[0]);
+        }
+    }
+
+    private static class FrameStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int type;
+
+        FrameStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
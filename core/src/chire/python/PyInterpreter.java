@@ -1,58 +1,102 @@
 package chire.python;
 
+import chire.python.cache.BytecodeCache;
 import chire.python.lib.PyConfig;
-import chire.python.util.DirectoryWalker;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class PyInterpreter {
+    /**只在类第一次被使用时才编译对应的模块，而不是启动时编译整个目录，也可以在命令行追加{@code --lazy}。
+     * 未被使用的模块中的错误不会被报告*/
+    public static boolean lazy = false;
 
     /**
-     * @param args [directory] [classPath]
+     * @param args [directory] [classPath] [--cache directory] [--lazy]
      */
     public static void main(String[] args) throws IOException {
-        if (args.length < 1) throw new RuntimeException("no key");
+        execute(Path.of(""), args);
+    }
+
+    /**
+     * @param workingDir 参数中的相对路径相对于该目录
+     */
+    public static void execute(Path workingDir, String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        boolean lazy = PyInterpreter.lazy;
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                positional.add(args[i]);
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                // 只在指定时缓存，不在源码目录中写入任何文件
+                PyCompiler.cache = new BytecodeCache(workingDir.resolve(args[++i]));
+            } else if (args[i].equals("--lazy")) {
+                lazy = true;
+            } else {
+                throw new RuntimeException("no key: " + args[i]);
+            }
+        }
+
+        if (positional.isEmpty() || positional.size() > 2) throw new RuntimeException("no key");
+
+        File directory = workingDir.resolve(positional.get(0)).toFile();
 
         PyInterpreter interpreter = new PyInterpreter();
-        interpreter.loadFiles(new File(args[0]));
 
-        if (args.length == 2) {
-            interpreter.execClass(args[1]);
+        if (lazy) {
+            interpreter.loadLazily(directory);
+        } else {
+            interpreter.loadFiles(directory);
+        }
+
+        if (positional.size() == 2) {
+            interpreter.execClass(positional.get(1));
         }
     }
 
-    private static final ByteArrayClassLoader dynamicLoader;
+    private static volatile ByteArrayClassLoader dynamicLoader;
 
     static {
         //TODO 之后采用沙箱设计，但未解决JPUtil.forClass的问题。
-        dynamicLoader = new ByteArrayClassLoader(Thread.currentThread().getContextClassLoader());
+        reset();
         PyConfig.loader = () -> dynamicLoader;
     }
 
+    /**丢弃已加载的全部模块，常驻进程在每次运行前调用，修改过的源码会被重新加载*/
+    static void reset() {
+        dynamicLoader = new ByteArrayClassLoader(Thread.currentThread().getContextClassLoader());
+    }
+
     public PyInterpreter() {
     }
 
     public void loadFiles(File path) throws IOException {
         if (!path.isDirectory() || !path.exists()) throw new IOException("The loading file type is wrong or non-existent!");
 
-        DirectoryWalker.walk(path, file -> {
-            if (file.getName().endsWith(".py")) {
-                String clazzPath = file.toPath().toString().replace(path.toPath()+"\\", "");
-                clazzPath = clazzPath.substring(0, clazzPath.length()-3).replace("\\", ".");
+        Map<String, byte[]> clamap = PyCompiler.compileDir(path);
 
-                Map<String, byte[]> clamap = PyCompiler.compile(clazzPath, Files.readString(file.toPath()));
+        for (String cla : clamap.keySet()) {
+            loadClass(cla.replaceAll("/", "."), clamap.get(cla));
+        }
+    }
 
-                for (String cla : clamap.keySet()) {
-                    loadClass(cla.replaceAll("/", "."), clamap.get(cla));
-                }
-            }
-        });
+    /**
+     * 不立即编译，之后加载类时由类名找到对应的py文件再编译，例如{@code chire.py.main}对应{@code chire/py/main.py}
+     */
+    public void loadLazily(File path) throws IOException {
+        if (!path.isDirectory() || !path.exists()) throw new IOException("The loading file type is wrong or non-existent!");
+
+        dynamicLoader.sourceRoot = path.toPath();
     }
 
     public void loadFile(File file, String name) throws IOException {
@@ -93,6 +137,11 @@ public class PyInterpreter {
     }
 
     private static class ByteArrayClassLoader extends ClassLoader {
+        private volatile Path sourceRoot;
+
+        // 已编译但还未定义的类，例如模块的内部类
+        private final Map<String, byte[]> compiled = new HashMap<>();
+
         public ByteArrayClassLoader(ClassLoader parent) {
             super(parent);
         }
@@ -100,5 +149,48 @@ public class PyInterpreter {
         public Class<?> defineClass(String name, byte[] bytecode) {
             return defineClass(name, bytecode, 0, bytecode.length);
         }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytecode = compiled.remove(name);
+
+            if (bytecode == null) {
+                Path source = sourceOf(name);
+                if (source == null) throw new ClassNotFoundException(name);
+
+                String module = name.contains("$") ? name.substring(0, name.indexOf('$')) : name;
+
+                try {
+                    for (Map.Entry<String, byte[]> entry : PyCompiler.compile(module, Files.readString(source)).entrySet()) {
+                        String className = entry.getKey().replace('/', '.');
+                        if (findLoadedClass(className) == null) compiled.put(className, entry.getValue());
+                    }
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+
+                bytecode = compiled.remove(name);
+                if (bytecode == null) throw new ClassNotFoundException(name);
+            }
+
+            return defineClass(name, bytecode);
+        }
+
+        private Path sourceOf(String name) {
+            Path root = sourceRoot;
+            if (root == null) return null;
+
+            if (name.contains("$")) name = name.substring(0, name.indexOf('$'));
+
+            String[] parts = name.split("\\.", -1);
+            for (String part : parts) {
+                if (part.isEmpty()) return null;
+            }
+
+            parts[parts.length - 1] += ".py";
+            Path source = root.resolve(String.join("/", parts));
+
+            return Files.isRegularFile(source) ? source : null;
+        }
     }
 }
@@ -0,0 +1,52 @@
+package chire.python;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 运行已经编译到classpath中的模块，例如{@code java -cp Javathon.jar:out.jar chire.python.PyLauncher main}。
+ * 可以先进行一次训练运行生成动态CDS归档，之后的运行直接从归档映射运行库与模块的类，省去加载与校验。
+ * 由自定义类加载器定义的类不会进入归档，因此需要使用编译好的jar而不是{@link PyInterpreter}；classpath中也不能有非空的目录。
+ */
+public class PyLauncher {
+    /**
+     * @param args [--dump-cds archive | --cds archive] [classPath]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3 && args[0].equals("--dump-cds")) {
+            System.exit(fork("-XX:ArchiveClassesAtExit=" + args[1], args[2]));
+        } else if (args.length == 3 && args[0].equals("--cds")) {
+            if (!new File(args[1]).isFile()) throw new IOException("CDS archive not found: " + args[1]);
+
+            System.exit(fork("-XX:SharedArchiveFile=" + args[1], args[2]));
+        } else if (args.length == 1) {
+            run(args[0]);
+        } else {
+            throw new RuntimeException("no key");
+        }
+    }
+
+    public static Class<?> run(String name) {
+        try {
+            return Class.forName(name, true, PyLauncher.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**以相同的classpath启动新的JVM运行模块*/
+    private static int fork(String option, String name) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add(option);
+        command.add("-Xshare:auto");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PyLauncher.class.getName());
+        command.add(name);
+
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+}
@@ -0,0 +1,218 @@
+package chire.python.asm;
+
+import chire.asm.ClassAsm;
+import chire.asm.dynamic.builder.Builder;
+import chire.python.antlr.Python3Parser;
+import chire.python.lib.escape.JPTruthSite;
+import chire.python.optimize.TypeInference;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.content.control.IfStatement;
+import chire.python.stmt.content.expr.LogicalStatement;
+import chire.python.stmt.content.expr.UnaryStatement;
+import chire.python.stmt.content.expr.VarCallStatement;
+import chire.python.stmt.type.ConstStatement;
+import chire.python.stmt.type.NumberStatement;
+import org.antlr.v4.runtime.CommonToken;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * 以跳转计算条件：and、or、not短路求值，链式比较中间的值只计算一次，
+ * 能确定为数字的比较直接比较基本类型，不创建Boolean。
+ */
+public class ConditionAsm {
+    /**
+     * 计算条件，结果为when时跳转到target，否则继续执行。栈保持不变
+     */
+    public static void jump(PyStatement condition, boolean when, Label target, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+
+        if (isConnective(condition)) {
+            LogicalStatement logical = (LogicalStatement) condition;
+
+            // and不成立、or成立时任意一边就能决定结果
+            if ("and".equals(logical.getOperator()) != when) {
+                jump(logical.left, when, target, builder);
+                jump(logical.right, when, target, builder);
+            } else {
+                Label skip = new Label();
+
+                jump(logical.left, !when, skip, builder);
+                jump(logical.right, when, target, builder);
+                classAsm.mLabel(skip);
+            }
+        } else if (isNot(condition)) {
+            jump(((UnaryStatement) condition).value, !when, target, builder);
+        } else if (condition instanceof IfStatement.ChainStatement) {
+            chain((IfStatement.ChainStatement) condition, when, target, builder);
+        } else if (condition instanceof IfStatement.JudgmentStatement && ((IfStatement.JudgmentStatement) condition).operator == null) {
+            jump(((IfStatement.JudgmentStatement) condition).left, when, target, builder);
+        } else if (condition instanceof IfStatement.JudgmentStatement && isNumber(comparison((IfStatement.JudgmentStatement) condition, classAsm))) {
+            IfStatement.JudgmentStatement judgment = (IfStatement.JudgmentStatement) condition;
+            Type operand = comparison(judgment, classAsm);
+
+            PrimitiveAsm.emit(judgment.left, operand, builder);
+            PrimitiveAsm.emit(judgment.right, operand, builder);
+            compare(judgment.operator.getText(), operand, when, target, classAsm);
+        } else {
+            Type type = PrimitiveAsm.typeOf(condition, classAsm);
+
+            if (type != null) {
+                PrimitiveAsm.emit(condition, type, builder);
+
+                // 数字与0比较，NaN为True与 Python 一致
+                if (Type.LONG_TYPE.equals(type)) {
+                    classAsm.mVisitInsn(LCONST_0);
+                    classAsm.mVisitInsn(LCMP);
+                } else if (Type.DOUBLE_TYPE.equals(type)) {
+                    classAsm.mVisitInsn(DCONST_0);
+                    classAsm.mVisitInsn(DCMPL);
+                }
+            } else {
+                PrimitiveAsm.buildObject(condition, builder);
+                truthy(classAsm);
+            }
+
+            classAsm.jumpInsn(when ? IFNE : IFEQ, target);
+        }
+    }
+
+    /**
+     * 计算条件，栈顶留下0或1
+     */
+    public static void emit(PyStatement condition, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        Label yes = new Label();
+        Label end = new Label();
+
+        jump(condition, true, yes, builder);
+        classAsm.mVisitInsn(ICONST_0);
+        classAsm.jumpInsn(GOTO, end);
+        classAsm.mLabel(yes);
+        classAsm.mVisitInsn(ICONST_1);
+        classAsm.mLabel(end);
+    }
+
+    /**
+     * 比较栈顶的两个operand类型的值，结果为when时跳转到target。double与NaN比较时除!=外均为false
+     */
+    public static void compare(String operator, Type operand, boolean when, Label target, ClassAsm classAsm) {
+        boolean less = "<".equals(operator) || "<=".equals(operator);
+
+        if (Type.DOUBLE_TYPE.equals(operand)) {
+            classAsm.mVisitInsn(less ? DCMPG : DCMPL);
+        } else {
+            classAsm.mVisitInsn(LCMP);
+        }
+
+        int opcode;
+        switch (operator) {
+            case "<":
+                opcode = when ? IFLT : IFGE;
+                break;
+            case ">":
+                opcode = when ? IFGT : IFLE;
+                break;
+            case "<=":
+                opcode = when ? IFLE : IFGT;
+                break;
+            case ">=":
+                opcode = when ? IFGE : IFLT;
+                break;
+            case "==":
+                opcode = when ? IFEQ : IFNE;
+                break;
+            default:
+                opcode = when ? IFNE : IFEQ;
+        }
+
+        classAsm.jumpInsn(opcode, target);
+    }
+
+    /**
+     * 栈顶的值按 Python 的规则转为0或1，由{@link JPTruthSite}按值的类型选择判断方式
+     */
+    public static void truthy(ClassAsm classAsm) {
+        classAsm.invokeDynamic("truthy", "(Ljava/lang/Object;)Z", JPTruthSite.class, "bootstrap");
+    }
+
+    /**@return 是否为and或or*/
+    public static boolean isConnective(PyStatement expr) {
+        if (!(expr instanceof LogicalStatement)) return false;
+
+        String operator = ((LogicalStatement) expr).getOperator();
+        return "and".equals(operator) || "or".equals(operator);
+    }
+
+    public static boolean isNot(PyStatement expr) {
+        return expr instanceof UnaryStatement && "not".equals(((UnaryStatement) expr).operator);
+    }
+
+    /**
+     * a < b < c 按顺序把除最后一个以外的值保存到隐藏的局部变量，再依次比较相邻的两个
+     */
+    private static void chain(IfStatement.ChainStatement chain, boolean when, Label target, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        Label fail = when ? new Label() : target;
+
+        List<PyStatement> operands = new ArrayList<>();
+        operands.add(store(chain.operands.get(0), builder));
+
+        for (int i = 1; i < chain.operands.size(); i++) {
+            PyStatement right = chain.operands.get(i);
+            if (i < chain.operands.size() - 1) right = store(right, builder);
+            operands.add(right);
+
+            IfStatement.JudgmentStatement judgment = new IfStatement.JudgmentStatement(operands.get(i - 1), chain.operators.get(i - 1), right);
+
+            if (when && i == chain.operands.size() - 1) {
+                jump(judgment, true, target, builder);
+            } else {
+                jump(judgment, false, fail, builder);
+            }
+        }
+
+        if (when) classAsm.mLabel(fail);
+    }
+
+    /**
+     * 计算值并保存到隐藏的局部变量，能确定为基本类型时不装箱。常量与局部变量再次读取的结果相同，不需要保存
+     * @return 读取该变量的表达式
+     */
+    private static PyStatement store(PyStatement expr, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        if (expr instanceof NumberStatement<?> || expr instanceof ConstStatement<?>) return expr;
+        if (expr instanceof VarCallStatement && classAsm.hasLocalVar(((VarCallStatement) expr).name.getText())) return expr;
+
+        String name = classAsm.hiddenName("chain");
+        Type type = PrimitiveAsm.typeOf(expr, classAsm);
+
+        if (type != null) {
+            classAsm.defineLocalVar(name, type);
+            PrimitiveAsm.emit(expr, type, builder);
+            classAsm.storeLocalVar(name);
+        } else {
+            PrimitiveAsm.buildObject(expr, builder);
+            classAsm.varInsn(name);
+        }
+
+        return new VarCallStatement(new CommonToken(Python3Parser.NAME, name));
+    }
+
+    /**@return 两边都能确定为数字时比较使用的类型，否则为null*/
+    private static Type comparison(IfStatement.JudgmentStatement judgment, ClassAsm classAsm) {
+        // 只有数字之间的比较结果为boolean
+        if (!Type.BOOLEAN_TYPE.equals(PrimitiveAsm.typeOf(judgment, classAsm))) return null;
+
+        return TypeInference.join(PrimitiveAsm.typeOf(judgment.left, classAsm), PrimitiveAsm.typeOf(judgment.right, classAsm));
+    }
+
+    private static boolean isNumber(Type type) {
+        return Type.LONG_TYPE.equals(type) || Type.DOUBLE_TYPE.equals(type);
+    }
+}
@@ -0,0 +1,113 @@
+package chire.python.asm;
+
+import chire.asm.ClassAsm;
+import chire.asm.dynamic.builder.Builder;
+import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.PyCompiler;
+import chire.python.lib.builtins.PyTuple;
+import chire.python.lib.escape.JPUtil;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.type.ConstStatement;
+import chire.python.stmt.type.NoneStatement;
+import chire.python.stmt.type.NumberStatement;
+import chire.python.stmt.type.TupleStatement;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * 把不可变的字面量提升为常量类中的static final字段(见{@link ClassAsm#constantInsn})，循环中不再重复装箱或创建元组。
+ * Integer、Long在[-128, 127]内有缓存，布尔值、字符串、None本身不会创建对象，都不需要提升。
+ */
+public class ConstantAsm {
+    private static final Object NONE = new Object();
+
+    /**
+     * @return 表达式是否需要提升为常量
+     */
+    public static boolean isHoisted(PyStatement expr) {
+        if (!PyCompiler.optimize) return false;
+
+        if (expr instanceof NumberStatement<?>) {
+            Number value = ((NumberStatement<?>) expr).getValue();
+            if (value instanceof Integer || value instanceof Long) return value.longValue() < -128 || value.longValue() > 127;
+
+            return true;
+        }
+
+        return expr instanceof TupleStatement && isConstant(expr);
+    }
+
+    /**
+     * 读取提升后的常量，表达式作为语句时丢弃结果。
+     * @return CallBuilder
+     */
+    public static Builder<?> build(PyStatement expr, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+
+        classAsm.constantInsn(key(expr), holder -> init(expr, holder));
+
+        if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(POP);
+
+        return new CallBuilder(classAsm, builder.getType());
+    }
+
+    /**只由数字、字符串、布尔值、None以及这样的元组组成*/
+    private static boolean isConstant(PyStatement expr) {
+        if (expr instanceof NumberStatement<?> || expr instanceof ConstStatement<?> || expr instanceof NoneStatement) return true;
+        if (!(expr instanceof TupleStatement)) return false;
+
+        for (PyStatement item : ((TupleStatement) expr).list) {
+            if (!isConstant(item)) return false;
+        }
+
+        return true;
+    }
+
+    /**相等的常量共用一个字段，数字的key带有装箱类型，1与1.0不会合并*/
+    private static Object key(PyStatement expr) {
+        if (expr instanceof NumberStatement<?>) return ((NumberStatement<?>) expr).getValue();
+        if (expr instanceof NoneStatement) return NONE;
+
+        if (expr instanceof ConstStatement<?>) {
+            Object value = ((ConstStatement<?>) expr).getValue();
+            return value == null ? NONE : value;
+        }
+
+        List<Object> key = new ArrayList<>();
+        key.add(PyTuple.class);
+        for (PyStatement item : ((TupleStatement) expr).list) key.add(key(item));
+
+        return key;
+    }
+
+    private static void init(PyStatement expr, ClassAsm holder) {
+        if (expr instanceof NumberStatement<?>) {
+            holder.ldcInsn(((NumberStatement<?>) expr).getValue());
+            return;
+        } else if (expr instanceof ConstStatement<?>) {
+            holder.ldcInsn(((ConstStatement<?>) expr).getValue());
+            return;
+        } else if (expr instanceof NoneStatement) {
+            holder.ldcInsn(null);
+            return;
+        }
+
+        List<PyStatement> list = ((TupleStatement) expr).list;
+
+        holder.intInsn(list.size());
+        holder.mVisitTypeInsn(ANEWARRAY, "java/lang/Object");
+
+        for (int i = 0; i < list.size(); i++) {
+            holder.mVisitInsn(DUP);
+            holder.intInsn(i);
+            init(list.get(i), holder);
+            holder.mVisitInsn(AASTORE);
+        }
+
+        holder.invokeMethod(INVOKESTATIC, Type.getInternalName(JPUtil.class), "asPyTuple", "([Ljava/lang/Object;)" + Type.getDescriptor(PyTuple.class));
+    }
+}
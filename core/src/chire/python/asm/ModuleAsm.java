@@ -0,0 +1,155 @@
+package chire.python.asm;
+
+import chire.asm.ClassAsm;
+import chire.python.optimize.SymbolTable;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.ClassStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.VarStatement;
+import chire.python.stmt.content.decl.ImportStatement;
+import org.objectweb.asm.Type;
+
+import java.util.*;
+
+/**
+ * 模块类，记录模块中定义的顶层函数与导入的其他模块，使调用处在生成字节码时就能知道被调用的方法。
+ */
+public class ModuleAsm extends ClassAsm {
+    public final Map<String, FunStatement> functions = new LinkedHashMap<>();
+
+    // from ... import 导入的其他模块的函数: 名字 -> 模块名
+    private final Map<String, String> importedFunctions = new HashMap<>();
+
+    // from ... import ... as 的名字 -> 函数在模块中的名字
+    private final Map<String, String> importedNames = new HashMap<>();
+
+    // import 导入的模块: 名字 -> 模块名
+    private final Map<String, String> importedModules = new HashMap<>();
+
+    // 模块中定义或导入的全部名字
+    private final Set<String> names = new HashSet<>();
+
+    // 模块中定义的类 -> 类中类型为Object的静态变量
+    private final Map<String, Set<String>> classFields = new HashMap<>();
+
+    private final String module;
+
+    private final SymbolTable symbols;
+
+    /**
+     * @param symbols 同一次构建中的其他模块，单独编译时为null
+     */
+    public ModuleAsm(String className, Class<?> superClass, SymbolTable symbols) {
+        super(className, superClass);
+        this.module = className;
+        this.symbols = symbols;
+    }
+
+    /**
+     * 登记模块的顶层函数、类与导入，在生成字节码之前调用，函数定义之前的调用也能直接绑定。
+     * 被重新赋值的类名与导入名字在运行时可能指向其他对象，不登记。
+     */
+    public void declare(List<PyStatement> statements) {
+        Map<String, Integer> bindings = new HashMap<>();
+
+        for (PyStatement statement : statements) {
+            if (statement instanceof FunStatement) {
+                functions.put(((FunStatement) statement).token.getText(), (FunStatement) statement);
+            } else if (statement instanceof ImportStatement) {
+                bindings.merge(((ImportStatement) statement).getName(), 1, Integer::sum);
+            } else if (statement instanceof VarStatement) {
+                bindings.merge(((VarStatement) statement).name.getText(), 1, Integer::sum);
+            } else if (statement instanceof ClassStatement) {
+                bindings.merge(((ClassStatement) statement).name.getText(), 1, Integer::sum);
+            }
+        }
+
+        names.addAll(functions.keySet());
+        names.addAll(bindings.keySet());
+
+        for (PyStatement statement : statements) {
+            if (!(statement instanceof ClassStatement)) continue;
+
+            ClassStatement classStmt = (ClassStatement) statement;
+            if (bindings.get(classStmt.name.getText()) == 1) classFields.put(classStmt.name.getText(), SymbolTable.fields(classStmt.body));
+        }
+
+        if (symbols == null) return;
+
+        for (PyStatement statement : statements) {
+            if (!(statement instanceof ImportStatement)) continue;
+
+            ImportStatement imp = (ImportStatement) statement;
+            if (bindings.get(imp.getName()) != 1) continue;
+
+            String target = symbols.resolveModule(module, imp);
+            if (target != null) {
+                importedModules.put(imp.getName(), target);
+                continue;
+            }
+
+            target = symbols.resolveFunction(module, imp);
+            if (target != null) {
+                importedFunctions.put(imp.getName(), target);
+                importedNames.put(imp.getName(), imp.getPackName());
+            }
+        }
+    }
+
+    /**
+     * 模块中的函数优先于导入的同名函数，与运行时的查找顺序一致
+     * @return 以(Object...)Object签名直接调用name时方法所在的类，不能直接调用时为null
+     */
+    public String ownerOf(String name, int arity) {
+        FunStatement fun = functions.get(name);
+        if (fun != null) return fun.args.size() == arity ? className : null;
+
+        String target = importedFunctions.get(name);
+        if (target == null) return null;
+
+        return symbols.arity(target, importedNames.get(name)) == arity ? target.replace('.', '/') : null;
+    }
+
+    /**@return from ... import ... as 导入的函数在原模块中的名字*/
+    public String functionName(String name) {
+        return functions.containsKey(name) ? name : importedNames.getOrDefault(name, name);
+    }
+
+    /**
+     * @return 调用import导入的模块中的函数(module.function(...))能直接调用时为模块类，否则为null
+     */
+    public String ownerOf(String module, String function, int arity) {
+        String target = importedModules.get(module);
+        if (target == null || hasLocalVar(module)) return null;
+
+        return symbols.arity(target, function) == arity ? target.replace('.', '/') : null;
+    }
+
+    /**
+     * 读写导入的模块或模块中定义的类的静态变量(key.name)
+     * @return 能直接读写时为变量所在的类，否则为null
+     */
+    public String fieldOwner(String key, String name) {
+        if (hasLocalVar(key)) return null;
+
+        String target = importedModules.get(key);
+        if (target != null) return symbols.hasField(target, name) ? target.replace('.', '/') : null;
+
+        Set<String> fields = classFields.get(key);
+        return fields != null && fields.contains(name) ? className + "$" + key : null;
+    }
+
+    /**@return name没有被模块或当前函数中的名字覆盖时为内置函数*/
+    public boolean isBuiltin(String name) {
+        return !names.contains(name) && !hasLocalVar(name);
+    }
+
+    /**@return 参数与返回值都为Object的方法描述符*/
+    public static String descriptor(int arity) {
+        Type object = Type.getType(Object.class);
+        Type[] parameters = new Type[arity];
+        Arrays.fill(parameters, object);
+
+        return Type.getMethodDescriptor(object, parameters);
+    }
+}
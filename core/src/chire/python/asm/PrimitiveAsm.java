@@ -0,0 +1,261 @@
+package chire.python.asm;
+
+import chire.asm.ClassAsm;
+import chire.asm.dynamic.builder.Builder;
+import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.lib.escape.JPOperators;
+import chire.python.optimize.TypeInference;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.control.IfStatement;
+import chire.python.stmt.content.expr.FunCallStatement;
+import chire.python.stmt.content.expr.LogicalStatement;
+import chire.python.stmt.content.expr.UnaryStatement;
+import chire.python.stmt.content.expr.VarCallStatement;
+import chire.python.stmt.type.ConstStatement;
+import chire.python.stmt.type.NumberStatement;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * 以基本类型计算{@link TypeInference#typeOf}能确定类型的表达式，只在结果离开表达式时装箱。
+ */
+public class PrimitiveAsm {
+    private static final String OPERATORS = Type.getInternalName(JPOperators.class);
+
+    /**
+     * @return 表达式能以基本类型计算时为其类型，否则为null
+     */
+    public static Type typeOf(PyStatement expr, ClassAsm classAsm) {
+        return TypeInference.typeOf(expr, classAsm::getLocalType, functions(classAsm));
+    }
+
+    /**
+     * @return 模块中定义的顶层函数，不是模块类时为空
+     */
+    public static Map<String, FunStatement> functions(ClassAsm classAsm) {
+        return classAsm instanceof ModuleAsm ? ((ModuleAsm) classAsm).functions : Collections.emptyMap();
+    }
+
+    /**
+     * @return 名字是否为没有被覆盖的内置函数，不是模块类时无法确定，均为false
+     */
+    public static Predicate<String> builtins(ClassAsm classAsm) {
+        return classAsm instanceof ModuleAsm ? ((ModuleAsm) classAsm)::isBuiltin : name -> false;
+    }
+
+    /**
+     * @return 调用能直接绑定到基本类型签名的方法时为被调用的函数，否则为null
+     */
+    public static FunStatement callee(FunCallStatement call, ClassAsm classAsm) {
+        return TypeInference.callee(call, classAsm::getLocalType, functions(classAsm));
+    }
+
+    public static boolean isPrimitive(Type type) {
+        return type.getSort() >= Type.BOOLEAN && type.getSort() <= Type.DOUBLE;
+    }
+
+    /**
+     * 计算表达式并装箱，表达式作为语句时丢弃结果。
+     * @return CallBuilder
+     */
+    public static Builder<?> build(PyStatement expr, Type type, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+
+        emit(expr, type, builder);
+        box(type, classAsm);
+
+        if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(POP);
+
+        return new CallBuilder(classAsm, builder.getType());
+    }
+
+    /**
+     * 计算表达式，栈顶留下type类型的值。不能以基本类型计算的表达式按原来的方式计算后拆箱
+     */
+    public static void emit(PyStatement expr, Type type, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        Type actual = typeOf(expr, classAsm);
+
+        if (actual == null || !TypeInference.fits(actual, type)) {
+            buildObject(expr, builder);
+            unbox(type, classAsm);
+            return;
+        }
+
+        if (expr instanceof NumberStatement<?>) {
+            Number value = ((NumberStatement<?>) expr).getValue();
+
+            if (Type.DOUBLE_TYPE.equals(type)) {
+                classAsm.mVisitLdcInsn(value.doubleValue());
+            } else {
+                classAsm.mVisitLdcInsn(value.longValue());
+            }
+            return;
+        } else if (expr instanceof ConstStatement<?>) {
+            classAsm.mVisitInsn((Boolean) ((ConstStatement<?>) expr).getValue() ? ICONST_1 : ICONST_0);
+            return;
+        } else if (expr instanceof VarCallStatement) {
+            classAsm.loadLocalVar(((VarCallStatement) expr).name.getText());
+        } else if (ConditionAsm.isNot(expr) || expr instanceof IfStatement.ChainStatement) {
+            ConditionAsm.emit(expr, builder);
+        } else if (expr instanceof UnaryStatement) {
+            UnaryStatement unary = (UnaryStatement) expr;
+
+            emit(unary.value, actual, builder);
+
+            if ("-".equals(unary.operator) && Type.LONG_TYPE.equals(actual)) {
+                classAsm.invokeMethod(INVOKESTATIC, "java/lang/Math", "negateExact", "(J)J");
+            } else if ("-".equals(unary.operator)) {
+                classAsm.mVisitInsn(actual.getOpcode(INEG));
+            }
+        } else if (expr instanceof LogicalStatement) {
+            LogicalStatement logical = (LogicalStatement) expr;
+            binary(logical.left, logical.getOperator(), logical.right, actual, builder);
+        } else if (expr instanceof IfStatement.JudgmentStatement) {
+            IfStatement.JudgmentStatement judgment = (IfStatement.JudgmentStatement) expr;
+            binary(judgment.left, judgment.operator.getText(), judgment.right, actual, builder);
+        } else if (expr instanceof FunCallStatement) {
+            call((FunCallStatement) expr, callee((FunCallStatement) expr, classAsm), builder);
+        } else {
+            throw new RuntimeException("no key");
+        }
+
+        convert(actual, type, classAsm);
+    }
+
+    /**
+     * 与{@link #emit}相同，但表达式的类型与type不同时不转换(例如int作为float)，装箱后由{@link #unbox}检查
+     */
+    public static void emitExact(PyStatement expr, Type type, Builder<?> builder) {
+        Type actual = typeOf(expr, builder.getClassAsm());
+
+        if (actual != null && !actual.equals(type)) {
+            buildObject(expr, builder);
+            unbox(type, builder.getClassAsm());
+        } else {
+            emit(expr, type, builder);
+        }
+    }
+
+    /**
+     * 直接调用基本类型签名的方法，栈顶留下方法的返回值
+     */
+    public static void call(FunCallStatement call, FunStatement callee, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        Type[] parameters = callee.getParameterTypes();
+
+        for (int i = 0; i < parameters.length; i++) {
+            PyStatement arg = call.args.get(i);
+
+            if (parameters[i] != null) {
+                emit(arg, parameters[i], builder);
+            } else {
+                buildObject(arg, builder);
+            }
+        }
+
+        classAsm.invokeMethod(INVOKESTATIC, classAsm.className, callee.getTypedName(), callee.getDescriptor());
+    }
+
+    /**
+     * 按原来的方式计算表达式，栈顶留下Object
+     */
+    public static void buildObject(PyStatement expr, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        classAsm.setState("set-content-var", () -> expr.build(new CallBuilder(classAsm, builder.getType())));
+    }
+
+    private static void binary(PyStatement left, String operator, PyStatement right, Type type, Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        Type operand = "**".equals(operator)
+                ? Type.DOUBLE_TYPE
+                : TypeInference.join(typeOf(left, classAsm), typeOf(right, classAsm));
+
+        emit(left, operand, builder);
+        emit(right, operand, builder);
+
+        String descriptor = "(" + operand.getDescriptor() + operand.getDescriptor() + ")" + type.getDescriptor();
+
+        switch (operator) {
+            case "+":
+                arithmetic("addExact", IADD, operand, classAsm);
+                break;
+            case "-":
+                arithmetic("subtractExact", ISUB, operand, classAsm);
+                break;
+            case "*":
+                arithmetic("multiplyExact", IMUL, operand, classAsm);
+                break;
+            case "/":
+                if (Type.LONG_TYPE.equals(operand)) {
+                    classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "div", descriptor);
+                } else {
+                    classAsm.mVisitInsn(operand.getOpcode(IDIV));
+                }
+                break;
+            case "//":
+                classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "floordiv", descriptor);
+                break;
+            case "%":
+                classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "mod", descriptor);
+                break;
+            case "**":
+                classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "pow", descriptor);
+                break;
+            default:
+                compare(operator, operand, classAsm);
+        }
+    }
+
+    /**long与JPOperators一致，溢出时抛出ArithmeticException而不是回绕*/
+    private static void arithmetic(String exact, int opcode, Type operand, ClassAsm classAsm) {
+        if (Type.LONG_TYPE.equals(operand)) {
+            classAsm.invokeMethod(INVOKESTATIC, "java/lang/Math", exact, "(JJ)J");
+        } else {
+            classAsm.mVisitInsn(operand.getOpcode(opcode));
+        }
+    }
+
+    /**比较两个值，结果为0或1*/
+    private static void compare(String operator, Type operand, ClassAsm classAsm) {
+        Label yes = new Label();
+        Label end = new Label();
+
+        ConditionAsm.compare(operator, operand, true, yes, classAsm);
+        classAsm.mVisitInsn(ICONST_0);
+        classAsm.jumpInsn(GOTO, end);
+        classAsm.mLabel(yes);
+        classAsm.mVisitInsn(ICONST_1);
+        classAsm.mLabel(end);
+    }
+
+    private static void convert(Type from, Type to, ClassAsm classAsm) {
+        if (Type.LONG_TYPE.equals(from) && Type.DOUBLE_TYPE.equals(to)) classAsm.mVisitInsn(L2D);
+    }
+
+    /**拆箱为基本类型，值不正好是该类型时(例如int作为float)抛出ClassCastException，不做转换*/
+    public static void unbox(Type type, ClassAsm classAsm) {
+        if (Type.LONG_TYPE.equals(type)) {
+            classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "unboxLong", "(Ljava/lang/Object;)J");
+        } else if (Type.DOUBLE_TYPE.equals(type)) {
+            classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "unboxDouble", "(Ljava/lang/Object;)D");
+        } else if (Type.BOOLEAN_TYPE.equals(type)) {
+            classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "unboxBoolean", "(Ljava/lang/Object;)Z");
+        }
+    }
+
+    public static void box(Type type, ClassAsm classAsm) {
+        if (Type.LONG_TYPE.equals(type)) {
+            classAsm.invokeMethod(INVOKESTATIC, OPERATORS, "box", "(J)Ljava/lang/Object;");
+        } else {
+            classAsm.boxInsn(type);
+        }
+    }
+}
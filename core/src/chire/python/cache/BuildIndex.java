@@ -0,0 +1,171 @@
+package chire.python.cache;
+
+import chire.python.stmt.content.decl.ImportStatement;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * 两次构建之间保存的模块信息：源码哈希、生成的类以及import可能指向的模块。
+ * 增量编译依据它找出需要重新编译的模块。
+ */
+public class BuildIndex {
+    private static final int MAGIC = 0x4A504249;
+
+    private final String version;
+    private final Map<String, Module> modules = new TreeMap<>();
+
+    public BuildIndex(String version) {
+        this.version = version;
+    }
+
+    public Module get(String module) {
+        return modules.get(module);
+    }
+
+    public void put(String module, Module info) {
+        modules.put(module, info);
+    }
+
+    public Module remove(String module) {
+        return modules.remove(module);
+    }
+
+    public Set<String> modules() {
+        return modules.keySet();
+    }
+
+    /**
+     * @param changed 发生变化(新增、修改或删除)的模块
+     * @param existing 本次构建中存在的全部模块
+     * @return changed中仍然存在的模块，以及直接或间接import了changed的模块
+     */
+    public Set<String> affected(Set<String> changed, Set<String> existing) {
+        Map<String, Set<String>> dependents = new HashMap<>();
+
+        for (Map.Entry<String, Module> entry : modules.entrySet()) {
+            for (String target : entry.getValue().imports) {
+                dependents.computeIfAbsent(target, k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+
+        Set<String> affected = new TreeSet<>();
+        Deque<String> queue = new ArrayDeque<>(changed);
+        Set<String> visited = new HashSet<>(changed);
+
+        while (!queue.isEmpty()) {
+            String module = queue.poll();
+            if (existing.contains(module)) affected.add(module);
+
+            for (String dependent : dependents.getOrDefault(module, Collections.emptySet())) {
+                if (visited.add(dependent)) queue.add(dependent);
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * 与JPUtil.toImport的查找顺序一致，列出import在项目内可能指向的模块
+     */
+    public static List<String> imports(String module, List<ImportStatement> statements) {
+        String packPath = module.contains(".") ? module.substring(0, module.lastIndexOf(".") + 1) : "";
+        Set<String> targets = new LinkedHashSet<>();
+
+        for (ImportStatement statement : statements) {
+            String path = statement.getPath();
+            String name = statement.getPackName();
+            String full = path.isEmpty() ? name : path + "." + name;
+
+            targets.add(packPath + full);
+            targets.add(full);
+            targets.add(packPath + name);
+            if (!path.isEmpty()) {
+                targets.add(packPath + path);
+                targets.add(path);
+            }
+        }
+
+        return new ArrayList<>(targets);
+    }
+
+    /**
+     * @return 文件不存在、已损坏或由其他版本的编译器生成时为null
+     */
+    public static BuildIndex load(Path file, String version) {
+        if (!Files.isRegularFile(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(version)) return null;
+
+            BuildIndex index = new BuildIndex(version);
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String module = in.readUTF();
+                String hash = in.readUTF();
+
+                index.put(module, new Module(hash, readList(in), readList(in)));
+            }
+
+            return index;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(version);
+                out.writeInt(modules.size());
+
+                for (Map.Entry<String, Module> entry : modules.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().hash);
+                    writeList(out, entry.getValue().classes);
+                    writeList(out, entry.getValue().imports);
+                }
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> list = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            list.add(in.readUTF());
+        }
+
+        return list;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+
+        for (String value : list) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static class Module {
+        public final String hash;
+        public final List<String> classes;
+        public final List<String> imports;
+
+        public Module(String hash, List<String> classes, List<String> imports) {
+            this.hash = hash;
+            this.classes = classes;
+            this.imports = imports;
+        }
+    }
+}
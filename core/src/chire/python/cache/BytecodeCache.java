@@ -0,0 +1,113 @@
+package chire.python.cache;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 编译结果的磁盘缓存，作用类似于__pycache__。
+ * 以源码、类名、编译器版本与目标选项的哈希为键，命中时无需再经过词法分析与ASM生成。
+ */
+public class BytecodeCache {
+    private static final int MAGIC = 0x4A505943;
+
+    private final Path directory;
+
+    public BytecodeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public String key(String className, String source, String version, String options) {
+        return hash(version, options, className, source);
+    }
+
+    /**
+     * 各部分带长度前缀后计算SHA-256，避免不同的拆分方式得到相同的哈希
+     */
+    public static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                digest.update((byte) (bytes.length >>> 24));
+                digest.update((byte) (bytes.length >>> 16));
+                digest.update((byte) (bytes.length >>> 8));
+                digest.update((byte) bytes.length);
+                digest.update(bytes);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return 缓存的类，未命中或缓存文件损坏时为null
+     */
+    public Map<String, byte[]> get(String key) {
+        Path file = directory.resolve(key + ".jpc");
+        if (!Files.isRegularFile(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) return null;
+
+            int count = in.readInt();
+            Map<String, byte[]> clazzes = new LinkedHashMap<>();
+
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytecode = new byte[in.readInt()];
+                in.readFully(bytecode);
+
+                clazzes.put(name, bytecode);
+            }
+
+            return clazzes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(String key, Map<String, byte[]> clazzes) throws IOException {
+        Files.createDirectories(directory);
+
+        // 先写入临时文件再替换，其他线程或进程不会读到写了一半的缓存
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(clazzes.size());
+
+                for (Map.Entry<String, byte[]> entry : clazzes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+
+            try {
+                Files.move(temp, directory.resolve(key + ".jpc"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, directory.resolve(key + ".jpc"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package chire.python.jar;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**接收编译生成的类，生成一个写入一个，不必等待全部编译完成*/
+@FunctionalInterface
+public interface ClassSink extends Closeable {
+    /**
+     * @param className 内部类名，例如 chire/py/main
+     */
+    void write(String className, byte[] bytecode) throws IOException;
+
+    /**
+     * 编译失败时代替{@link #close()}调用，放弃已写入的类，之后的close不再产生输出
+     */
+    default void abort() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
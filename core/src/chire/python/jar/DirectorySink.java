@@ -0,0 +1,22 @@
+package chire.python.jar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**将类写入目录，目录可以位于任意文件系统中，例如jar的ZipFileSystem*/
+public class DirectorySink implements ClassSink {
+    private final Path root;
+
+    public DirectorySink(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public void write(String className, byte[] bytecode) throws IOException {
+        Path file = root.resolve(className.replace('.', '/') + ".class");
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+
+        Files.write(file, bytecode);
+    }
+}
@@ -1,46 +1,66 @@
 package chire.python.jar;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Map;
-import java.util.jar.*;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
 public class JarExporter {
-    public static void saveJar(Map<String, byte[]> classBytes, String jarFilePath) throws IOException {
-        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFilePath))) {
-            for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
-                String className = entry.getKey();
-                byte[] bytecode = entry.getValue();
-
-                String entryName = className.replace('.', '/') + ".class";
-                JarEntry jarEntry = new JarEntry(entryName);
-                jos.putNextEntry(jarEntry);
-                jos.write(bytecode);
-                jos.closeEntry();
-            }
+    /**{@link ZipEntry#DEFLATED}或{@link ZipEntry#STORED}，不压缩的jar加载类更快*/
+    public static int method = ZipEntry.DEFLATED;
+
+    public static int level = Deflater.DEFAULT_COMPRESSION;
+
+    /**并行压缩jar条目的线程数*/
+    public static int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 名称以{@code .jar}结尾时视为jar，否则视为目录
+     */
+    public static ClassSink open(File output) throws IOException {
+        if (isJar(output)) {
+            return new JarSink(output.toPath(), method, level, threads);
+        } else {
+            return new DirectorySink(output.toPath());
         }
     }
 
-    public static void saveClass(Map<String, byte[]> classBytes, String outPath) throws IOException {
-        for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
-            String className = entry.getKey();
-            byte[] bytecode = entry.getValue();
+    public static boolean isJar(File output) {
+        return output.getName().toLowerCase(Locale.ROOT).endsWith(".jar");
+    }
 
-            String entryName = className.replace('.', '/') + ".class";
+    public static void saveJar(Map<String, byte[]> classBytes, String jarFilePath) throws IOException {
+        save(classBytes, new JarSink(Path.of(jarFilePath), method, level, threads));
+    }
 
-            File file = new File(outPath + "/" + entryName);
+    /**写入{@link #open(File)}得到的sink*/
+    public static void saveTo(Map<String, byte[]> classBytes, File output) throws IOException {
+        save(classBytes, open(output));
+    }
 
-            if (!file.getParentFile().exists()) {
-                file.getParentFile().mkdirs();
+    /**写入失败时放弃输出，已有的jar不会被部分写入的jar覆盖*/
+    private static void save(Map<String, byte[]> classBytes, ClassSink sink) throws IOException {
+        try (ClassSink closing = sink) {
+            try {
+                write(classBytes, closing);
+            } catch (Throwable e) {
+                closing.abort();
+                throw e;
             }
+        }
+    }
 
-            if (!file.exists()) {
-                file.createNewFile();
-            }
+    public static void saveClass(Map<String, byte[]> classBytes, String outPath) throws IOException {
+        write(classBytes, new DirectorySink(Path.of(outPath)));
+    }
 
-            try (BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(
-                    new FileOutputStream(file))) {
-                bufferedOutputStream.write(bytecode);
-            }
+    /**按类名顺序写入，保证输出稳定*/
+    public static void write(Map<String, byte[]> classBytes, ClassSink sink) throws IOException {
+        for (Map.Entry<String, byte[]> entry : new TreeMap<>(classBytes).entrySet()) {
+            sink.write(entry.getKey(), entry.getValue());
         }
     }
 }
@@ -0,0 +1,278 @@
+package chire.python.jar;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * 流式写出jar，每个条目在线程池中独立压缩，压缩后的数据先按完成顺序写入输出旁的临时文件，
+ * 关闭时再按类名顺序复制到jar中。同时在压缩的条目最多为窗口大小，内存中只保留每个条目的位置，
+ * 内存占用不随类的数量增长。条目的顺序与写入顺序无关，且使用固定的时间戳，相同的输入总是得到相同的jar。
+ * 调用{@link #abort()}后只删除临时文件，原有的jar保持不变。
+ */
+public class JarSink implements ClassSink {
+    // 1980-01-01 00:00:00，zip格式能表示的最早时间
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (1 << 5) | 1;
+
+    private final Path path;
+    private final Path temp;
+    private final OutputStream data;
+    private final int method;
+    private final int level;
+
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<Entry>> pending = new ArrayDeque<>();
+    private final int window;
+
+    private final Set<String> names = new HashSet<>();
+    // 类名 -> 已写入临时文件的条目
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private long dataSize = 0;
+
+    private boolean aborted = false;
+
+    /**
+     * @param method {@link ZipEntry#STORED}或{@link ZipEntry#DEFLATED}
+     * @param level 压缩等级，见{@link Deflater}
+     * @param threads 压缩使用的线程数，不大于1时在写入线程中压缩
+     */
+    public JarSink(Path path, int method, int level, int threads) throws IOException {
+        if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) throw new IllegalArgumentException("method: " + method);
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        this.path = path;
+        this.temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        this.data = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16);
+        this.method = method;
+        this.level = level;
+        this.executor = method == ZipEntry.DEFLATED && threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        this.window = Math.max(1, threads) * 2;
+    }
+
+    @Override
+    public void write(String className, byte[] bytecode) throws IOException {
+        String name = className.replace('.', '/') + ".class";
+        if (!names.add(name)) throw new ZipException("duplicate entry: " + name);
+
+        if (executor == null) {
+            store(entry(name, bytecode));
+            return;
+        }
+
+        pending.add(executor.submit(() -> entry(name, bytecode)));
+        if (pending.size() >= window) store(await(pending.poll()));
+    }
+
+    private Entry entry(String name, byte[] bytecode) {
+        CRC32 crc = new CRC32();
+        crc.update(bytecode, 0, bytecode.length);
+
+        if (method == ZipEntry.DEFLATED) {
+            byte[] compressed = deflate(bytecode);
+
+            // 压缩后反而更大的条目直接存储
+            if (compressed.length < bytecode.length) {
+                return new Entry(name, ZipEntry.DEFLATED, crc.getValue(), bytecode.length, compressed);
+            }
+        }
+
+        return new Entry(name, ZipEntry.STORED, crc.getValue(), bytecode.length, bytecode);
+    }
+
+    private byte[] deflate(byte[] bytecode) {
+        Deflater deflater = new Deflater(level, true);
+
+        try {
+            deflater.setInput(bytecode);
+            deflater.finish();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytecode.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**压缩后的数据追加到临时文件，只保留它的位置*/
+    private void store(Entry entry) throws IOException {
+        data.write(entry.data);
+
+        entries.put(entry.name, new Entry(entry.name, entry.method, entry.crc, entry.size, entry.data.length, dataSize));
+        dataSize += entry.data.length;
+    }
+
+    /**按类名顺序从临时文件复制全部条目，最后写入中央目录*/
+    private void writeJar() throws IOException {
+        if (entries.size() >= 0xFFFF) throw new ZipException("too many entries for a jar without zip64");
+
+        ByteArrayOutputStream central = new ByteArrayOutputStream();
+        long offset = 0;
+
+        try (FileChannel source = FileChannel.open(temp, StandardOpenOption.READ);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            byte[] buffer = new byte[1 << 16];
+
+            for (Entry entry : entries.values()) {
+                if (offset > 0xFFFFFFFFL) throw new ZipException("too many entries for a jar without zip64");
+
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+
+                ByteBuffer local = header(30 + name.length);
+                local.putInt(0x04034b50);
+                putCommon(local, entry, name.length);
+                local.putShort((short) 0);
+                local.put(name);
+                out.write(local.array());
+
+                for (long copied = 0; copied < entry.length; ) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, entry.length - copied));
+                    int read = source.read(chunk, entry.position + copied);
+                    if (read < 0) throw new EOFException(temp.toString());
+
+                    out.write(buffer, 0, read);
+                    copied += read;
+                }
+
+                ByteBuffer record = header(46 + name.length);
+                record.putInt(0x02014b50);
+                record.putShort((short) 20);
+                putCommon(record, entry, name.length);
+                record.putShort((short) 0);
+                record.putShort((short) 0);
+                record.putShort((short) 0);
+                record.putShort((short) 0);
+                record.putInt(0);
+                record.putInt((int) offset);
+                record.put(name);
+                central.write(record.array());
+
+                offset += local.capacity() + entry.length;
+            }
+
+            ByteBuffer end = header(22);
+            end.putInt(0x06054b50);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) entries.size());
+            end.putShort((short) entries.size());
+            end.putInt(central.size());
+            end.putInt((int) offset);
+            end.putShort((short) 0);
+
+            central.writeTo(out);
+            out.write(end.array());
+        }
+    }
+
+    private static ByteBuffer header(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putCommon(ByteBuffer buffer, Entry entry, int nameLength) {
+        buffer.putShort((short) 20);
+        buffer.putShort((short) 0x0800);
+        buffer.putShort((short) entry.method);
+        buffer.putShort((short) DOS_TIME);
+        buffer.putShort((short) DOS_DATE);
+        buffer.putInt((int) entry.crc);
+        buffer.putInt((int) entry.length);
+        buffer.putInt(entry.size);
+        buffer.putShort((short) nameLength);
+    }
+
+    private static Entry await(Future<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void abort() throws IOException {
+        if (aborted) return;
+        aborted = true;
+
+        try {
+            data.close();
+        } finally {
+            if (executor != null) executor.shutdownNow();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (aborted) return;
+
+        try {
+            try {
+                while (!pending.isEmpty()) {
+                    store(await(pending.poll()));
+                }
+            } finally {
+                data.close();
+            }
+
+            writeJar();
+        } finally {
+            if (executor != null) executor.shutdownNow();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static class Entry {
+        final String name;
+        final int method;
+        final long crc;
+        final int size;
+        // 压缩后的数据，写入临时文件后为null
+        final byte[] data;
+        final long length;
+        final long position;
+
+        Entry(String name, int method, long crc, int size, byte[] data) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.length = data.length;
+            this.position = -1;
+        }
+
+        Entry(String name, int method, long crc, int size, long length, long position) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = null;
+            this.length = length;
+            this.position = position;
+        }
+    }
+}
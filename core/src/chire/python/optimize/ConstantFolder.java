@@ -0,0 +1,263 @@
+package chire.python.optimize;
+
+import chire.python.antlr.Python3Parser;
+import chire.python.lib.escape.JPOperatorSite;
+import chire.python.lib.escape.JPOperators;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.ClassStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.VarStatement;
+import chire.python.stmt.content.control.ForStatement;
+import chire.python.stmt.content.control.IfStatement;
+import chire.python.stmt.content.control.ReturnStatement;
+import chire.python.stmt.content.control.WhileStatement;
+import chire.python.stmt.content.decl.IndexStatement;
+import chire.python.stmt.content.expr.*;
+import chire.python.stmt.type.*;
+import org.antlr.v4.runtime.CommonToken;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 语法树到字节码之间的优化：折叠由数字、字符串、布尔常量组成的表达式，删除条件为常量的if/while中不会执行的分支。
+ * 运算在编译期通过{@link JPOperatorSite}执行，结果与运行时一致；运算抛出异常时（例如除以0）保留原表达式。
+ */
+public class ConstantFolder {
+    /**折叠后字符串的最大长度，避免 "a" * 100000 之类的表达式撑大常量池*/
+    public static int maxStringLength = 4096;
+
+    private static final Object NOT_CONSTANT = new Object();
+
+    public ArrayList<PyStatement> fold(ArrayList<PyStatement> statements) {
+        ArrayList<PyStatement> folded = new ArrayList<>(statements.size());
+
+        for (PyStatement statement : statements) {
+            foldStatement(statement, folded);
+        }
+
+        return folded;
+    }
+
+    private void foldStatement(PyStatement statement, ArrayList<PyStatement> out) {
+        if (statement instanceof IfStatement) {
+            foldIf((IfStatement) statement, out);
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStmt = (WhileStatement) statement;
+            PyStatement conditions = foldExpr(whileStmt.conditions);
+
+            // while False: 整个循环都不会执行
+            Object value = constant(conditions);
+            if (value != NOT_CONSTANT && !JPOperators.truthy(value)) return;
+
+            out.add(new WhileStatement(conditions, fold(whileStmt.statements)));
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStmt = (ForStatement) statement;
+            out.add(new ForStatement(forStmt.variable, foldExpr(forStmt.iterable), fold(forStmt.body)));
+        } else if (statement instanceof FunStatement) {
+            replace(((FunStatement) statement).statements);
+            out.add(statement);
+        } else if (statement instanceof ClassStatement) {
+            replace(((ClassStatement) statement).body);
+            out.add(statement);
+        } else if (statement instanceof VarStatement) {
+            VarStatement var = (VarStatement) statement;
+            var.value = foldExpr(var.value);
+            out.add(var);
+        } else if (statement instanceof ReturnStatement) {
+            ReturnStatement returnStmt = (ReturnStatement) statement;
+            out.add(returnStmt.returnStmt == null ? returnStmt : new ReturnStatement(foldExpr(returnStmt.returnStmt)));
+        } else {
+            out.add(foldExpr(statement));
+        }
+    }
+
+    private void replace(ArrayList<PyStatement> statements) {
+        ArrayList<PyStatement> folded = fold(statements);
+        statements.clear();
+        statements.addAll(folded);
+    }
+
+    /**条件为常量时把执行的分支直接展开到外层*/
+    private void foldIf(IfStatement ifStmt, ArrayList<PyStatement> out) {
+        PyStatement conditions = foldExpr(ifStmt.conditions);
+        Object value = constant(conditions);
+
+        if (value == NOT_CONSTANT) {
+            out.add(new IfStatement(conditions, fold(ifStmt.statements), foldElse(ifStmt.elseStatement)));
+        } else if (JPOperators.truthy(value)) {
+            out.addAll(fold(ifStmt.statements));
+        } else if (ifStmt.elseStatement != null) {
+            IfStatement elseStmt = ifStmt.elseStatement;
+
+            if (elseStmt.conditions == null) {
+                out.addAll(fold(elseStmt.statements));
+            } else {
+                foldIf(elseStmt, out);
+            }
+        }
+    }
+
+    private IfStatement foldElse(IfStatement elseStmt) {
+        if (elseStmt == null) return null;
+        if (elseStmt.conditions == null) return new IfStatement(null, fold(elseStmt.statements));
+
+        PyStatement conditions = foldExpr(elseStmt.conditions);
+        Object value = constant(conditions);
+
+        if (value == NOT_CONSTANT) {
+            return new IfStatement(conditions, fold(elseStmt.statements), foldElse(elseStmt.elseStatement));
+        } else if (JPOperators.truthy(value)) {
+            // elif True: 之后的分支不会执行，当作else
+            return new IfStatement(null, fold(elseStmt.statements));
+        } else {
+            return foldElse(elseStmt.elseStatement);
+        }
+    }
+
+    public PyStatement foldExpr(PyStatement statement) {
+        if (statement instanceof LogicalStatement) {
+            LogicalStatement logical = (LogicalStatement) statement;
+            String operator = logical.getOperator();
+            PyStatement left = foldExpr(logical.left);
+            PyStatement right = foldExpr(logical.right);
+
+            // and/or 的左边为常量时，结果在编译期就能确定是哪一边
+            Object value = constant(left);
+            if (value != NOT_CONSTANT && ("and".equals(operator) || "or".equals(operator))) {
+                return JPOperators.truthy(value) == "and".equals(operator) ? right : left;
+            }
+
+            PyStatement folded = binary(operator, left, right);
+            if (folded != null) return folded;
+
+            return left == logical.left && right == logical.right ? logical : new LogicalStatement(left, operator, right);
+        } else if (statement instanceof IfStatement.JudgmentStatement) {
+            IfStatement.JudgmentStatement judgment = (IfStatement.JudgmentStatement) statement;
+            if (judgment.operator == null) return judgment;
+
+            PyStatement left = foldExpr(judgment.left);
+            PyStatement right = foldExpr(judgment.right);
+
+            PyStatement folded = binary(judgment.operator.getText(), left, right);
+            if (folded != null) return folded;
+
+            return left == judgment.left && right == judgment.right ? judgment : new IfStatement.JudgmentStatement(left, judgment.operator, right);
+        } else if (statement instanceof UnaryStatement) {
+            UnaryStatement unary = (UnaryStatement) statement;
+            PyStatement value = foldExpr(unary.value);
+
+            Object operand = constant(value);
+            if (operand != NOT_CONSTANT && "not".equals(unary.operator)) {
+                return literal(!JPOperators.truthy(operand));
+            } else if (operand != NOT_CONSTANT) {
+                try {
+                    PyStatement folded = literal(JPOperatorSite.unary(unary.operator, operand));
+                    if (folded != null) return folded;
+                } catch (Throwable ignored) {
+                }
+            }
+
+            return value == unary.value ? unary : new UnaryStatement(unary.operator, value);
+        } else if (statement instanceof IfStatement.ChainStatement) {
+            ((IfStatement.ChainStatement) statement).operands.replaceAll(this::foldExpr);
+        } else if (statement instanceof FunCallStatement) {
+            ((FunCallStatement) statement).args.replaceAll(this::foldExpr);
+        } else if (statement instanceof SubCallStatement) {
+            SubCallStatement subCall = (SubCallStatement) statement;
+            PyStatement key = foldExpr(subCall.key);
+            PyStatement call = foldExpr(subCall.call);
+
+            if (key != subCall.key || call != subCall.call) return new SubCallStatement(key, call);
+        } else if (statement instanceof SubSetStatement) {
+            SubSetStatement subSet = (SubSetStatement) statement;
+            PyStatement var = foldExpr(subSet.var);
+
+            if (var != subSet.var) return new SubSetStatement(subSet.key, subSet.call, var);
+        } else if (statement instanceof ListStatement) {
+            ((ListStatement) statement).list.replaceAll(this::foldExpr);
+        } else if (statement instanceof TupleStatement) {
+            ((TupleStatement) statement).list.replaceAll(this::foldExpr);
+        } else if (statement instanceof IndexStatement) {
+            IndexStatement index = (IndexStatement) statement;
+            PyStatement key = foldExpr(index.index);
+
+            if (key != index.index) return new IndexStatement(index.name, key);
+        } else if (statement instanceof SliceStatement) {
+            SliceStatement slice = (SliceStatement) statement;
+            PyStatement start = foldExpr(slice.start);
+            PyStatement stop = foldExpr(slice.stop);
+            PyStatement step = foldExpr(slice.step);
+
+            if (start != slice.start || stop != slice.stop || step != slice.step) return new SliceStatement(start, stop, step);
+        } else if (statement instanceof DictStatement) {
+            Map<PyStatement, PyStatement> args = ((DictStatement) statement).args;
+            Map<PyStatement, PyStatement> folded = new LinkedHashMap<>();
+
+            for (Map.Entry<PyStatement, PyStatement> entry : args.entrySet()) {
+                folded.put(foldExpr(entry.getKey()), foldExpr(entry.getValue()));
+            }
+
+            args.clear();
+            args.putAll(folded);
+        }
+
+        return statement;
+    }
+
+    /**@return 两边都是常量且运算成功时为折叠后的常量，否则为null*/
+    private PyStatement binary(String operator, PyStatement left, PyStatement right) {
+        // is 比较的是装箱后的对象，编译期无法确定
+        if ("is".equals(operator) || "is not".equals(operator)) return null;
+
+        Object a = constant(left);
+        Object b = constant(right);
+        if (a == NOT_CONSTANT || b == NOT_CONSTANT) return null;
+
+        try {
+            return literal(JPOperatorSite.binary(operator, a, b));
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static Object constant(PyStatement statement) {
+        if (statement instanceof NumberStatement<?>) return ((NumberStatement<?>) statement).getValue();
+        if (statement instanceof ConstStatement<?>) return ((ConstStatement<?>) statement).getValue();
+
+        return NOT_CONSTANT;
+    }
+
+    /**@return 值对应的常量节点，无法表示时为null*/
+    private static PyStatement literal(Object value) {
+        if (value == null) {
+            return new ConstStatement<>(new CommonToken(Python3Parser.NONE, "None"), Object.class);
+        } else if (value instanceof Boolean) {
+            boolean bool = (Boolean) value;
+            return new ConstStatement<>(new CommonToken(bool ? Python3Parser.TRUE : Python3Parser.FALSE, bool ? "True" : "False"), Boolean.class);
+        } else if (value instanceof String) {
+            String string = (String) value;
+            if (string.length() > maxStringLength) return null;
+
+            return new ConstStatement<>(new CommonToken(Python3Parser.STRING, "\"" + string + "\""), String.class);
+        } else if (value instanceof Integer) {
+            int number = (Integer) value;
+            if (number == Integer.MIN_VALUE) return null;
+
+            return new NumberStatement<>(number >= 0, new CommonToken(Python3Parser.NUMBER, String.valueOf(Math.abs(number))), Integer.class);
+        } else if (value instanceof Long) {
+            long number = (Long) value;
+            if (number == Long.MIN_VALUE) return null;
+
+            return new NumberStatement<>(number >= 0, new CommonToken(Python3Parser.NUMBER, String.valueOf(Math.abs(number))), Long.class);
+        } else if (value instanceof Double) {
+            double number = (Double) value;
+            boolean positive = Double.doubleToRawLongBits(number) >= 0;
+
+            return new NumberStatement<>(positive, new CommonToken(Python3Parser.NUMBER, String.valueOf(Math.abs(number))), Double.class);
+        }
+
+        return null;
+    }
+}
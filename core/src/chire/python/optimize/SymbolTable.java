@@ -0,0 +1,249 @@
+package chire.python.optimize;
+
+import chire.python.PyAstBuilder;
+import chire.python.PyCompiler;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.ClassStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.VarStatement;
+import chire.python.stmt.content.decl.ImportStatement;
+import chire.python.util.SourceScanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 一次构建中各模块的顶层函数、变量与类，调用其他模块的函数或读写其变量时据此直接生成invokestatic、getstatic与putstatic。
+ * 模块在第一次被查询或被{@link #take}时解析；解析失败的模块视为什么都没有定义，访问仍在运行时查找。
+ * 每个模块只解析一次：需要编译的模块保留语法树直到编译任务取走，之后只保留其中的定义。
+ * 解析在登记了该模块的线程中进行，不占用map的锁，同时查询同一模块的线程等待其结果。
+ */
+public class SymbolTable {
+    // 模块名 -> 源文件，不在本次构建中时为null
+    private final Function<String, Path> sources;
+
+    // 本次构建会编译的模块，其语法树由编译任务取走
+    private final Predicate<String> compiled;
+
+    private final Map<String, FutureTask<Module>> modules = new ConcurrentHashMap<>();
+
+    /**
+     * @param sources 模块名 -> 源文件，全部都会被编译
+     */
+    public SymbolTable(Map<String, Path> sources) {
+        this(sources, sources.keySet());
+    }
+
+    /**
+     * @param sources 模块名 -> 源文件
+     * @param compiled 其中会被编译的模块，其余模块只用于查询
+     */
+    public SymbolTable(Map<String, Path> sources, Set<String> compiled) {
+        this.sources = sources::get;
+        this.compiled = compiled::contains;
+    }
+
+    /**
+     * 不需要等待扫描完成，由模块名直接判断源文件是否会被扫描到，扫描的同时就可以开始编译
+     */
+    public SymbolTable(SourceScanner scanner) {
+        Map<String, Optional<Path>> located = new ConcurrentHashMap<>();
+
+        this.sources = module -> located.computeIfAbsent(module, key -> {
+            SourceScanner.Source source = scanner.source(key);
+            return Optional.ofNullable(source == null ? null : source.path);
+        }).orElse(null);
+        this.compiled = module -> true;
+    }
+
+    public boolean contains(String module) {
+        return sources.apply(module) != null;
+    }
+
+    /**
+     * @return 模块顶层函数的参数个数，没有这个函数时为-1
+     */
+    public int arity(String module, String function) {
+        if (!contains(module)) return -1;
+
+        Module symbols = module(module);
+        return symbols.classes.contains(function) ? -1 : symbols.functions.getOrDefault(function, -1);
+    }
+
+    /**
+     * @return 模块顶层没有类型注解的变量，即类型为Object的静态变量
+     */
+    public boolean hasField(String module, String field) {
+        return contains(module) && module(module).fields.contains(field);
+    }
+
+    /**
+     * 与JPUtil.toImport的查找顺序一致
+     * @return import指向本次构建中的模块时为模块名，否则为null
+     */
+    public String resolveModule(String importer, ImportStatement statement) {
+        String packPath = packPath(importer);
+        String path = statement.getPath();
+        String name = statement.getPackName();
+
+        List<String> candidates = path.isEmpty()
+                ? Collections.singletonList(packPath + name)
+                : Arrays.asList(packPath + path + "." + name, path + "." + name, packPath + name);
+
+        for (String candidate : candidates) {
+            if (contains(candidate)) return candidate;
+        }
+
+        return null;
+    }
+
+    /**
+     * 与JPUtil.toImport的查找顺序一致，同名的模块与类优先于函数
+     * @return import指向本次构建中某个模块的顶层函数时为该模块名，否则为null
+     */
+    public String resolveFunction(String importer, ImportStatement statement) {
+        String path = statement.getPath();
+        String name = statement.getPackName();
+
+        if (path.isEmpty() || resolveModule(importer, statement) != null) return null;
+
+        List<String> candidates = Arrays.asList(packPath(importer) + path, path);
+
+        for (String candidate : candidates) {
+            if (contains(candidate) && module(candidate).classes.contains(name)) return null;
+        }
+
+        for (String candidate : candidates) {
+            if (contains(candidate)) return arity(candidate, name) >= 0 ? candidate : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * 编译模块时取得其语法树，已经被查询过的模块不再重新解析。每个模块只能取一次
+     * @throws IOException 读取源文件失败
+     */
+    public Parsed take(String module) throws IOException {
+        Module symbols = module(module);
+        if (symbols.error instanceof IOException) throw (IOException) symbols.error;
+        if (symbols.error instanceof RuntimeException) throw (RuntimeException) symbols.error;
+
+        Parsed parsed;
+        synchronized (symbols) {
+            parsed = symbols.parsed;
+            symbols.parsed = null;
+        }
+
+        if (parsed == null) throw new RuntimeException("no key: " + module);
+        return parsed;
+    }
+
+    private Module module(String module) {
+        FutureTask<Module> task = modules.get(module);
+
+        if (task == null) {
+            FutureTask<Module> created = new FutureTask<>(() -> load(module));
+            task = modules.putIfAbsent(module, created);
+
+            if (task == null) {
+                task = created;
+                task.run();
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            // load已经处理了IOException与RuntimeException，这里只会是Error
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private Module load(String module) {
+        try {
+            PyAstBuilder ast = new PyAstBuilder(PyCompiler.parse(Files.readString(sources.apply(module))));
+            ArrayList<PyStatement> statements = ast.parse();
+
+            return new Module(statements, compiled.test(module) ? new Parsed(statements, ast.imports) : null, null);
+        } catch (IOException | RuntimeException e) {
+            return new Module(Collections.emptyList(), null, e);
+        }
+    }
+
+    /**
+     * 只看顶层语句中定义的静态变量，没有类型注解的变量才是Object类型
+     * @return 变量名，同一个名字有带类型注解的赋值时不包含
+     */
+    public static Set<String> fields(List<PyStatement> statements) {
+        Set<String> fields = new HashSet<>();
+        Set<String> typed = new HashSet<>();
+
+        for (PyStatement statement : statements) {
+            if (statement instanceof VarStatement && ((VarStatement) statement).index == null) {
+                VarStatement var = (VarStatement) statement;
+                (var.type == null ? fields : typed).add(var.name.getText());
+            } else if (statement instanceof ImportStatement) {
+                fields.add(((ImportStatement) statement).getName());
+            }
+        }
+
+        fields.removeAll(typed);
+        return fields;
+    }
+
+    /**模块的语法树*/
+    public static class Parsed {
+        public final ArrayList<PyStatement> statements;
+
+        public final List<ImportStatement> imports;
+
+        Parsed(ArrayList<PyStatement> statements, List<ImportStatement> imports) {
+            this.statements = statements;
+            this.imports = imports;
+        }
+    }
+
+    private static class Module {
+        // 函数名 -> 参数个数
+        final Map<String, Integer> functions = new HashMap<>();
+        final Set<String> fields;
+        // 同名的类在import时优先于函数
+        final Set<String> classes = new HashSet<>();
+
+        // 还没有被编译任务取走的语法树
+        Parsed parsed;
+        // 解析失败的原因，编译时抛出
+        final Exception error;
+
+        Module(List<PyStatement> statements, Parsed parsed, Exception error) {
+            this.parsed = parsed;
+            this.error = error;
+
+            for (PyStatement statement : statements) {
+                if (statement instanceof FunStatement) {
+                    functions.put(((FunStatement) statement).token.getText(), ((FunStatement) statement).args.size());
+                } else if (statement instanceof ClassStatement) {
+                    classes.add(((ClassStatement) statement).name.getText());
+                }
+            }
+
+            fields = fields(statements);
+        }
+    }
+
+    private static String packPath(String module) {
+        return module.contains(".") ? module.substring(0, module.lastIndexOf(".") + 1) : "";
+    }
+}
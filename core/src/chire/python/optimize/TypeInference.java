@@ -0,0 +1,401 @@
+package chire.python.optimize;
+
+import chire.python.antlr.Python3Parser;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.VarStatement;
+import chire.python.stmt.content.control.ForStatement;
+import chire.python.stmt.content.control.IfStatement;
+import chire.python.stmt.content.control.ReturnStatement;
+import chire.python.stmt.content.control.WhileStatement;
+import chire.python.stmt.content.control.YieldStatement;
+import chire.python.stmt.content.decl.ArgStatement;
+import chire.python.stmt.content.decl.IndexStatement;
+import chire.python.stmt.content.decl.ParametersStatement;
+import chire.python.stmt.content.expr.*;
+import chire.python.stmt.type.*;
+import org.antlr.v4.runtime.CommonToken;
+import org.objectweb.asm.Type;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 推断函数中哪些局部变量可以使用基本类型：python的int为long，float为double，比较的结果为boolean。
+ * 函数体顶层(不在if、while、for中)的每一次赋值开始变量的一个新版本，每个版本单独推断并使用自己的局部变量；
+ * if、while、for中的赋值属于当时的版本。一个版本的每一次赋值都必须能确定为同一种类型，
+ * int与float混合时仍为Object，int的值不会以double保存。
+ * 参数、for循环变量(range循环除外)、下标赋值的变量以及在第一次赋值之前就被读取的变量仍为Object。
+ * 有类型注解的参数(只在基本类型签名的方法中)和可以直接绑定的函数调用使用注解的类型。
+ * 生成器的局部变量保存在帧中，不区分版本。
+ */
+public class TypeInference {
+    // 推断过程中还没有确定类型的变量，最终仍未确定的变量为Object
+    private static final Type UNKNOWN = Type.VOID_TYPE;
+
+    private static final Set<String> ARITHMETIC = new HashSet<>(Arrays.asList("+", "-", "*", "/", "//", "%", "**"));
+
+    private static final Set<String> COMPARISON = new HashSet<>(Arrays.asList("<", ">", "<=", ">=", "==", "!=", "<>"));
+
+    // 编译为计数循环的range的循环变量每次被赋值为int
+    private static final PyStatement RANGE_ITEM = new NumberStatement<>(new CommonToken(Python3Parser.NUMBER, "0"), Integer.class);
+
+    /**
+     * @param typed 参数是否按注解使用基本类型，桥接方法中按没有注解执行时为false
+     * @param builtins 名字是否为没有被覆盖的内置函数
+     * @return 使用基本类型的局部变量及变量的各个版本
+     */
+    public static Locals infer(FunStatement fun, boolean typed, Map<String, FunStatement> functions, Predicate<String> builtins) {
+        // 版本 -> 赋值；第一个版本以变量名表示，之后的版本为`变量名#序号`
+        Map<String, List<Assignment>> assignments = new LinkedHashMap<>();
+        Set<String> assigned = new HashSet<>();
+        Set<String> excluded = new HashSet<>();
+        // 按循环出现的顺序，局部变量的编号在每次编译中相同
+        Map<ForStatement, String> ranges = new LinkedHashMap<>();
+        Map<VarStatement, String> versions = new IdentityHashMap<>();
+
+        for (ArgStatement arg : fun.args) {
+            excluded.add(arg.token.getText());
+            assigned.add(arg.token.getText());
+        }
+
+        // 变量名 -> 当前的版本，没有时为第一个版本
+        Map<String, String> scope = new HashMap<>();
+        boolean split = !fun.isGenerator();
+
+        for (PyStatement statement : fun.statements) {
+            if (split && statement instanceof VarStatement && ((VarStatement) statement).index == null) {
+                VarStatement var = (VarStatement) statement;
+                String name = var.name.getText();
+                String version = name + "#" + (versions.size() + 1);
+
+                // 右边仍读取之前的版本
+                reads(var.value, assigned, excluded);
+                assignments.computeIfAbsent(version, key -> new ArrayList<>()).add(new Assignment(var.value, scope));
+                assigned.add(name);
+
+                scope = new HashMap<>(scope);
+                scope.put(name, version);
+                versions.put(var, version);
+            } else {
+                collect(Collections.singletonList(statement), scope, assignments, assigned, excluded, ranges);
+            }
+        }
+
+        // 与ForStatement的判断一致：range在函数中被赋值时仍按普通的for循环编译
+        boolean counted = builtins.test("range") && !assigned.contains("range");
+        for (String version : ranges.values()) {
+            if (counted) {
+                assignments.computeIfAbsent(version, key -> new ArrayList<>()).add(new Assignment(RANGE_ITEM, Collections.emptyMap()));
+            } else {
+                excluded.add(version);
+            }
+        }
+
+        Map<String, Type> types = new LinkedHashMap<>();
+        for (String version : assignments.keySet()) {
+            if (!excluded.contains(version)) types.put(version, UNKNOWN);
+        }
+
+        // 基本类型的参数已经在方法签名中声明，只参与推断
+        Map<String, Type> parameters = new HashMap<>();
+        if (typed) {
+            Type[] parameterTypes = fun.getParameterTypes();
+
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (parameterTypes[i] != null) parameters.put(fun.args.get(i).token.getText(), parameterTypes[i]);
+            }
+        }
+
+        // 类型只会从UNKNOWN变为long、double或boolean，或者被移除(Object)，因此一定会结束
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (Map.Entry<String, List<Assignment>> entry : assignments.entrySet()) {
+                Type current = types.get(entry.getKey());
+                if (current == null) continue;
+
+                Type type = current;
+                for (Assignment assignment : entry.getValue()) {
+                    Function<String, Type> locals = name -> {
+                        String version = assignment.scope.getOrDefault(name, name);
+                        return parameters.containsKey(version) ? parameters.get(version) : types.get(version);
+                    };
+
+                    type = unify(type, typeOf(assignment.value, locals, functions));
+                    if (type == null) break;
+                }
+
+                if (type == null) {
+                    types.remove(entry.getKey());
+                    changed = true;
+                } else if (!type.equals(current)) {
+                    types.put(entry.getKey(), type);
+                    changed = true;
+                }
+            }
+        }
+
+        types.values().removeIf(UNKNOWN::equals);
+
+        Locals locals = new Locals();
+        for (Map.Entry<VarStatement, String> version : versions.entrySet()) {
+            locals.versions.put(version.getKey(), types.remove(version.getValue()));
+        }
+        locals.entry.putAll(types);
+
+        return locals;
+    }
+
+    /**推断的结果*/
+    public static class Locals {
+        /**在函数开始处声明的基本类型局部变量，即变量的第一个版本*/
+        public final Map<String, Type> entry = new LinkedHashMap<>();
+
+        /**开始变量新版本的顶层赋值 -> 新版本的基本类型，Object类型的版本为null*/
+        public final Map<VarStatement, Type> versions = new IdentityHashMap<>();
+    }
+
+    private static class Assignment {
+        final PyStatement value;
+
+        // 赋值处变量名 -> 版本
+        final Map<String, String> scope;
+
+        Assignment(PyStatement value, Map<String, String> scope) {
+            this.value = value;
+            this.scope = scope;
+        }
+    }
+
+    /**
+     * @param locals 局部变量的基本类型，Object类型的变量为null
+     * @return 表达式能以基本类型计算时为其类型，否则为null
+     */
+    public static Type typeOf(PyStatement expr, Function<String, Type> locals, Map<String, FunStatement> functions) {
+        if (expr instanceof NumberStatement<?>) {
+            Class<?> type = ((NumberStatement<?>) expr).type;
+            return type == Integer.class || type == Long.class ? Type.LONG_TYPE : Type.DOUBLE_TYPE;
+        } else if (expr instanceof ConstStatement<?>) {
+            return ((ConstStatement<?>) expr).type == Boolean.class ? Type.BOOLEAN_TYPE : null;
+        } else if (expr instanceof VarCallStatement) {
+            return locals.apply(((VarCallStatement) expr).name.getText());
+        } else if (expr instanceof UnaryStatement) {
+            UnaryStatement unary = (UnaryStatement) expr;
+            if ("not".equals(unary.operator)) return Type.BOOLEAN_TYPE;
+            if (!"-".equals(unary.operator) && !"+".equals(unary.operator)) return null;
+
+            Type type = typeOf(unary.value, locals, functions);
+            return type == UNKNOWN || isNumber(type) ? type : null;
+        } else if (expr instanceof LogicalStatement) {
+            LogicalStatement logical = (LogicalStatement) expr;
+            return binary(logical.getOperator(), typeOf(logical.left, locals, functions), typeOf(logical.right, locals, functions));
+        } else if (expr instanceof IfStatement.JudgmentStatement) {
+            IfStatement.JudgmentStatement judgment = (IfStatement.JudgmentStatement) expr;
+            if (judgment.operator == null) return null;
+
+            return binary(judgment.operator.getText(), typeOf(judgment.left, locals, functions), typeOf(judgment.right, locals, functions));
+        } else if (expr instanceof IfStatement.ChainStatement) {
+            return Type.BOOLEAN_TYPE;
+        } else if (expr instanceof FunCallStatement) {
+            FunStatement callee = callee((FunCallStatement) expr, locals, functions);
+            return callee == null ? null : callee.getReturnType();
+        }
+
+        return null;
+    }
+
+    /**
+     * 只有位置参数且每个基本类型参数的实参都能确定正好为对应类型时才能直接绑定，int的实参也不作为float
+     * @return 调用能直接绑定到基本类型签名的方法时为被调用的函数，否则为null
+     */
+    public static FunStatement callee(FunCallStatement call, Function<String, Type> locals, Map<String, FunStatement> functions) {
+        FunStatement fun = functions.get(call.name.getText());
+        if (fun == null || !fun.isTyped() || fun.args.size() != call.args.size()) return null;
+
+        Type[] parameters = fun.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            PyStatement arg = call.args.get(i);
+            if (arg instanceof ParametersStatement) return null;
+            if (parameters[i] == null) continue;
+
+            Type type = typeOf(arg, locals, functions);
+            if (type != UNKNOWN && !parameters[i].equals(type)) return null;
+        }
+
+        return fun;
+    }
+
+    /**
+     * @return from类型的值能否不经过装箱作为to类型使用
+     */
+    public static boolean fits(Type from, Type to) {
+        return from.equals(to) || Type.LONG_TYPE.equals(from) && Type.DOUBLE_TYPE.equals(to);
+    }
+
+    private static Type binary(String operator, Type left, Type right) {
+        if (!ARITHMETIC.contains(operator) && !COMPARISON.contains(operator)) return null;
+        if (left == null || right == null) return null;
+        if (left == UNKNOWN || right == UNKNOWN) return UNKNOWN;
+        if (!isNumber(left) || !isNumber(right)) return null;
+
+        if (COMPARISON.contains(operator)) return Type.BOOLEAN_TYPE;
+        if ("**".equals(operator)) return Type.DOUBLE_TYPE;
+
+        return join(left, right);
+    }
+
+    /**
+     * @return 两个类型共同的类型，没有时为null
+     */
+    public static Type join(Type a, Type b) {
+        if (a == UNKNOWN) return b;
+        if (b == UNKNOWN) return a;
+        if (a == null || b == null) return null;
+        if (a.equals(b)) return a;
+        if (isNumber(a) && isNumber(b)) return Type.DOUBLE_TYPE;
+
+        return null;
+    }
+
+    /**
+     * 同一个版本的两次赋值的类型，int与float也不同，int的值不能以double保存
+     * @return 相同时为该类型，否则为null
+     */
+    private static Type unify(Type a, Type b) {
+        if (a == UNKNOWN) return b;
+        if (b == UNKNOWN) return a;
+        if (a == null || b == null) return null;
+
+        return a.equals(b) ? a : null;
+    }
+
+    private static boolean isNumber(Type type) {
+        return Type.LONG_TYPE.equals(type) || Type.DOUBLE_TYPE.equals(type);
+    }
+
+    /**
+     * 按源码顺序收集赋值，并排除不能使用基本类型的版本
+     * @param scope 变量名 -> 当前的版本，这些语句中不会改变
+     */
+    private static void collect(List<PyStatement> statements, Map<String, String> scope, Map<String, List<Assignment>> assignments, Set<String> assigned, Set<String> excluded, Map<ForStatement, String> ranges) {
+        for (PyStatement statement : statements) {
+            if (statement instanceof VarStatement) {
+                VarStatement var = (VarStatement) statement;
+                String name = var.name.getText();
+                String version = scope.getOrDefault(name, name);
+
+                reads(var.value, assigned, excluded);
+
+                if (var.index != null) {
+                    reads(var.index, assigned, excluded);
+                    excluded.add(version);
+                }
+
+                assigned.add(name);
+                assignments.computeIfAbsent(version, key -> new ArrayList<>()).add(new Assignment(var.value, scope));
+            } else if (statement instanceof ForStatement) {
+                ForStatement forStmt = (ForStatement) statement;
+                String name = forStmt.variable.getText();
+                String version = scope.getOrDefault(name, name);
+
+                reads(forStmt.iterable, assigned, excluded);
+                if (forStmt.getRangeArgs() != null) {
+                    ranges.put(forStmt, version);
+                } else {
+                    excluded.add(version);
+                }
+                assigned.add(name);
+
+                collect(forStmt.body, scope, assignments, assigned, excluded, ranges);
+            } else if (statement instanceof IfStatement) {
+                for (IfStatement branch = (IfStatement) statement; branch != null; branch = branch.elseStatement) {
+                    if (branch.conditions != null) reads(branch.conditions, assigned, excluded);
+                    collect(branch.statements, scope, assignments, assigned, excluded, ranges);
+                }
+            } else if (statement instanceof WhileStatement) {
+                WhileStatement whileStmt = (WhileStatement) statement;
+
+                reads(whileStmt.conditions, assigned, excluded);
+                collect(whileStmt.statements, scope, assignments, assigned, excluded, ranges);
+            } else if (statement instanceof ReturnStatement) {
+                reads(((ReturnStatement) statement).returnStmt, assigned, excluded);
+            } else if (statement instanceof YieldStatement) {
+                reads(((YieldStatement) statement).value, assigned, excluded);
+            } else {
+                reads(statement, assigned, excluded);
+            }
+        }
+    }
+
+    /**在第一次赋值之前读取的变量可能是模块中的同名变量，不能使用基本类型*/
+    private static void reads(PyStatement expr, Set<String> assigned, Set<String> excluded) {
+        if (expr instanceof VarCallStatement) {
+            String name = ((VarCallStatement) expr).name.getText();
+            if (!assigned.contains(name)) excluded.add(name);
+        } else if (expr instanceof LogicalStatement) {
+            reads(((LogicalStatement) expr).left, assigned, excluded);
+            reads(((LogicalStatement) expr).right, assigned, excluded);
+        } else if (expr instanceof IfStatement.JudgmentStatement) {
+            reads(((IfStatement.JudgmentStatement) expr).left, assigned, excluded);
+            reads(((IfStatement.JudgmentStatement) expr).right, assigned, excluded);
+        } else if (expr instanceof IfStatement.ChainStatement) {
+            for (PyStatement operand : ((IfStatement.ChainStatement) expr).operands) reads(operand, assigned, excluded);
+        } else if (expr instanceof UnaryStatement) {
+            reads(((UnaryStatement) expr).value, assigned, excluded);
+        } else if (expr instanceof FunCallStatement) {
+            for (PyStatement arg : ((FunCallStatement) expr).args) reads(arg, assigned, excluded);
+        } else if (expr instanceof SubCallStatement) {
+            SubCallStatement subCall = (SubCallStatement) expr;
+
+            // call为属性名或方法调用，只有方法的参数才是变量
+            reads(subCall.key, assigned, excluded);
+            if (subCall.call instanceof FunCallStatement) reads(subCall.call, assigned, excluded);
+        } else if (expr instanceof SubSetStatement) {
+            reads(((SubSetStatement) expr).key, assigned, excluded);
+            reads(((SubSetStatement) expr).var, assigned, excluded);
+        } else if (expr instanceof IndexStatement) {
+            IndexStatement index = (IndexStatement) expr;
+
+            if (!assigned.contains(index.name.getText())) excluded.add(index.name.getText());
+            reads(index.index, assigned, excluded);
+        } else if (expr instanceof ParametersStatement) {
+            reads(((ParametersStatement) expr).content, assigned, excluded);
+        } else if (expr instanceof ListStatement) {
+            for (PyStatement item : ((ListStatement) expr).list) reads(item, assigned, excluded);
+        } else if (expr instanceof TupleStatement) {
+            for (PyStatement item : ((TupleStatement) expr).list) reads(item, assigned, excluded);
+        } else if (expr instanceof SliceStatement) {
+            SliceStatement slice = (SliceStatement) expr;
+
+            reads(slice.start, assigned, excluded);
+            reads(slice.stop, assigned, excluded);
+            reads(slice.step, assigned, excluded);
+        } else if (expr instanceof DictStatement) {
+            for (Map.Entry<PyStatement, PyStatement> entry : ((DictStatement) expr).args.entrySet()) {
+                reads(entry.getKey(), assigned, excluded);
+                reads(entry.getValue(), assigned, excluded);
+            }
+        } else if (expr instanceof ComprehensionStatement) {
+            ComprehensionStatement comprehension = (ComprehensionStatement) expr;
+
+            for (PyStatement clause : comprehension.clauses) {
+                reads(clause instanceof ForStatement ? ((ForStatement) clause).iterable : ((IfStatement) clause).conditions, assigned, excluded);
+            }
+            reads(comprehension.element, assigned, excluded);
+            if (comprehension.value != null) reads(comprehension.value, assigned, excluded);
+        }
+    }
+
+    /**
+     * @return 表达式中读取的变量名，按出现的顺序
+     */
+    public static Set<String> reads(PyStatement expr) {
+        Set<String> names = new LinkedHashSet<>();
+        reads(expr, Collections.emptySet(), names);
+
+        return names;
+    }
+}
@@ -1,20 +1,39 @@
 package chire.python.stmt.block;
 
+import chire.asm.ClassAsm;
 import chire.asm.args.Args;
-import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
 import chire.asm.dynamic.definition.FunctionDefinition;
 import chire.asm.util.Format;
+import chire.python.PyCompiler;
 import chire.python.asm.ModuleBuilder;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.builtins.PyGenerator;
+import chire.python.optimize.TypeInference;
 import chire.python.stmt.PyStatement;
+import chire.python.stmt.content.VarStatement;
+import chire.python.stmt.content.control.ForStatement;
+import chire.python.stmt.content.control.IfStatement;
+import chire.python.stmt.content.control.ReturnStatement;
+import chire.python.stmt.content.control.WhileStatement;
+import chire.python.stmt.content.control.YieldStatement;
 import chire.python.stmt.content.decl.ArgStatement;
+import chire.python.stmt.type.NoneStatement;
 import chire.python.util.SmartIndenter;
+import chire.python.util.type.RemoveQuotes;
 import org.antlr.v4.runtime.Token;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 public class FunStatement extends PyStatement {
 
@@ -24,44 +43,330 @@ public class FunStatement extends PyStatement {
 
     public final ArrayList<PyStatement> statements;
 
+    /**返回值注解，没有时为null*/
+    public final TypeStatement returnType;
+
     public FunStatement(Token token, ArrayList<ArgStatement> args, ArrayList<PyStatement> statements){
+        this(token, args, statements, null);
+    }
+
+    public FunStatement(Token token, ArrayList<ArgStatement> args, ArrayList<PyStatement> statements, TypeStatement returnType){
         this.args = args;
         this.token = token;
         this.statements = statements;
+        this.returnType = returnType;
+    }
+
+    /**
+     * @return 每个参数注解对应的基本类型，没有注解或不是int、float、bool时为null
+     */
+    public Type[] getParameterTypes() {
+        Type[] types = new Type[args.size()];
+
+        for (int i = 0; i < types.length; i++) {
+            TypeStatement type = args.get(i).type;
+            types[i] = type == null ? null : type.toPrimitive();
+        }
+
+        return types;
+    }
+
+    /**
+     * 只有每条路径都以带值的return结束时才使用返回值注解，
+     * if、while、for中有不带值的return或者执行到函数末尾时函数可能返回None。
+     * 按参数注解和字面量就能确定返回的值不是注解的类型时(例如`-> float`的函数返回int参数)也不使用
+     * @return 返回值注解对应的基本类型，不能使用时为null
+     */
+    public Type getReturnType() {
+        Type type = returnType == null ? null : returnType.toPrimitive();
+        if (type == null || !returns(statements)) return null;
+
+        Map<String, Type> parameters = new HashMap<>();
+        Type[] parameterTypes = getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] != null) parameters.put(args.get(i).token.getText(), parameterTypes[i]);
+        }
+
+        boolean mismatch = contains(statements, statement -> {
+            if (!(statement instanceof ReturnStatement)) return false;
+
+            PyStatement value = ((ReturnStatement) statement).returnStmt;
+            if (value instanceof NoneStatement) return true;
+
+            Type actual = TypeInference.typeOf(value, parameters::get, Collections.emptyMap());
+            return actual != null && !actual.equals(type);
+        });
+
+        return mismatch ? null : type;
+    }
+
+    /**
+     * @return 执行完这些语句之前是否一定已经返回：有return，或者有每个分支(包括else)都返回的if
+     */
+    private static boolean returns(List<PyStatement> statements) {
+        for (PyStatement statement : statements) {
+            if (statement instanceof ReturnStatement) return true;
+            if (statement instanceof IfStatement && returns((IfStatement) statement)) return true;
+        }
+
+        return false;
+    }
+
+    private static boolean returns(IfStatement statement) {
+        for (IfStatement branch = statement; branch != null; branch = branch.elseStatement) {
+            if (!returns(branch.statements)) return false;
+            if (branch.elseStatement == null) return branch.conditions == null;
+        }
+
+        return false;
+    }
+
+    /**
+     * 有基本类型的注解时生成基本类型签名的方法，原来(Object...)Object签名的方法作为桥接
+     */
+    public boolean isTyped() {
+        if (!PyCompiler.optimize || isGenerator()) return false;
+        if (getReturnType() != null) return true;
+
+        for (Type type : getParameterTypes()) {
+            if (type != null) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return 函数体中(不包括嵌套的函数与类)含有yield时为生成器
+     */
+    public boolean isGenerator() {
+        return contains(statements, statement -> statement instanceof YieldStatement);
+    }
+
+    /**
+     * @return 语句中(包括if、while、for中的语句，不包括嵌套的函数与类)是否有满足条件的语句
+     */
+    private static boolean contains(List<PyStatement> statements, Predicate<PyStatement> predicate) {
+        for (PyStatement statement : statements) {
+            if (predicate.test(statement)) return true;
+
+            if (statement instanceof ForStatement) {
+                if (contains(((ForStatement) statement).body, predicate)) return true;
+            } else if (statement instanceof WhileStatement) {
+                if (contains(((WhileStatement) statement).statements, predicate)) return true;
+            } else if (statement instanceof IfStatement) {
+                for (IfStatement branch = (IfStatement) statement; branch != null; branch = branch.elseStatement) {
+                    if (contains(branch.statements, predicate)) return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 基本类型签名的方法名，python的标识符中不会出现$，
+     * 只有返回值不同时也不会与桥接方法一起被按名字和参数查找到
+     */
+    public String getTypedName() {
+        return token.getText() + "$typed";
+    }
+
+    /**@return 基本类型签名的方法描述符*/
+    public String getDescriptor() {
+        Type object = Type.getType(Object.class);
+        Type[] parameters = getParameterTypes();
+        Type returnType = getReturnType();
+
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == null) parameters[i] = object;
+        }
+
+        return Type.getMethodDescriptor(returnType == null ? object : returnType, parameters);
     }
 
     @Override
     public Builder<?> build(Builder<?> builder) {
-        Args args = new Args();
-
         if (builder instanceof ClassBuilder) {
-            FunctionDefinition fun;
+            if (isGenerator()) {
+                ClassBuilder result = generator((ClassBuilder) builder);
 
-            for (ArgStatement arg : this.args) {
-                args.put(arg.token.getText(), Object.class);
+                return builder instanceof ModuleBuilder ? new ModuleBuilder(result.getClassAsm()) : result;
             }
 
-            fun = ((ClassBuilder) builder).defineFunction(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, token.getText(), args, Object.class);
+            FunctionDefinition fun;
+            boolean typed = isTyped();
 
-            for (PyStatement statement : this.statements) {
-                Builder<?> bui = statement.build(fun);
-                if (bui instanceof CallBuilder<?>) {
-                    fun = (FunctionDefinition) ((CallBuilder<?>) bui)._break();
-                } else {
-                    fun = (FunctionDefinition) bui;
+            if (typed) {
+                String[] names = new String[this.args.size()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = this.args.get(i).token.getText();
                 }
+
+                fun = ((ClassBuilder) builder).defineFunction(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, getTypedName(), getDescriptor(), names);
+            } else {
+                fun = ((ClassBuilder) builder).defineFunction(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, token.getText(), objectArgs(), Object.class);
             }
 
-            if (builder instanceof ModuleBuilder) {
-                return new ModuleBuilder(fun._return(re -> re.definitObj(null)._break())._back().getClassAsm());
+            fun = body(fun, typed);
+
+            ClassBuilder result;
+            if (getReturnType() != null) {
+                // 每条路径都已经返回，最后一条语句不是return时(例如if)之后的指令不会执行
+                if (!(statements.get(statements.size() - 1) instanceof ReturnStatement)) {
+                    fun.getClassAsm().mVisitInsn(Opcodes.ACONST_NULL);
+                    fun.getClassAsm().mVisitInsn(Opcodes.ATHROW);
+                }
+
+                result = fun._back();
             } else {
-                return fun._return(re -> re.definitObj(null)._break())._back();
+                result = fun._return(re -> re.definitObj(null)._break())._back();
             }
+
+            if (typed) result = bridge(result);
+
+            return builder instanceof ModuleBuilder ? new ModuleBuilder(result.getClassAsm()) : result;
         }
 
         throw new RuntimeException("no key");
     }
 
+    /**
+     * @param typed 参数是否按注解使用基本类型
+     */
+    private FunctionDefinition body(FunctionDefinition fun, boolean typed) {
+        // 只在数字之间运算的局部变量使用基本类型，第一个版本在函数开始处声明
+        TypeInference.Locals locals = null;
+        if (PyCompiler.optimize) {
+            locals = TypeInference.infer(this, typed, PrimitiveAsm.functions(fun.getClassAsm()), PrimitiveAsm.builtins(fun.getClassAsm()));
+
+            for (Map.Entry<String, Type> local : locals.entry.entrySet()) {
+                fun.getClassAsm().defineLocalVar(local.getKey(), local.getValue());
+            }
+        }
+
+        for (PyStatement statement : this.statements) {
+            // 顶层的赋值开始变量的新版本
+            if (locals != null && locals.versions.containsKey(statement)) {
+                fun = ((VarStatement) statement).redefine(fun, locals.versions.get(statement));
+                continue;
+            }
+
+            Builder<?> bui = statement.build(fun);
+            if (bui instanceof CallBuilder<?>) {
+                fun = (FunctionDefinition) ((CallBuilder<?>) bui)._break();
+            } else {
+                fun = (FunctionDefinition) bui;
+            }
+        }
+
+        return fun;
+    }
+
+    /**
+     * 生成器函数只创建帧类`函数名$gen`的实例并写入参数；函数体编译为`函数名$resume`，
+     * 局部变量保存在帧中，按帧中记录的状态跳转到上一个yield之后继续执行。
+     */
+    private ClassBuilder generator(ClassBuilder builder) {
+        ClassBuilder frame = builder.defineClass(token.getText() + "$gen", PyGenerator.class);
+        String frameClass = frame.getClassAsm().className;
+        String resumeName = token.getText() + "$resume";
+        String resumeDescriptor = "(L" + frameClass + ";)Ljava/lang/Object;";
+
+        String[] names = new String[this.args.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.args.get(i).token.getText();
+        }
+
+        FunctionDefinition fun = builder.defineFunction(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, token.getText(), objectArgs(), Object.class);
+        ClassAsm classAsm = fun.getClassAsm();
+
+        classAsm.newClass(frameClass);
+        classAsm.invokeMethod(Opcodes.INVOKESPECIAL, frameClass, "<init>", "()V");
+        for (String name : names) {
+            classAsm.mVisitInsn(Opcodes.DUP);
+            classAsm.invokeLocalVar(name);
+            classAsm.invokeVar(Opcodes.PUTFIELD, frameClass, name, "Ljava/lang/Object");
+        }
+        classAsm.toReturn(true);
+
+        FunctionDefinition resume = fun._back().defineFunction(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, resumeName, resumeDescriptor, new String[]{"$frame"});
+        resume.getClassAsm().defineFrame(frame.getClassAsm(), names);
+
+        resume = body(resume, false);
+        resume.getClassAsm().closeFrame(end -> end.invokeStaticVar(Opcodes.GETSTATIC, PyGenerator.class, "END", Object.class));
+
+        ClassBuilder result = resume._back();
+
+        FunctionDefinition next = frame.defineFunction(Opcodes.ACC_PUBLIC, "resume", new Args(), Object.class);
+        next.getClassAsm().thisInsn();
+        next.getClassAsm().invokeMethod(Opcodes.INVOKESTATIC, classAsm.className, resumeName, resumeDescriptor);
+        next._return(true)._back().make().getClassAsm().closeInnerClass();
+
+        return result;
+    }
+
+    private Args objectArgs() {
+        Args args = new Args();
+
+        for (ArgStatement arg : this.args) {
+            args.put(arg.token.getText(), Object.class);
+        }
+
+        return args;
+    }
+
+    /**
+     * (Object...)Object签名的桥接方法，供动态调用使用。注解参数的值都正好是注解的类型时
+     * (int为Integer或Long，float为Double，bool为Boolean)拆箱后调用基本类型签名的方法，
+     * 否则不转换参数，按没有注解的函数执行同一个函数体
+     */
+    private ClassBuilder bridge(ClassBuilder builder) {
+        FunctionDefinition bridge = builder.defineFunction(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, token.getText(), objectArgs(), Object.class);
+        ClassAsm classAsm = bridge.getClassAsm();
+        Type[] parameters = getParameterTypes();
+        Label untyped = new Label();
+
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] != null) guard(this.args.get(i).token.getText(), parameters[i], untyped, classAsm);
+        }
+
+        for (int i = 0; i < parameters.length; i++) {
+            classAsm.invokeLocalVar(this.args.get(i).token.getText());
+            if (parameters[i] != null) PrimitiveAsm.unbox(parameters[i], classAsm);
+        }
+
+        classAsm.invokeMethod(Opcodes.INVOKESTATIC, classAsm.className, getTypedName(), getDescriptor());
+
+        Type returnType = getReturnType();
+        if (returnType != null) PrimitiveAsm.box(returnType, classAsm);
+
+        classAsm.toReturn(true);
+
+        classAsm.mLabel(untyped);
+        return body(bridge, false)._return(re -> re.definitObj(null)._break())._back();
+    }
+
+    /**
+     * 参数的值不是type对应的包装类时跳转到otherwise。bool不作为int，int也不作为float
+     */
+    private static void guard(String name, Type type, Label otherwise, ClassAsm classAsm) {
+        if (Type.LONG_TYPE.equals(type)) {
+            Label matched = new Label();
+
+            classAsm.invokeLocalVar(name);
+            classAsm.mVisitTypeInsn(Opcodes.INSTANCEOF, "java/lang/Integer");
+            classAsm.jumpInsn(Opcodes.IFNE, matched);
+            classAsm.invokeLocalVar(name);
+            classAsm.mVisitTypeInsn(Opcodes.INSTANCEOF, "java/lang/Long");
+            classAsm.jumpInsn(Opcodes.IFEQ, otherwise);
+            classAsm.mLabel(matched);
+        } else {
+            classAsm.invokeLocalVar(name);
+            classAsm.mVisitTypeInsn(Opcodes.INSTANCEOF, Type.DOUBLE_TYPE.equals(type) ? "java/lang/Double" : "java/lang/Boolean");
+            classAsm.jumpInsn(Opcodes.IFEQ, otherwise);
+        }
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().addLine("Fun{")
@@ -101,6 +406,22 @@ public class FunStatement extends PyStatement {
             this(type, new TypeStatement[0]);
         }
 
+        /**
+         * @return int、float、bool对应的基本类型(int为long)，其余为null
+         */
+        public Type toPrimitive() {
+            switch (RemoveQuotes.removeQuotes(type.getText())) {
+                case "int":
+                    return Type.LONG_TYPE;
+                case "float":
+                    return Type.DOUBLE_TYPE;
+                case "bool":
+                    return Type.BOOLEAN_TYPE;
+                default:
+                    return null;
+            }
+        }
+
         public String toType(){
             String path = type.getText().replaceAll("\"", "");
 
@@ -1,5 +1,6 @@
 package chire.python.stmt.content;
 
+import chire.asm.ClassAsm;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
@@ -7,10 +8,13 @@ import chire.asm.dynamic.builder.ClassBuilder;
 import chire.asm.dynamic.definition.ClinitDefinition;
 import chire.asm.util.Format;
 import chire.python.asm.ModuleBuilder;
+import chire.python.asm.PrimitiveAsm;
 import chire.python.lib.escape.JPUtil;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import chire.python.stmt.block.*;
 import chire.python.stmt.type.*;
 
@@ -21,7 +25,7 @@ public class VarStatement extends PyStatement {
     public PyStatement value;
 
     public FunStatement.TypeStatement type;
-    private final PyStatement index;
+    public final PyStatement index;
 
     public VarStatement(Token name, PyStatement value, FunStatement.TypeStatement type) {
         this(name, null, value, type);
@@ -91,10 +95,35 @@ public class VarStatement extends PyStatement {
             return builder instanceof ModuleBuilder ? new ModuleBuilder(classBuilder.getClassAsm()) : classBuilder;
         } else if (builder instanceof BlockBuilder<?>){
             if (builder.getType().equals(ClinitDefinition.class)) {
-                return ((ClinitDefinition) builder).setVar(this.name.getText()).setContent(setContent -> {
+                ClassAsm classAsm = builder.getClassAsm();
+                String name = this.name.getText();
+
+                // 模块中if、while等块里的赋值同样写入静态变量，循环变量等局部变量除外
+                if (classAsm.hasLocalVar(name)) {
+                    return ((ClinitDefinition) builder).setVar(name).setContent(setContent -> {
+                        return (CallBuilder<ClinitDefinition>) value.build(setContent);
+                    });
+                }
+
+                String varType = classAsm.getStaticVarType(name);
+                if (varType == null) {
+                    varType = Format.formatPack(Object.class);
+                    classAsm.defineClassVar(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name, varType);
+                }
+
+                return ((ClinitDefinition) builder).setStaticVar(name, varType).setContent(setContent -> {
                     return (CallBuilder<ClinitDefinition>) value.build(setContent);
                 });
             } else {
+                // 推断为基本类型的局部变量不经过装箱
+                Type type = builder.getClassAsm().getLocalType(this.name.getText());
+                if (type != null) {
+                    PrimitiveAsm.emit(value, type, builder);
+                    builder.getClassAsm().storeLocalVar(this.name.getText());
+
+                    return builder;
+                }
+
                 return ((BlockBuilder<?>) builder).setVar(this.name.getText()).setBlockContent(setContent -> {
                     Builder<?> ke = value.build(setContent);
 
@@ -112,6 +141,29 @@ public class VarStatement extends PyStatement {
         throw new RuntimeException("no key");
     }
 
+    /**
+     * 计算值后变量改为使用新的局部变量，之后的读写都使用新的变量
+     * @param type 新变量的基本类型，Object类型时为null
+     */
+    public <T extends BlockBuilder<T>> T redefine(T builder, Type type) {
+        ClassAsm classAsm = builder.getClassAsm();
+
+        if (type != null) {
+            PrimitiveAsm.emit(value, type, builder);
+        } else {
+            PrimitiveAsm.buildObject(value, builder);
+        }
+
+        classAsm.redefineLocalVar(name.getText(), type);
+        if (type != null) {
+            classAsm.storeLocalVar(name.getText());
+        } else {
+            classAsm.varInsn(name.getText());
+        }
+
+        return builder;
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("Var{").newLine()
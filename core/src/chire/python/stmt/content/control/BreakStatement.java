@@ -1,9 +1,17 @@
 package chire.python.stmt.content.control;
 
+import chire.asm.dynamic.builder.Builder;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 
 public class BreakStatement extends PyStatement {
+    @Override
+    public Builder<?> build(Builder<?> builder) {
+        builder.getClassAsm().breakInsn();
+
+        return builder;
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("Break");
@@ -1,24 +1,42 @@
 package chire.python.stmt.content.control;
 
+import chire.asm.ClassAsm;
 import chire.asm.dynamic.AsmBudVisitor;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
+import chire.python.PyCompiler;
 import chire.python.asm.ModuleBuilder;
+import chire.python.asm.PrimitiveAsm;
 import chire.python.lib.builtins.PyList;
+import chire.python.lib.builtins.PyTuple;
+import chire.python.lib.escape.JPOperators;
 import chire.python.lib.escape.JPUtil;
 import chire.python.stmt.PyStatement;
+import chire.python.stmt.content.decl.ParametersStatement;
+import chire.python.stmt.content.expr.FunCallStatement;
+import chire.python.stmt.type.ConstStatement;
+import chire.python.stmt.type.ListStatement;
+import chire.python.stmt.type.NumberStatement;
+import chire.python.stmt.type.TupleStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 public class ForStatement extends PyStatement {
-    private final Token variable;
-    private final PyStatement iterable;
-    private final ArrayList<PyStatement> body;
+    public final Token variable;
+    public final PyStatement iterable;
+    public final ArrayList<PyStatement> body;
+
+    // 本次编译中隐藏局部变量的前缀
+    private String scope;
 
     public ForStatement(Token variable, PyStatement iterable, ArrayList<PyStatement> body) {
         this.variable = variable;
@@ -26,11 +44,50 @@ public class ForStatement extends PyStatement {
         this.body = body;
     }
 
+    /**
+     * 步长为0或参数为浮点数字面量时运行时会抛出异常，不作为计数循环
+     * @return 迭代对象为range(stop)、range(start, stop)或range(start, stop, step)时为其参数，否则为null
+     */
+    public List<PyStatement> getRangeArgs() {
+        if (!(iterable instanceof FunCallStatement)) return null;
+
+        FunCallStatement call = (FunCallStatement) iterable;
+        if (!"range".equals(call.name.getText()) || call.args.isEmpty() || call.args.size() > 3) return null;
+
+        for (PyStatement arg : call.args) {
+            if (arg instanceof ParametersStatement) return null;
+            if (arg instanceof NumberStatement<?> && !(((NumberStatement<?>) arg).getValue() instanceof Integer || ((NumberStatement<?>) arg).getValue() instanceof Long)) return null;
+        }
+
+        if (call.args.size() == 3 && call.args.get(2) instanceof NumberStatement<?> && ((NumberStatement<?>) call.args.get(2)).getValue().longValue() == 0) return null;
+
+        return call.args;
+    }
+
     @Override
     public Builder<?> build(Builder<?> builder) {
         AsmBudVisitor.AsmBlockBuilder blockBuilder = content -> {
-            return content.setVar("for$"+variable.getText()).setContent(forVar -> {
-                        return forVar.callMethod(JPUtil.class, "iterator", new Class[]{Object.class}, PyList.class).setContent(iterBui -> {
+            scope = content.getClassAsm().hiddenName("for$" + variable.getText());
+
+            // 循环变量第一次写入在循环体中时，循环之后读取它无法通过校验，先写入None
+            ClassAsm classAsm = content.getClassAsm();
+            if (!classAsm.hasLocalVar(variable.getText())) {
+                classAsm.mVisitInsn(Opcodes.ACONST_NULL);
+                classAsm.varInsn(variable.getText());
+            }
+
+            List<PyStatement> rangeArgs = getRangeArgs();
+            if (PyCompiler.optimize && rangeArgs != null && PrimitiveAsm.builtins(content.getClassAsm()).test("range")) {
+                return counted(content, rangeArgs);
+            }
+
+            Class<?> sequenceType = getSequenceType();
+            if (PyCompiler.optimize && sequenceType != null) return indexed(content, sequenceType);
+
+            String iterator = local("iter");
+
+            return content.setVar(iterator).setContent(forVar -> {
+                        return forVar.callMethod(JPUtil.class, "iterator", new Class<?>[]{Object.class}, Iterator.class).setContent(iterBui -> {
                             return iterBui.definitPar(
                                     parbui -> (CallBuilder) iterable.build(parbui)
                             );
@@ -38,13 +95,13 @@ public class ForStatement extends PyStatement {
                     })
                     .whileCall().setContent(
                             pd ->
-                                    pd.callLocal("for$"+variable.getText())
-                                            .callMethod(PyList.class, "hasNext", new Class[]{}, boolean.class)
+                                    pd.callLocal(iterator)
+                                            .callMethod(Opcodes.INVOKEINTERFACE, Iterator.class, "hasNext", new Class<?>[]{}, boolean.class)
                                             .setContent(CallBuilder.ParameterBuilder::definitPar)
                                             ._break(),
                             whiCont -> {
-                                whiCont = whiCont.setVar(variable.getText()).setContent(vatBui -> vatBui.callLocal("for$"+variable.getText())
-                                        .callMethod(PyList.class, "next", new Class[]{}, Object.class)
+                                whiCont = whiCont.setVar(variable.getText()).setContent(vatBui -> vatBui.callLocal(iterator)
+                                        .callMethod(Opcodes.INVOKEINTERFACE, Iterator.class, "next", new Class<?>[]{}, Object.class)
                                         .setContent(CallBuilder.ParameterBuilder::definitPar)).out();
 
                                 for (PyStatement statement : this.body) {
@@ -74,6 +131,175 @@ public class ForStatement extends PyStatement {
         throw new RuntimeException("no key");
     }
 
+    /**
+     * 以long计数，不创建range对象，循环变量是基本类型的局部变量时也不装箱。
+     * start、stop、step只在循环开始前计算一次
+     */
+    private BlockBuilder counted(BlockBuilder<?> content, List<PyStatement> args) {
+        ClassAsm classAsm = content.getClassAsm();
+        String counter = local("counter");
+        String stop = local("stop");
+        String step = local("step");
+
+        PyStatement stepArg = args.size() == 3 ? args.get(2) : null;
+        Long constStep = stepArg == null ? Long.valueOf(1) : stepArg instanceof NumberStatement<?> ? ((NumberStatement<?>) stepArg).getValue().longValue() : null;
+
+        classAsm.defineLocalVar(counter, Type.LONG_TYPE);
+        if (args.size() > 1) {
+            PrimitiveAsm.emit(args.get(0), Type.LONG_TYPE, content);
+            classAsm.storeLocalVar(counter);
+        }
+
+        classAsm.defineLocalVar(stop, Type.LONG_TYPE);
+        PrimitiveAsm.emit(args.get(args.size() == 1 ? 0 : 1), Type.LONG_TYPE, content);
+        classAsm.storeLocalVar(stop);
+
+        if (constStep == null) {
+            classAsm.defineLocalVar(step, Type.LONG_TYPE);
+            PrimitiveAsm.emit(stepArg, Type.LONG_TYPE, content);
+            classAsm.invokeMethod(Opcodes.INVOKESTATIC, Type.getInternalName(JPOperators.class), "rangeStep", "(J)J");
+            classAsm.storeLocalVar(step);
+        }
+
+        Label head = new Label();
+        Label end = new Label();
+
+        classAsm.mLabel(head);
+        if (constStep == null) {
+            Label down = new Label();
+            Label body = new Label();
+
+            classAsm.loadLocalVar(step);
+            classAsm.mVisitInsn(Opcodes.LCONST_0);
+            classAsm.mVisitInsn(Opcodes.LCMP);
+            classAsm.jumpInsn(Opcodes.IFLT, down);
+            compare(classAsm, counter, stop, Opcodes.IFGE, end);
+            classAsm.jumpInsn(Opcodes.GOTO, body);
+            classAsm.mLabel(down);
+            compare(classAsm, counter, stop, Opcodes.IFLE, end);
+            classAsm.mLabel(body);
+        } else {
+            compare(classAsm, counter, stop, constStep > 0 ? Opcodes.IFGE : Opcodes.IFLE, end);
+        }
+
+        // 循环变量
+        Type type = classAsm.getLocalType(variable.getText());
+        classAsm.loadLocalVar(counter);
+        if (type == null) {
+            PrimitiveAsm.box(Type.LONG_TYPE, classAsm);
+            classAsm.varInsn(variable.getText());
+        } else {
+            if (Type.DOUBLE_TYPE.equals(type)) classAsm.mVisitInsn(Opcodes.L2D);
+            classAsm.storeLocalVar(variable.getText());
+        }
+
+        BlockBuilder<?> block = body(content, end);
+
+        classAsm.loadLocalVar(counter);
+        if (constStep == null) {
+            classAsm.loadLocalVar(step);
+        } else {
+            classAsm.mVisitLdcInsn(constStep);
+        }
+        classAsm.mVisitInsn(Opcodes.LADD);
+        classAsm.storeLocalVar(counter);
+
+        classAsm.jumpInsn(Opcodes.GOTO, head);
+        classAsm.mLabel(end);
+
+        return block;
+    }
+
+    /**
+     * 字面量的tuple、list以及字符串常量在编译期就能确定类型
+     * @return 能按下标遍历时为迭代对象的类型，否则为null
+     */
+    private Class<?> getSequenceType() {
+        if (iterable instanceof TupleStatement) return PyTuple.class;
+        if (iterable instanceof ListStatement) return PyList.class;
+        if (iterable instanceof ConstStatement<?> && ((ConstStatement<?>) iterable).type == String.class) return String.class;
+
+        return null;
+    }
+
+    /**
+     * 按下标遍历，不创建迭代器。每次都重新读取长度，与list的迭代器一样能遍历到循环中追加的元素
+     */
+    private BlockBuilder indexed(BlockBuilder<?> content, Class<?> type) {
+        ClassAsm classAsm = content.getClassAsm();
+        String sequence = local("seq");
+        String index = local("index");
+        String owner = Type.getInternalName(type);
+
+        PrimitiveAsm.buildObject(iterable, content);
+        classAsm.varInsn(sequence);
+        classAsm.defineLocalVar(index, Type.INT_TYPE);
+
+        Label head = new Label();
+        Label end = new Label();
+
+        classAsm.mLabel(head);
+        classAsm.loadLocalVar(index);
+        classAsm.varInsn(Opcodes.ALOAD, sequence);
+        classAsm.mVisitTypeInsn(Opcodes.CHECKCAST, owner);
+        classAsm.invokeMethod(Opcodes.INVOKEVIRTUAL, owner, type == String.class ? "length" : "size", "()I");
+        classAsm.jumpInsn(Opcodes.IF_ICMPGE, end);
+
+        // 循环变量
+        classAsm.varInsn(Opcodes.ALOAD, sequence);
+        classAsm.mVisitTypeInsn(Opcodes.CHECKCAST, owner);
+        classAsm.loadLocalVar(index);
+        if (type == String.class) {
+            classAsm.invokeMethod(Opcodes.INVOKEVIRTUAL, owner, "charAt", "(I)C");
+            classAsm.invokeMethod(Opcodes.INVOKESTATIC, owner, "valueOf", "(C)Ljava/lang/String;");
+        } else {
+            classAsm.invokeMethod(Opcodes.INVOKEVIRTUAL, owner, "get", "(I)Ljava/lang/Object;");
+        }
+        classAsm.varInsn(variable.getText());
+
+        classAsm.loadLocalVar(index);
+        classAsm.mVisitInsn(Opcodes.ICONST_1);
+        classAsm.mVisitInsn(Opcodes.IADD);
+        classAsm.storeLocalVar(index);
+
+        BlockBuilder<?> block = body(content, end);
+
+        classAsm.jumpInsn(Opcodes.GOTO, head);
+        classAsm.mLabel(end);
+
+        return block;
+    }
+
+    /**@param end 循环结束的位置，循环体中的break跳转到这里*/
+    private BlockBuilder<?> body(BlockBuilder<?> content, Label end) {
+        BlockBuilder<?> block = (BlockBuilder<?>) content.out();
+        block.getClassAsm().enterLoop(end);
+
+        for (PyStatement statement : this.body) {
+            Builder<?> bui = statement.build(block);
+            if (bui instanceof CallBuilder<?>) {
+                block = ((CallBuilder<?>) bui)._break();
+            } else {
+                block = (BlockBuilder<?>) bui;
+            }
+        }
+
+        block.getClassAsm().exitLoop();
+        return block;
+    }
+
+    /**循环使用的隐藏局部变量，嵌套的同名循环变量也不会冲突*/
+    private String local(String name) {
+        return scope + "$" + name;
+    }
+
+    private static void compare(ClassAsm classAsm, String counter, String stop, int opcode, Label end) {
+        classAsm.loadLocalVar(counter);
+        classAsm.loadLocalVar(stop);
+        classAsm.mVisitInsn(Opcodes.LCMP);
+        classAsm.jumpInsn(opcode, end);
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("For{").newLine();
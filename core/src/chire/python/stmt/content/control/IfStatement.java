@@ -5,14 +5,17 @@ import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
 import chire.asm.dynamic.definition.ClinitDefinition;
+import chire.python.asm.ConditionAsm;
 import chire.python.asm.ModuleBuilder;
-import chire.python.lib.escape.JPUtil;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.escape.JPOperatorSite;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
-import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class IfStatement extends PyStatement {
 
@@ -37,19 +40,7 @@ public class IfStatement extends PyStatement {
         if (builder instanceof ClassBuilder) {
             ClassBuilder cont = ((ClassBuilder) builder).setContent(clinBui -> {
                 return createElse(clinBui.ifCall().setContent(
-                        condition -> condition.callMethod(JPUtil.class, "toBoolean", new Class[]{Object.class}, boolean.class).setContent(con -> {
-                            return con.definitPar(par -> {
-                                var bui = this.conditions.build(par);
-
-                                if (bui instanceof CallBuilder<?>) {
-                                    return (CallBuilder<?>) bui;
-                                } else if (bui instanceof BlockBuilder<?>) {
-                                    return ((BlockBuilder<?>) bui).toCall();
-                                }
-
-                                throw new RuntimeException("no key");
-                            });
-                        })._break(),
+                        (condition, otherwise) -> ConditionAsm.jump(this.conditions, false, otherwise, condition),
                         visitor -> {
                             for (PyStatement statement : this.statements) {
                                 Builder<?> bui = statement.build(visitor);
@@ -61,8 +52,7 @@ public class IfStatement extends PyStatement {
                             }
 
                             return visitor;
-                        },
-                        Opcodes.IFEQ
+                        }
                 )).out();
             });
 
@@ -73,19 +63,7 @@ public class IfStatement extends PyStatement {
             }
         } if (builder instanceof BlockBuilder<?>) {
             return createElse(((BlockBuilder) builder).ifCall().setContent(
-                    condition -> condition.callMethod(JPUtil.class, "toBoolean", new Class[]{Object.class}, boolean.class).setContent(con -> {
-                        return con.definitPar(par -> {
-                            var bui = this.conditions.build(par);
-
-                            if (bui instanceof CallBuilder<?>) {
-                                return (CallBuilder<?>) bui;
-                            } else if (bui instanceof BlockBuilder<?>) {
-                                return ((BlockBuilder<?>) bui).toCall();
-                            }
-
-                            throw new RuntimeException("no key");
-                        });
-                    })._break(),
+                    (condition, otherwise) -> ConditionAsm.jump(this.conditions, false, otherwise, condition),
                     visitor -> {
                         for (PyStatement statement : this.statements) {
                             Builder<?> bui = statement.build(visitor);
@@ -97,8 +75,7 @@ public class IfStatement extends PyStatement {
                         }
 
                         return visitor;
-                    },
-                    Opcodes.IFEQ
+                    }
             )).out();
         }
         else {
@@ -115,9 +92,9 @@ public class IfStatement extends PyStatement {
                     Builder<T> builder = (Builder<T>) statement.build(toElseBui);
 
                     if (builder instanceof CallBuilder<T>) {
-                        return ((CallBuilder<T>) builder)._break();
+                        toElseBui = ((CallBuilder<T>) builder)._break();
                     } else {
-                        return (BlockBuilder<T>) builder;
+                        toElseBui = (BlockBuilder<T>) builder;
                     }
                 }
 
@@ -174,19 +151,20 @@ public class IfStatement extends PyStatement {
 
         @Override
         public Builder<?> build(Builder<?> builder) {
+            Type type = PrimitiveAsm.typeOf(this, builder.getClassAsm());
+            if (type != null) return PrimitiveAsm.build(this, type, builder);
+
             if (builder instanceof BlockBuilder<?>) {
-                return ((BlockBuilder<?>) builder).callMethod(JPUtil.class, "comparison", new Class[]{Object.class, Object.class, String.class}, Boolean.class)
+                return ((BlockBuilder<?>) builder).callDynamic("binary", new Class<?>[]{Object.class, Object.class}, Object.class, JPOperatorSite.class, "bootstrap", this.operator.getText())
                         .setContent(budVis -> budVis.definitPar(
                                 left -> (CallBuilder) this.left.build(left),
-                                right -> (CallBuilder) this.right.build(right),
-                                operator -> operator.definitObj(this.operator.getText())
+                                right -> (CallBuilder) this.right.build(right)
                         ))._break();
             } else if (builder instanceof CallBuilder<?>) {
-                return ((CallBuilder<?>) builder)._break().callMethod(JPUtil.class, "comparison", new Class[]{Object.class, Object.class, String.class}, Boolean.class)
+                return ((CallBuilder<?>) builder)._break().callDynamic("binary", new Class<?>[]{Object.class, Object.class}, Object.class, JPOperatorSite.class, "bootstrap", this.operator.getText())
                         .setContent(budVis -> budVis.definitPar(
                                 left -> (CallBuilder) this.left.build(left),
-                                right -> (CallBuilder) this.right.build(right),
-                                operator -> operator.definitObj(this.operator.getText())
+                                right -> (CallBuilder) this.right.build(right)
                         ));
             }
 
@@ -213,4 +191,33 @@ public class IfStatement extends PyStatement {
             indenter.newLine().unindent().add("}");
         }
     }
+
+    /**链式比较 a < b < c，等价于 a < b and b < c，但b只计算一次*/
+    public static class ChainStatement extends PyStatement {
+
+        public final List<PyStatement> operands;
+
+        public final List<Token> operators;
+
+        public ChainStatement(List<PyStatement> operands, List<Token> operators) {
+            this.operands = operands;
+            this.operators = operators;
+        }
+
+        @Override
+        public Builder<?> build(Builder<?> builder) {
+            return PrimitiveAsm.build(this, Type.BOOLEAN_TYPE, builder);
+        }
+
+        @Override
+        public void toString(SmartIndenter indenter) {
+            indenter.newLine().addLine("Chain{").indent();
+            operands.get(0).toString(indenter);
+            for (int i = 0; i < operators.size(); i++) {
+                indenter.newLine().add("operator='").add(operators.get(i).getText()).add("'");
+                operands.get(i + 1).toString(indenter);
+            }
+            indenter.newLine().unindent().add("}");
+        }
+    }
 }
\ No newline at end of file
@@ -4,9 +4,12 @@ import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.definition.FunctionDefinition;
+import chire.python.asm.PrimitiveAsm;
 import chire.python.stmt.PyStatement;
 import chire.python.stmt.type.NoneStatement;
 import chire.python.util.SmartIndenter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 public class ReturnStatement extends PyStatement {
     public final PyStatement returnStmt;
@@ -21,6 +24,31 @@ public class ReturnStatement extends PyStatement {
 
     @Override
     public Builder<?> build(Builder<?> builder) {
+        // 生成器中的return结束迭代，返回值只计算不使用
+        if (builder.getClassAsm().hasFrame()) {
+            if (!(returnStmt instanceof NoneStatement)) {
+                PrimitiveAsm.buildObject(returnStmt, builder);
+                builder.getClassAsm().mVisitInsn(Opcodes.POP);
+            }
+
+            builder.getClassAsm().frameEndInsn();
+            return builder;
+        }
+
+        // 函数体或else等分支中的return
+        boolean inFunction = builder instanceof BlockBuilder<?> && builder.getType() == FunctionDefinition.class;
+
+        if (builder instanceof FunctionDefinition || inFunction) {
+            // 返回值注解为基本类型时直接返回基本类型的值，返回的值不是该类型时抛出ClassCastException
+            Type type = builder.getClassAsm().getReturnType();
+            if (PrimitiveAsm.isPrimitive(type)) {
+                PrimitiveAsm.emitExact(returnStmt, type, builder);
+                builder.getClassAsm().toReturn(type);
+
+                return builder;
+            }
+        }
+
         if (builder instanceof FunctionDefinition) {
             if (returnStmt != null) {
                 return ((FunctionDefinition) builder)._return(ret -> {
@@ -39,6 +67,13 @@ public class ReturnStatement extends PyStatement {
             }
         }
 
+        if (inFunction) {
+            PrimitiveAsm.buildObject(returnStmt, builder);
+            builder.getClassAsm().toReturn(true);
+
+            return builder;
+        }
+
         throw new RuntimeException("no key");
     }
 
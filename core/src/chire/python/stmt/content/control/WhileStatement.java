@@ -5,11 +5,10 @@ import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
 import chire.asm.dynamic.definition.ClinitDefinition;
+import chire.python.asm.ConditionAsm;
 import chire.python.asm.ModuleBuilder;
-import chire.python.lib.escape.JPUtil;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
-import org.objectweb.asm.Opcodes;
 
 import java.util.ArrayList;
 
@@ -29,19 +28,7 @@ public class WhileStatement extends PyStatement {
         if (builder instanceof ClassBuilder) {
             ClassBuilder cont = ((ClassBuilder) builder).setContent(content -> {
                 return content.whileCall().setContent(
-                        pd -> pd.callMethod(JPUtil.class, "toBoolean", new Class[]{Object.class}, boolean.class).setContent(con -> {
-                            return con.definitPar(par -> {
-                                var bui = this.conditions.build(par);
-
-                                if (bui instanceof CallBuilder<?>) {
-                                    return (CallBuilder<?>) bui;
-                                } else if (bui instanceof BlockBuilder<?>) {
-                                    return ((BlockBuilder<?>) bui).toCall();
-                                }
-
-                                throw new RuntimeException("no key");
-                            });
-                        })._break(),
+                        (pd, exit) -> ConditionAsm.jump(this.conditions, false, exit, pd),
                         whiCont -> {
                             for (PyStatement statement : this.statements) {
                                 Builder<?> bui = statement.build(whiCont);
@@ -53,8 +40,7 @@ public class WhileStatement extends PyStatement {
                             }
 
                             return whiCont;
-                        },
-                        Opcodes.IFEQ
+                        }
                 ).out();
             });
 
@@ -65,19 +51,7 @@ public class WhileStatement extends PyStatement {
             }
         } else if (builder instanceof BlockBuilder<?>) {
             return ((BlockBuilder)builder).whileCall().setContent(
-                    pd -> pd.callMethod(JPUtil.class, "toBoolean", new Class[]{Object.class}, boolean.class).setContent(con -> {
-                        return con.definitPar(par -> {
-                            var bui = this.conditions.build(par);
-
-                            if (bui instanceof CallBuilder<?>) {
-                                return (CallBuilder<?>) bui;
-                            } else if (bui instanceof BlockBuilder<?>) {
-                                return ((BlockBuilder<?>) bui).toCall();
-                            }
-
-                            throw new RuntimeException("no key");
-                        });
-                    })._break(),
+                    (pd, exit) -> ConditionAsm.jump(this.conditions, false, exit, pd),
                     whiCont -> {
                         for (PyStatement statement : this.statements) {
                             Builder<?> bui = statement.build(whiCont);
@@ -89,8 +63,7 @@ public class WhileStatement extends PyStatement {
                         }
 
                         return whiCont;
-                    },
-                    Opcodes.IFEQ
+                    }
             );
         }
 
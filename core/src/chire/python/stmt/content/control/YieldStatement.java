@@ -0,0 +1,47 @@
+package chire.python.stmt.content.control;
+
+import chire.asm.ClassAsm;
+import chire.asm.dynamic.builder.BlockBuilder;
+import chire.asm.dynamic.builder.Builder;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.type.NoneStatement;
+import chire.python.util.SmartIndenter;
+
+/**生成器中的yield语句，只能作为语句使用，不支持send传入的值*/
+public class YieldStatement extends PyStatement {
+    public final PyStatement value;
+
+    public YieldStatement(PyStatement value) {
+        this.value = value;
+    }
+
+    public YieldStatement() {
+        this.value = new NoneStatement();
+    }
+
+    @Override
+    public Builder<?> build(Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        if (!(builder instanceof BlockBuilder<?>) || !classAsm.hasFrame()) throw new RuntimeException("'yield' outside function");
+
+        if (value instanceof NoneStatement) {
+            classAsm.ldcInsn(null);
+        } else {
+            PrimitiveAsm.buildObject(value, builder);
+        }
+        classAsm.yieldInsn();
+
+        return builder;
+    }
+
+    @Override
+    public void toString(SmartIndenter indenter) {
+        indenter.newLine().add("Yield{")
+                .indent();
+        value.toString(indenter);
+        indenter.newLine()
+                .unindent()
+                .add("}");
+    }
+}
@@ -25,6 +25,18 @@ public class ImportStatement extends PyStatement {
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getPackName() {
+        return packName;
+    }
+
     @Override
     public Builder<?> build(Builder<?> builder) {
         if (builder instanceof ClassBuilder) {
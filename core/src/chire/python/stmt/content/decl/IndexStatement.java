@@ -10,8 +10,8 @@ import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
 
 public class IndexStatement extends PyStatement {
-    private final Token name;
-    private final PyStatement index;
+    public final Token name;
+    public final PyStatement index;
 
     public IndexStatement(Token name, PyStatement index) {
         this.name = name;
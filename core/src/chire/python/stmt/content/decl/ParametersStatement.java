@@ -9,8 +9,8 @@ import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
 
 public class ParametersStatement extends PyStatement {
-    private final Token name;
-    private final PyStatement content;
+    public final Token name;
+    public final PyStatement content;
 
     public ParametersStatement(Token name, PyStatement content) {
         this.name = name;
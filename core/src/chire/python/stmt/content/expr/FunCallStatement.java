@@ -1,15 +1,22 @@
 package chire.python.stmt.content.expr;
 
+import chire.asm.ClassAsm;
 import chire.asm.dynamic.AsmBudVisitor;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
+import chire.python.PyCompiler;
+import chire.python.asm.ModuleAsm;
 import chire.python.asm.ModuleBuilder;
-import chire.python.lib.escape.JPUtil;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.escape.JPCallSite;
 import chire.python.stmt.PyStatement;
+import chire.python.stmt.block.FunStatement;
+import chire.python.stmt.content.decl.ParametersStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 import java.util.ArrayList;
@@ -54,27 +61,62 @@ public class FunCallStatement extends PyStatement {
     }
 
     public <T extends BlockBuilder<T>> BlockBuilder<T> makeContent(BlockBuilder<T> builder) {
+        // 被调用的函数有基本类型签名且参数类型匹配时直接调用
+        FunStatement callee = PrimitiveAsm.callee(this, builder.getClassAsm());
+        if (callee != null) {
+            ClassAsm classAsm = builder.getClassAsm();
+
+            PrimitiveAsm.call(this, callee, builder);
+
+            Type returnType = callee.getReturnType();
+            if (returnType != null) PrimitiveAsm.box(returnType, classAsm);
+
+            if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(Opcodes.POP);
+
+            return builder;
+        }
+
+        // 模块中或导入的已知函数直接调用
+        String owner = staticOwner(builder.getClassAsm());
+        if (owner != null) {
+            ModuleAsm module = (ModuleAsm) builder.getClassAsm();
+
+            for (PyStatement arg : args) {
+                PrimitiveAsm.buildObject(arg, builder);
+            }
+
+            module.invokeMethod(Opcodes.INVOKESTATIC, owner, module.functionName(name.getText()), ModuleAsm.descriptor(args.size()));
+            if (!module.getState().contains("content")) module.mVisitInsn(Opcodes.POP);
+
+            return builder;
+        }
+
         List<AsmBudVisitor.AsmCallBuilder> callBuilders = new ArrayList<>();
 
         callBuilders.add(argBui -> argBui.definitObj(Type.getType("L"+argBui.getClassAsm().className+";")));
-        callBuilders.add(argBui -> argBui.definitObj(name.getText()));
 
-        if (!args.isEmpty()) {
-            for (int i = 0; i < this.args.size(); i++) {
-                int finalI = i;
-                callBuilders.add(par -> (CallBuilder<?>) this.args.get(finalI).build(par));
-            }
+        for (int i = 0; i < this.args.size(); i++) {
+            int finalI = i;
+            callBuilders.add(par -> (CallBuilder<?>) this.args.get(finalI).build(par));
+        }
 
-            return builder.callMethod(JPUtil.class, "callMethod", new Class[]{Object.class, String.class, Object[].class}, Object.class)
-                    .setContent(varBui ->  varBui.definitPar(
-                            callBuilders.toArray(new AsmBudVisitor.AsmCallBuilder[0])
-                    ))._break();
-        } else {
-            return builder.callMethod(JPUtil.class, "callMethod", new Class[]{Object.class, String.class, Object[].class}, Object.class)
-                    .setContent(varBui ->  varBui.definitPar(
-                            callBuilders.toArray(new AsmBudVisitor.AsmCallBuilder[0])
-                    ))._break();
+        return builder.callDynamic(name.getText(), JPCallSite.parameters(this.args.size()), Object.class, JPCallSite.class, "bootstrap")
+                .setContent(varBui ->  varBui.definitPar(
+                        callBuilders.toArray(new AsmBudVisitor.AsmCallBuilder[0])
+                ))._break();
+    }
+
+    /**
+     * @return 只有位置参数且被调用的函数在编译期已知时为方法所在的类，否则为null
+     */
+    private String staticOwner(ClassAsm classAsm) {
+        if (!PyCompiler.optimize || !(classAsm instanceof ModuleAsm)) return null;
+
+        for (PyStatement arg : args) {
+            if (arg instanceof ParametersStatement) return null;
         }
+
+        return ((ModuleAsm) classAsm).ownerOf(name.getText(), args.size());
     }
 
     @Override
@@ -1,12 +1,18 @@
 package chire.python.stmt.content.expr;
 
+import chire.asm.ClassAsm;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
-import chire.python.lib.escape.JPUtil;
+import chire.python.asm.ConditionAsm;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.escape.JPOperatorSite;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 public class LogicalStatement extends PyStatement {
     public final PyStatement left;
@@ -30,34 +36,63 @@ public class LogicalStatement extends PyStatement {
         this.operator = null;
     }
 
+    public String getOperator() {
+        return operator != null ? operator.getText() : operatorStr;
+    }
+
     @Override
     public Builder<?> build(Builder<?> builder) {
+        Type type = PrimitiveAsm.typeOf(this, builder.getClassAsm());
+        if (type != null) return PrimitiveAsm.build(this, type, builder);
+
+        if (ConditionAsm.isConnective(this)) return connective(builder);
+
         if (builder instanceof BlockBuilder<?>) {
-            return ((BlockBuilder<?>) builder).callMethod(JPUtil.class, "operation", new Class[]{Object.class, Object.class, String.class}, Object.class)
+            return ((BlockBuilder<?>) builder).callDynamic("binary", new Class<?>[]{Object.class, Object.class}, Object.class, JPOperatorSite.class, "bootstrap", getOperator())
                     .setContent(logiBui -> logiBui.definitPar(
                             logiPar -> (CallBuilder) left.build(logiPar),
-                            logiPar -> (CallBuilder) right.build(logiPar),
-                            logiPar -> logiPar.definitObj(operator != null ? operator.getText() : operatorStr)
+                            logiPar -> (CallBuilder) right.build(logiPar)
                     ));
         } else if (builder instanceof CallBuilder<?>) {
-            return ((BlockBuilder<?>) ((CallBuilder<?>) builder)._break()).callMethod(JPUtil.class, "operation", new Class[]{Object.class, Object.class, String.class}, Object.class)
+            return ((BlockBuilder<?>) ((CallBuilder<?>) builder)._break()).callDynamic("binary", new Class<?>[]{Object.class, Object.class}, Object.class, JPOperatorSite.class, "bootstrap", getOperator())
                     .setContent(logiBui -> logiBui.definitPar(
                             logiPar -> (CallBuilder) left.build(logiPar),
-                            logiPar -> (CallBuilder) right.build(logiPar),
-                            logiPar -> logiPar.definitObj(operator != null ? operator.getText() : operatorStr)
+                            logiPar -> (CallBuilder) right.build(logiPar)
                     ));
         }
 
         throw new RuntimeException("no key");
     }
 
+    /**
+     * and、or的值为决定结果的一边，与 Python 一致；右边只在需要时计算
+     * @return CallBuilder
+     */
+    private Builder<?> connective(Builder<?> builder) {
+        ClassAsm classAsm = builder.getClassAsm();
+        Label end = new Label();
+
+        PrimitiveAsm.buildObject(left, builder);
+        classAsm.mVisitInsn(Opcodes.DUP);
+        ConditionAsm.truthy(classAsm);
+        classAsm.jumpInsn("and".equals(getOperator()) ? Opcodes.IFEQ : Opcodes.IFNE, end);
+
+        classAsm.mVisitInsn(Opcodes.POP);
+        PrimitiveAsm.buildObject(right, builder);
+        classAsm.mLabel(end);
+
+        if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(Opcodes.POP);
+
+        return new CallBuilder(classAsm, builder.getType());
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("Logi{").indent()
                 .newLine().add("left:").indent();
         left.toString(indenter);
         indenter.unindent().newLine().add("operator=")
-                .add(operator != null ? operator.getText() : operatorStr)
+                .add(getOperator())
                 .newLine().add("right:").indent();
         right.toString(indenter);
         indenter.unindent().newLine().unindent().add("}");
@@ -1,14 +1,22 @@
 package chire.python.stmt.content.expr;
 
+import chire.asm.ClassAsm;
 import chire.asm.dynamic.AsmBudVisitor;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
+import chire.asm.util.Format;
+import chire.python.PyCompiler;
+import chire.python.asm.ModuleAsm;
 import chire.python.asm.ModuleBuilder;
-import chire.python.lib.escape.JPUtil;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.escape.JPCallSite;
+import chire.python.lib.escape.JPFieldSite;
 import chire.python.stmt.PyStatement;
+import chire.python.stmt.content.decl.ParametersStatement;
 import chire.python.util.SmartIndenter;
+import org.objectweb.asm.Opcodes;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -54,23 +62,51 @@ public class SubCallStatement extends PyStatement {
         CallBuilder<T> outBuilder;
 
         if (call instanceof VarCallStatement) {
-            outBuilder = builder.callMethod(JPUtil.class, "callVar", new Class[]{Object.class, String.class}, Object.class)
+            String name = ((VarCallStatement) call).name.getText();
+
+            // 导入的模块或模块中定义的类的静态变量直接读取
+            String owner = fieldOwner(builder.getClassAsm());
+            if (owner != null) {
+                ClassAsm classAsm = builder.getClassAsm();
+
+                classAsm.invokeStaticVar(Opcodes.GETSTATIC, owner, name, Format.formatPack(Object.class));
+                if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(Opcodes.POP);
+
+                return new CallBuilder<>(classAsm, builder.getType());
+            }
+
+            outBuilder = builder.callDynamic(name, new Class<?>[]{Object.class}, Object.class, JPFieldSite.class, "bootstrap")
                     .setContent(varBui ->  varBui.definitPar(
-                            argBui -> (CallBuilder) key.build(argBui),
-                            argBui -> argBui.definitObj(((VarCallStatement) call).name.getText())
+                            argBui -> (CallBuilder) key.build(argBui)
                     ));
         } else if (call instanceof FunCallStatement) {
+            FunCallStatement funCall = (FunCallStatement) call;
+
+            // 调用import导入的本次构建中的模块的函数时直接调用
+            String owner = staticOwner(builder.getClassAsm());
+            if (owner != null) {
+                ClassAsm classAsm = builder.getClassAsm();
+
+                for (PyStatement arg : funCall.args) {
+                    PrimitiveAsm.buildObject(arg, builder);
+                }
+
+                classAsm.invokeMethod(Opcodes.INVOKESTATIC, owner, funCall.name.getText(), ModuleAsm.descriptor(funCall.args.size()));
+                if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(Opcodes.POP);
+
+                return new CallBuilder<>(classAsm, builder.getType());
+            }
+
             List<AsmBudVisitor.AsmCallBuilder> callBuilders = new ArrayList<>();
 
             callBuilders.add(argBui -> (CallBuilder) key.build(((BlockBuilder)argBui._break())));
-            callBuilders.add(argBui -> argBui.definitObj(((FunCallStatement) call).name.getText()));
 
             for (int i = 0; i < ((FunCallStatement) call).args.size(); i++) {
                 int finalI = i;
                 callBuilders.add(par -> (CallBuilder<?>) ((FunCallStatement) call).args.get(finalI).build(par));
             }
 
-            outBuilder = builder.callMethod(JPUtil.class, "callMethod", new Class[]{Object.class, String.class, Object[].class}, Object.class)
+            outBuilder = builder.callDynamic(funCall.name.getText(), JPCallSite.parameters(funCall.args.size()), Object.class, JPCallSite.class, "bootstrap")
                     .setContent(varBui ->  varBui.definitPar(
                             callBuilders.toArray(new AsmBudVisitor.AsmCallBuilder[0])
                     ));
@@ -81,6 +117,29 @@ public class SubCallStatement extends PyStatement {
         return outBuilder;
     }
 
+    /**
+     * @return key为导入的模块或模块中定义的类，且读取的变量在编译期已知时为变量所在的类，否则为null
+     */
+    private String fieldOwner(ClassAsm classAsm) {
+        if (!PyCompiler.optimize || !(classAsm instanceof ModuleAsm) || !(key instanceof VarCallStatement)) return null;
+
+        return ((ModuleAsm) classAsm).fieldOwner(((VarCallStatement) key).name.getText(), ((VarCallStatement) call).name.getText());
+    }
+
+    /**
+     * @return key为导入的模块且被调用的函数在编译期已知时为模块类，否则为null
+     */
+    private String staticOwner(ClassAsm classAsm) {
+        if (!PyCompiler.optimize || !(classAsm instanceof ModuleAsm) || !(key instanceof VarCallStatement)) return null;
+
+        FunCallStatement funCall = (FunCallStatement) call;
+        for (PyStatement arg : funCall.args) {
+            if (arg instanceof ParametersStatement) return null;
+        }
+
+        return ((ModuleAsm) classAsm).ownerOf(((VarCallStatement) key).name.getText(), funCall.name.getText(), funCall.args.size());
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("SubCall{")
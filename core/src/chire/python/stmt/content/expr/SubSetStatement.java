@@ -1,12 +1,18 @@
 package chire.python.stmt.content.expr;
 
+import chire.asm.ClassAsm;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
 import chire.asm.dynamic.builder.ClassBuilder;
-import chire.python.lib.escape.JPUtil;
+import chire.asm.util.Format;
+import chire.python.PyCompiler;
+import chire.python.asm.ModuleAsm;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.escape.JPFieldSite;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
+import org.objectweb.asm.Opcodes;
 
 public class SubSetStatement extends PyStatement {
 
@@ -37,10 +43,20 @@ public class SubSetStatement extends PyStatement {
 
     public <T extends BlockBuilder<T>> BlockBuilder<T> makeSubSet(BlockBuilder<T> builder) {
         if (call instanceof VarCallStatement) {
-            return builder.callMethod(JPUtil.class, "setVar", new Class[]{Object.class, String.class, Object.class}, null).setContent(metbui -> {
+            String name = ((VarCallStatement) call).name.getText();
+
+            // 导入的模块或模块中定义的类的静态变量直接写入
+            String owner = fieldOwner(builder.getClassAsm());
+            if (owner != null) {
+                PrimitiveAsm.buildObject(var, builder);
+                builder.getClassAsm().invokeStaticVar(Opcodes.PUTSTATIC, owner, name, Format.formatPack(Object.class));
+
+                return builder;
+            }
+
+            return builder.callDynamic(name, new Class<?>[]{Object.class, Object.class}, null, JPFieldSite.class, "bootstrap").setContent(metbui -> {
                 return metbui.definitPar(
-                        parBui -> ((CallBuilder<?>) key.build(builder)),
-                        parBui -> parBui.definitObj(((VarCallStatement) call).name.getText()),
+                        parBui -> ((CallBuilder<?>) key.build(parBui)),
                         parBui -> (CallBuilder<?>) var.build(parBui)
                 );
             })._break();
@@ -49,6 +65,15 @@ public class SubSetStatement extends PyStatement {
         throw new RuntimeException("no key");
     }
 
+    /**
+     * @return key为导入的模块或模块中定义的类，且写入的变量在编译期已知时为变量所在的类，否则为null
+     */
+    private String fieldOwner(ClassAsm classAsm) {
+        if (!PyCompiler.optimize || !(classAsm instanceof ModuleAsm) || !(key instanceof VarCallStatement)) return null;
+
+        return ((ModuleAsm) classAsm).fieldOwner(((VarCallStatement) key).name.getText(), ((VarCallStatement) call).name.getText());
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("SubSet{")
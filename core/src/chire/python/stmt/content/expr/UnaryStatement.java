@@ -0,0 +1,50 @@
+package chire.python.stmt.content.expr;
+
+import chire.asm.dynamic.builder.BlockBuilder;
+import chire.asm.dynamic.builder.Builder;
+import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.escape.JPOperatorSite;
+import chire.python.stmt.PyStatement;
+import chire.python.util.SmartIndenter;
+import org.objectweb.asm.Type;
+
+/**一元运算符: - + ~*/
+public class UnaryStatement extends PyStatement {
+    public final String operator;
+    public final PyStatement value;
+
+    public UnaryStatement(String operator, PyStatement value){
+        this.operator = operator;
+        this.value = value;
+    }
+
+    @Override
+    public Builder<?> build(Builder<?> builder) {
+        Type type = PrimitiveAsm.typeOf(this, builder.getClassAsm());
+        if (type != null) return PrimitiveAsm.build(this, type, builder);
+
+        if (builder instanceof BlockBuilder<?>) {
+            return ((BlockBuilder<?>) builder).callDynamic("unary", new Class<?>[]{Object.class}, Object.class, JPOperatorSite.class, "bootstrap", operator)
+                    .setContent(unaBui -> unaBui.definitPar(
+                            unaPar -> (CallBuilder) value.build(unaPar)
+                    ));
+        } else if (builder instanceof CallBuilder<?>) {
+            return ((BlockBuilder<?>) ((CallBuilder<?>) builder)._break()).callDynamic("unary", new Class<?>[]{Object.class}, Object.class, JPOperatorSite.class, "bootstrap", operator)
+                    .setContent(unaBui -> unaBui.definitPar(
+                            unaPar -> (CallBuilder) value.build(unaPar)
+                    ));
+        }
+
+        throw new RuntimeException("no key");
+    }
+
+    @Override
+    public void toString(SmartIndenter indenter) {
+        indenter.newLine().add("Unary{").indent()
+                .newLine().add("operator=").add(operator)
+                .newLine().add("value:").indent();
+        value.toString(indenter);
+        indenter.unindent().newLine().unindent().add("}");
+    }
+}
@@ -4,9 +4,11 @@ package chire.python.stmt.content.expr;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.asm.PrimitiveAsm;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
+import org.objectweb.asm.Type;
 
 /**变量调用*/
 public class VarCallStatement extends PyStatement {
@@ -21,6 +23,10 @@ public class VarCallStatement extends PyStatement {
      */
     @Override
     public Builder<?> build(Builder<?> builder) {
+        // 基本类型的局部变量读取时装箱
+        Type type = builder.getClassAsm().getLocalType(this.name.getText());
+        if (type != null) return PrimitiveAsm.build(this, type, builder);
+
         if (builder instanceof CallBuilder<?>) {
             try {
                 return ((CallBuilder<?>) builder).callLocal(this.name.getText());
@@ -0,0 +1,216 @@
+package chire.python.stmt.type;
+
+import chire.asm.ClassAsm;
+import chire.asm.dynamic.builder.BlockBuilder;
+import chire.asm.dynamic.builder.Builder;
+import chire.asm.dynamic.builder.CallBuilder;
+import chire.asm.dynamic.builder.ClassBuilder;
+import chire.asm.dynamic.definition.FunctionDefinition;
+import chire.python.PyCompiler;
+import chire.python.antlr.Python3Parser;
+import chire.python.asm.ModuleBuilder;
+import chire.python.asm.PrimitiveAsm;
+import chire.python.lib.builtins.PyDict;
+import chire.python.lib.builtins.PyList;
+import chire.python.lib.builtins.PySet;
+import chire.python.lib.escape.JPUtil;
+import chire.python.optimize.TypeInference;
+import chire.python.stmt.PyStatement;
+import chire.python.stmt.content.control.ForStatement;
+import chire.python.stmt.content.control.IfStatement;
+import chire.python.stmt.content.expr.VarCallStatement;
+import chire.python.util.SmartIndenter;
+import org.antlr.v4.runtime.CommonToken;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * list、set、dict推导式，编译为同一个类中的静态方法`comp$n`，方法中为嵌套的for、if，
+ * 最内层直接调用结果的append、add或__setitem__。第一个for的来源在外面计算，与 Python 一致。
+ * 只有一个for且没有if时，按{@link JPUtil#sizeHint}预先分配结果的容量。
+ * 循环变量在解析时已经改名为隐藏的名字，不会覆盖外面的同名变量。
+ */
+public class ComprehensionStatement extends PyStatement {
+    public enum Kind {
+        LIST(PyList.class, "append", "(Ljava/lang/Object;)V"),
+        SET(PySet.class, "add", "(Ljava/lang/Object;)V"),
+        DICT(PyDict.class, "__setitem__", "(Ljava/lang/Object;Ljava/lang/Object;)V");
+
+        private final String owner;
+        private final String add;
+        private final String descriptor;
+
+        Kind(Class<?> owner, String add, String descriptor) {
+            this.owner = Type.getInternalName(owner);
+            this.add = add;
+            this.descriptor = descriptor;
+        }
+    }
+
+    public final Kind kind;
+
+    /**元素，dict推导式中为键*/
+    public final PyStatement element;
+
+    /**dict推导式中的值，其余为null*/
+    public final PyStatement value;
+
+    /**按源码顺序的for与if，for的body与if的statements均为空*/
+    public final List<PyStatement> clauses;
+
+    // 生成的方法中保存结果的局部变量
+    private String result;
+
+    public ComprehensionStatement(Kind kind, PyStatement element, PyStatement value, List<PyStatement> clauses) {
+        this.kind = kind;
+        this.element = element;
+        this.value = value;
+        this.clauses = clauses;
+    }
+
+    /**
+     * 表达式作为语句时丢弃结果
+     * @return CallBuilder
+     */
+    @Override
+    public Builder<?> build(Builder<?> builder) {
+        if (builder instanceof ClassBuilder) {
+            ClassBuilder cont = ((ClassBuilder) builder).setContent(content -> {
+                call(content);
+                content.getClassAsm().mVisitInsn(POP);
+
+                return content.out();
+            });
+
+            return builder instanceof ModuleBuilder ? new ModuleBuilder(cont.getClassAsm()) : cont;
+        }
+
+        BlockBuilder<?> content = builder instanceof CallBuilder<?> ? (BlockBuilder<?>) ((CallBuilder<?>) builder)._break() : (BlockBuilder<?>) builder;
+        ClassAsm classAsm = builder.getClassAsm();
+
+        call(content);
+        if (!classAsm.getState().contains("content")) classAsm.mVisitInsn(POP);
+
+        return new CallBuilder(classAsm, builder.getType());
+    }
+
+    /**
+     * 计算第一个for的来源，与用到的局部变量一起传给生成的静态方法，栈顶留下结果。
+     * 循环在单独的方法中执行，操作数栈为空，表达式中的推导式也能被JIT按循环编译。
+     */
+    private void call(BlockBuilder<?> content) {
+        ClassAsm classAsm = content.getClassAsm();
+        String name = classAsm.hiddenName("comp");
+
+        List<String> names = new ArrayList<>();
+        StringBuilder descriptor = new StringBuilder("(Ljava/lang/Object;");
+
+        PrimitiveAsm.buildObject(((ForStatement) clauses.get(0)).iterable, content);
+
+        for (String read : TypeInference.reads(this)) {
+            if (!classAsm.hasLocalVar(read)) continue;
+
+            Type type = classAsm.getLocalType(read);
+            if (type != null) {
+                classAsm.loadLocalVar(read);
+            } else {
+                classAsm.invokeLocalVar(read);
+                type = Type.getType(Object.class);
+            }
+
+            names.add(read);
+            descriptor.append(type.getDescriptor());
+        }
+        descriptor.append(")Ljava/lang/Object;");
+
+        classAsm.invokeMethod(INVOKESTATIC, classAsm.className, name, descriptor.toString());
+
+        names.add(0, name + "$source");
+        classAsm.defineLater(later -> loop(later, name, descriptor.toString(), names.toArray(new String[0])));
+    }
+
+    private void loop(ClassAsm classAsm, String name, String descriptor, String[] names) {
+        FunctionDefinition fun = new ClassBuilder(classAsm).defineFunction(ACC_PRIVATE | ACC_STATIC, name, descriptor, names);
+        result = name;
+
+        List<PyStatement> clauses = new ArrayList<>(this.clauses);
+        ForStatement source = (ForStatement) clauses.get(0);
+
+        if (PyCompiler.optimize && clauses.size() == 1) {
+            classAsm.varInsn(ALOAD, names[0]);
+            classAsm.invokeMethod(INVOKESTATIC, Type.getInternalName(JPUtil.class), "sizeHint", "(Ljava/lang/Object;)I");
+            classAsm.invokeMethod(INVOKESTATIC, kind.owner, "withCapacity", "(I)L" + kind.owner + ";");
+        } else {
+            classAsm.newClass(kind.owner);
+            classAsm.invokeMethod(INVOKESPECIAL, kind.owner, "<init>", "()V");
+        }
+        classAsm.varInsn(result);
+
+        clauses.set(0, new ForStatement(source.variable, new VarCallStatement(new CommonToken(Python3Parser.NAME, names[0])), source.body));
+
+        // 从最内层开始嵌套
+        ArrayList<PyStatement> body = new ArrayList<>();
+        body.add(new Add());
+
+        for (int i = clauses.size() - 1; i >= 0; i--) {
+            PyStatement clause = clauses.get(i);
+            ArrayList<PyStatement> outer = new ArrayList<>();
+
+            if (clause instanceof ForStatement) {
+                outer.add(new ForStatement(((ForStatement) clause).variable, ((ForStatement) clause).iterable, body));
+            } else {
+                outer.add(new IfStatement(((IfStatement) clause).conditions, body));
+            }
+
+            body = outer;
+        }
+
+        // 循环中的语句不在表达式中，不保留值
+        PyStatement loop = body.get(0);
+        classAsm.setState("comprehension", () -> loop.build(fun));
+
+        classAsm.varInsn(ALOAD, result);
+        classAsm.toReturn(true);
+        fun._back();
+    }
+
+    /**向结果中添加一个元素*/
+    private class Add extends PyStatement {
+        @Override
+        public Builder<?> build(Builder<?> builder) {
+            ClassAsm classAsm = builder.getClassAsm();
+
+            classAsm.varInsn(ALOAD, result);
+            classAsm.mVisitTypeInsn(CHECKCAST, kind.owner);
+
+            PrimitiveAsm.buildObject(element, builder);
+            if (value != null) PrimitiveAsm.buildObject(value, builder);
+
+            classAsm.invokeMethod(INVOKEVIRTUAL, kind.owner, kind.add, kind.descriptor);
+
+            return builder;
+        }
+    }
+
+    @Override
+    public void toString(SmartIndenter indenter) {
+        indenter.newLine().add("Comprehension{").add(kind.name())
+                .indent();
+
+        element.toString(indenter);
+        if (value != null) {
+            indenter.add(" : ");
+            value.toString(indenter);
+        }
+
+        for (PyStatement clause : clauses) {
+            clause.toString(indenter);
+        }
+
+        indenter.newLine().unindent().add("}");
+    }
+}
@@ -40,6 +40,10 @@ public class ConstStatement<T> extends PyStatement {
         throw new RuntimeException("no key");
     }
 
+    public Object getValue() {
+        return type == String.class ? RemoveQuotes.removeQuotes(token.getText()) : cast();
+    }
+
     private Object cast() {
         if (Object.class.equals(type)) {
             return null;
@@ -14,7 +14,7 @@ import java.util.List;
 import java.util.Map;
 
 public class DictStatement extends PyStatement {
-    private final Map<PyStatement, PyStatement> args;
+    public final Map<PyStatement, PyStatement> args;
 
     public DictStatement(Map<PyStatement, PyStatement> args) {
         this.args = args;
@@ -1,9 +1,23 @@
 package chire.python.stmt.type;
 
+import chire.asm.dynamic.builder.BlockBuilder;
+import chire.asm.dynamic.builder.Builder;
+import chire.asm.dynamic.builder.CallBuilder;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 
 public class NoneStatement extends PyStatement {
+    @Override
+    public Builder<?> build(Builder<?> builder) {
+        if (builder instanceof CallBuilder<?>) {
+            return ((CallBuilder<?>) builder).definitObj(null);
+        } else if (builder instanceof BlockBuilder<?>) {
+            return ((BlockBuilder<?>) builder).definitObj(null);
+        }
+
+        throw new RuntimeException("no key");
+    }
+
     @Override
     public void toString(SmartIndenter indenter) {
         indenter.newLine().add("null");
@@ -3,6 +3,7 @@ package chire.python.stmt.type;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.asm.ConstantAsm;
 import chire.python.stmt.PyStatement;
 import chire.python.util.SmartIndenter;
 import org.antlr.v4.runtime.Token;
@@ -27,6 +28,8 @@ public class NumberStatement<T> extends PyStatement {
 
     @Override
     public Builder<?> build(Builder<?> builder) {
+        if (ConstantAsm.isHoisted(this)) return ConstantAsm.build(this, builder);
+
         if (builder instanceof BlockBuilder<?>) {
             return ((BlockBuilder) builder).definitObj(cast());
         } else if (builder instanceof CallBuilder<?>) {
@@ -36,9 +39,15 @@ public class NumberStatement<T> extends PyStatement {
         throw new RuntimeException("no key");
     }
 
+    public Number getValue() {
+        return cast();
+    }
+
     private Number cast() {
         if (Integer.class.equals(type)) {
             return Integer.valueOf(token.getText()) * (range ? 1 : -1);
+        } else if (Long.class.equals(type)) {
+            return Long.valueOf(token.getText()) * (range ? 1 : -1);
         } else if (Double.class.equals(type)) {
             return Double.valueOf(token.getText()) * (range ? 1 : -1);
         } else if (Float.class.equals(type)) {
@@ -0,0 +1,59 @@
+package chire.python.stmt.type;
+
+import chire.asm.dynamic.builder.BlockBuilder;
+import chire.asm.dynamic.builder.Builder;
+import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.lib.builtins.PySlice;
+import chire.python.lib.escape.JPUtil;
+import chire.python.stmt.PyStatement;
+import chire.python.util.SmartIndenter;
+
+/**
+ * 下标中的 start:stop:step，省略的部分为{@link NoneStatement}，运行时为{@link PySlice}
+ */
+public class SliceStatement extends PyStatement {
+    public final PyStatement start;
+    public final PyStatement stop;
+    public final PyStatement step;
+
+    public SliceStatement(PyStatement start, PyStatement stop, PyStatement step) {
+        this.start = start;
+        this.stop = stop;
+        this.step = step;
+    }
+
+    @Override
+    public Builder<?> build(Builder<?> builder) {
+        if (builder instanceof BlockBuilder<?>) {
+            return ((BlockBuilder<?>) builder).callMethod(JPUtil.class, "slice", new Class<?>[]{Object.class, Object.class, Object.class}, PySlice.class).setContent(funBui -> {
+                return funBui.definitPar(
+                        par -> (CallBuilder) start.build(par),
+                        par -> (CallBuilder) stop.build(par),
+                        par -> (CallBuilder) step.build(par)
+                );
+            });
+        } else if (builder instanceof CallBuilder<?>) {
+            return ((CallBuilder<?>) builder)._break().callMethod(JPUtil.class, "slice", new Class<?>[]{Object.class, Object.class, Object.class}, PySlice.class).setContent(funBui -> {
+                return funBui.definitPar(
+                        par -> (CallBuilder) start.build(par),
+                        par -> (CallBuilder) stop.build(par),
+                        par -> (CallBuilder) step.build(par)
+                );
+            });
+        }
+
+        throw new RuntimeException("no key:" + builder.getClass());
+    }
+
+    @Override
+    public void toString(SmartIndenter indenter) {
+        indenter.newLine().add("Slice(")
+                .indent();
+
+        start.toString(indenter);
+        stop.toString(indenter);
+        step.toString(indenter);
+
+        indenter.newLine().unindent().add(")");
+    }
+}
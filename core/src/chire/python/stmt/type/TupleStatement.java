@@ -4,6 +4,7 @@ import chire.asm.dynamic.AsmBudVisitor;
 import chire.asm.dynamic.builder.BlockBuilder;
 import chire.asm.dynamic.builder.Builder;
 import chire.asm.dynamic.builder.CallBuilder;
+import chire.python.asm.ConstantAsm;
 import chire.python.lib.builtins.PyTuple;
 import chire.python.lib.escape.JPUtil;
 import chire.python.stmt.PyStatement;
@@ -20,6 +21,8 @@ public class TupleStatement extends PyStatement {
 
     @Override
     public Builder<?> build(Builder<?> builder) {
+        if (ConstantAsm.isHoisted(this)) return ConstantAsm.build(this, builder);
+
         AsmBudVisitor.AsmCallBuilder[] callBuilders = new AsmBudVisitor.AsmCallBuilder[list.size()];
 
         for (int i = 0; i < list.size(); i++) {
@@ -0,0 +1,143 @@
+package chire.python.util;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**基于NIO的源码扫描器，扫描到的py文件会立即交给处理器，并附带推导出的模块名*/
+public class SourceScanner {
+    private final Path root;
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+
+    public SourceScanner(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * @param glob 相对于根目录的路径，例如 {@code chire/**}
+     */
+    public SourceScanner include(String glob) {
+        includes.add(root.getFileSystem().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    public SourceScanner exclude(String glob) {
+        excludes.add(root.getFileSystem().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void scan(SourceHandler handler) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            throw new IllegalArgumentException("目录不存在: " + root);
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("路径不是目录: " + root);
+        }
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && matches(excludes, root.relativize(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || !file.getFileName().toString().endsWith(".py")) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                Path relative = root.relativize(file);
+
+                if ((includes.isEmpty() || matches(includes, relative)) && !matches(excludes, relative)) {
+                    handler.handle(new Source(file, moduleName(relative)));
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 不扫描整个目录，直接判断模块是否会被{@link #scan(SourceHandler)}扫描到
+     * @param module 例如 chire.py.main
+     * @return 模块对应的源文件，不存在或被排除时为null
+     */
+    public Source source(String module) {
+        if (root == null || module.isEmpty()) return null;
+
+        String[] parts = module.split("\\.", -1);
+        Path relative = root.getFileSystem().getPath("");
+
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isEmpty()) return null;
+
+            relative = relative.resolve(i == parts.length - 1 ? parts[i] + ".py" : parts[i]);
+            Path file = root.resolve(relative);
+
+            // 与walkFileTree一样不跟随符号链接，被排除的目录整个跳过
+            if (i < parts.length - 1 && (!Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS) || matches(excludes, relative))) return null;
+            if (i == parts.length - 1 && !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) return null;
+        }
+
+        if ((includes.isEmpty() || matches(includes, relative)) && !matches(excludes, relative)) {
+            return new Source(root.resolve(relative), module);
+        }
+
+        return null;
+    }
+
+    public List<Source> scan() throws IOException {
+        List<Source> sources = new ArrayList<>();
+        scan(sources::add);
+        return sources;
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 由相对路径推导模块名，与系统的路径分隔符无关。
+     * @param relative 例如 chire/py/main.py
+     * @return 例如 chire.py.main
+     */
+    public static String moduleName(Path relative) {
+        StringBuilder name = new StringBuilder();
+
+        for (int i = 0; i < relative.getNameCount(); i++) {
+            if (i > 0) name.append('.');
+            name.append(relative.getName(i).toString());
+        }
+
+        return name.substring(0, name.length() - 3);
+    }
+
+    public static class Source {
+        public final Path path;
+        public final String module;
+
+        public Source(Path path, String module) {
+            this.path = path;
+            this.module = module;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SourceHandler {
+        void handle(Source source) throws IOException;
+    }
+}
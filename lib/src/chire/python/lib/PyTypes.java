@@ -3,8 +3,11 @@ package chire.python.lib;
 import chire.python.lib.builtins.PyDict;
 import chire.python.lib.builtins.PyList;
 import chire.python.lib.builtins.PyObject;
+import chire.python.lib.builtins.PyRange;
+import chire.python.lib.builtins.PySet;
 import chire.python.lib.builtins.PyTuple;
 import chire.python.lib.escape.JPFunction;
+import chire.python.lib.escape.JPOperators;
 import chire.python.lib.escape.JPUtil;
 
 import java.lang.reflect.InvocationTargetException;
@@ -40,23 +43,17 @@ public class PyTypes {
             return new JPUtil.BaseValue<>((int) args.get("obj"), int.class);
         }, int.class));
 
-        put("range", new JPFunction<>(new String[]{"in", "to"}, args -> {
-            if (args.size() == 2) {
-                PyList list = new PyList();
-
-                for (int i = (int) args.get("in"); i < (int) args.get("to"); i++) list.append(i);
-
-                return list;
-            } else if (args.size() == 1) {
-                PyList list = new PyList();
-
-                for (int i = 0; i < (int) args.get("in"); i++) list.append(i);
-
-                return list;
+        put("range", new JPFunction<>(new String[]{"start", "stop", "step"}, args -> {
+            if (args.size() == 1) {
+                return PyRange.of(JPOperators.asLong(args.get("start")));
+            } else if (args.size() == 2) {
+                return PyRange.of(JPOperators.asLong(args.get("start")), JPOperators.asLong(args.get("stop")));
+            } else if (args.size() == 3) {
+                return PyRange.of(JPOperators.asLong(args.get("start")), JPOperators.asLong(args.get("stop")), JPOperators.asLong(args.get("step")));
             } else {
                 throw new RuntimeException("no key");
             }
-        }, PyList.class));
+        }, PyRange.class));
 
         put("len", new JPFunction<>(new String[]{"item"}, args -> {
             Object item = args.get("item");
@@ -70,6 +67,12 @@ public class PyTypes {
             if (item instanceof PyTuple) {
                 return ((PyTuple) item).size();
             }
+            if (item instanceof PyRange) {
+                return ((PyRange) item).size();
+            }
+            if (item instanceof PySet) {
+                return ((PySet) item).size();
+            }
 
             if (item instanceof Map<?,?>) {
                 return ((Map<?, ?>) item).size();
@@ -89,6 +92,8 @@ public class PyTypes {
         put("dict", PyDict.class);
         put("tuple", PyTuple.class);
         put("list", PyList.class);
+        put("range", PyRange.class);
+        put("set", PySet.class);
         put("object", PyObject.class);
     }};
 
@@ -3,7 +3,7 @@ package chire.python.lib.builtins;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class PyDict extends PyObject {
+public class PyDict extends PyObject implements Iterable<Object> {
     private final LinkedHashMap<Object, Object> data;
 
     public static PyDict __dict__;
@@ -16,6 +16,15 @@ public class PyDict extends PyObject {
         this.data = new LinkedHashMap<>(map);
     }
 
+    private PyDict(int capacity) {
+        this.data = new LinkedHashMap<>(PySet.capacity(capacity));
+    }
+
+    /**预先分配容量，添加capacity个键之前不会扩容*/
+    public static PyDict withCapacity(int capacity) {
+        return new PyDict(capacity);
+    }
+
     // 核心方法
     public Object __getitem__(Object key) {
         if (!data.containsKey(key)) {
@@ -110,6 +119,27 @@ public class PyDict extends PyObject {
         data.putAll(map);
     }
 
+    // 迭代键，迭代过程中修改字典会抛出ConcurrentModificationException
+    public PyIterator __iter__() {
+        Iterator<Object> keys = data.keySet().iterator();
+
+        return new PyIterator() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+            @Override
+            public Object next() {
+                return keys.next();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return __iter__();
+    }
+
     public boolean __contains__(Object key) {
         return data.containsKey(key);
     }
@@ -0,0 +1,48 @@
+package chire.python.lib.builtins;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 生成器，调用含有yield的函数时返回编译生成的子类的实例。
+ * 函数的局部变量保存为子类的实例变量，{@link #resume()}每次从上一个yield之后继续执行到下一个yield，
+ * 返回{@link #END}表示函数已经结束。函数中抛出的异常会结束生成器。
+ */
+public abstract class PyGenerator extends PyIterator {
+    /**函数结束时resume的返回值，不会作为元素*/
+    public static final Object END = new Object();
+
+    // 已经计算但还没有被next取走的元素，没有时为END
+    private Object next = END;
+
+    private boolean finished = false;
+
+    /**
+     * @return yield的值，函数结束时为{@link #END}
+     */
+    protected abstract Object resume();
+
+    @Override
+    public boolean hasNext() {
+        if (next == END && !finished) {
+            try {
+                next = resume();
+            } catch (RuntimeException | Error e) {
+                finished = true;
+                throw e;
+            }
+
+            finished = next == END;
+        }
+
+        return next != END;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        Object value = next;
+        next = END;
+        return value;
+    }
+}
@@ -0,0 +1,37 @@
+package chire.python.lib.builtins;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 迭代协议中的迭代器，由list、tuple、dict、range的__iter__返回。
+ * 每次__iter__都创建新的迭代器并各自保存游标，同一个对象可以被嵌套或重复迭代；
+ * 迭代器只保存游标，不复制被迭代的数据。
+ * __next__在没有元素时抛出NoSuchElementException，对应python的StopIteration。
+ */
+public abstract class PyIterator implements Iterator<Object> {
+
+    public PyIterator __iter__() {
+        return this;
+    }
+
+    public Object __next__() {
+        return next();
+    }
+
+    /**按下标遍历字符串，元素为长度为1的字符串*/
+    public static PyIterator of(String string) {
+        return new PyIterator() {
+            private int cursor = 0;
+            @Override
+            public boolean hasNext() {
+                return cursor < string.length();
+            }
+            @Override
+            public Object next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return String.valueOf(string.charAt(cursor++));
+            }
+        };
+    }
+}
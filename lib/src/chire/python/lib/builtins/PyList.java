@@ -3,8 +3,7 @@ package chire.python.lib.builtins;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class PyList extends PyObject implements Iterator<Object> {
-    private int cursor = 0;
+public class PyList extends PyObject implements Iterable<Object> {
     private final List<Object> data;
 
     public static PyDict __dict__;
@@ -23,6 +22,13 @@ public class PyList extends PyObject implements Iterator<Object> {
         }
     }
 
+    /**预先分配容量，追加capacity个元素之前不会扩容*/
+    public static PyList withCapacity(int capacity) {
+        PyList list = new PyList();
+        ((ArrayList<Object>) list.data).ensureCapacity(capacity);
+        return list;
+    }
+
     // 添加元素到末尾
     public void append(Object item) {
         data.add(item);
@@ -45,6 +51,14 @@ public class PyList extends PyObject implements Iterator<Object> {
         return data.size();
     }
 
+    public int size() {
+        return data.size();
+    }
+
+    public Object get(int index) {
+        return data.get(index);
+    }
+
     // 字符串表示
     public String __str__() {
         return data.stream()
@@ -81,7 +95,7 @@ public class PyList extends PyObject implements Iterator<Object> {
         this.data.addAll(list.data);
     }
 
-    public void addAll(Collection list) {
+    public void addAll(Collection<?> list) {
         this.data.addAll(list);
     }
 
@@ -94,19 +108,24 @@ public class PyList extends PyObject implements Iterator<Object> {
         return __str__();
     }
 
-    public Iterator<Object> iterator(){
-        return data.iterator();
-    }
-
-    @Override
-    public boolean hasNext() {
-        return cursor < data.size();
+    // 按下标迭代，每次都重新读取长度，迭代过程中追加的元素也会被遍历到
+    public PyIterator __iter__() {
+        return new PyIterator() {
+            private int cursor = 0;
+            @Override
+            public boolean hasNext() {
+                return cursor < data.size();
+            }
+            @Override
+            public Object next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return data.get(cursor++);
+            }
+        };
     }
 
     @Override
-    public Object next() {
-        Object var = data.get(cursor);
-        cursor++;
-        return var;
+    public Iterator<Object> iterator(){
+        return __iter__();
     }
 }
@@ -0,0 +1,180 @@
+package chire.python.lib.builtins;
+
+import chire.python.lib.escape.JPOperators;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 不可变的、类似 Python range 的整数序列，只保存start、stop、step，元素在使用时才计算。
+ * 支持len、负数下标、切片为另一个range以及O(1)的包含检查，迭代时不创建列表。
+ * 元素在int范围内为Integer，否则为Long，与运算符的结果一致。
+ */
+public final class PyRange extends PyObject implements Iterable<Object>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long start;
+    private final long stop;
+    private final long step;
+    private final long length;
+
+    public static PyDict __dict__;
+
+    private PyRange(long start, long stop, long step) {
+        if (step == 0) throw new IllegalArgumentException("range() arg 3 must not be zero");
+
+        this.start = start;
+        this.stop = stop;
+        this.step = step;
+
+        if (step > 0) {
+            this.length = start < stop ? (stop - start - 1) / step + 1 : 0;
+        } else {
+            this.length = start > stop ? (start - stop - 1) / -step + 1 : 0;
+        }
+    }
+
+    public static PyRange of(long stop) {
+        return new PyRange(0, stop, 1);
+    }
+
+    public static PyRange of(long start, long stop) {
+        return new PyRange(start, stop, 1);
+    }
+
+    public static PyRange of(long start, long stop, long step) {
+        return new PyRange(start, stop, step);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getStop() {
+        return stop;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int size() {
+        if (length > Integer.MAX_VALUE) throw new ArithmeticException("range length " + length + " is too large");
+        return (int) length;
+    }
+
+    public Object get(long index) {
+        if (index < 0) index += length;
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("range object index out of range: " + index);
+        }
+        return JPOperators.box(start + index * step);
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    public long indexOf(Object o) {
+        if (!(o instanceof Number)) return -1;
+
+        long value;
+        if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte) {
+            value = ((Number) o).longValue();
+        } else {
+            // 1.0 in range(3) 与 Python 一致为True
+            double d = ((Number) o).doubleValue();
+            if (d != Math.rint(d) || d < Long.MIN_VALUE || d > Long.MAX_VALUE) return -1;
+            value = (long) d;
+        }
+
+        long offset = value - start;
+        if (step > 0 ? value < start || value >= stop : value > start || value <= stop) return -1;
+        if (offset % step != 0) return -1;
+
+        return offset / step;
+    }
+
+    public int count(Object o) {
+        return contains(o) ? 1 : 0;
+    }
+
+    /**
+     * 与 Python 的 r[start:stop:step] 一致，null为省略的部分
+     */
+    public PyRange subRange(Long start, Long stop, Long step) {
+        long k = step == null ? 1 : step;
+        if (k == 0) throw new IllegalArgumentException("slice step cannot be zero");
+
+        long lower = k > 0 ? 0 : -1;
+        long upper = k > 0 ? length : length - 1;
+
+        long i = start == null ? (k > 0 ? lower : upper) : clamp(start, lower, upper);
+        long j = stop == null ? (k > 0 ? upper : lower) : clamp(stop, lower, upper);
+
+        return new PyRange(this.start + i * this.step, this.start + j * this.step, this.step * k);
+    }
+
+    private long clamp(long index, long lower, long upper) {
+        if (index < 0) index += length;
+        return Math.max(lower, Math.min(index, upper));
+    }
+
+    public PyIterator __iter__() {
+        return new PyIterator() {
+            private long next = start;
+            private long remaining = length;
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+            @Override
+            public Object next() {
+                if (remaining <= 0) throw new NoSuchElementException();
+                long value = next;
+                next += step;
+                remaining--;
+                return JPOperators.box(value);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return __iter__();
+    }
+
+    /**与 Python 一致，元素序列相同的range相等，例如range(0)与range(2, 2)*/
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof PyRange)) return false;
+
+        PyRange other = (PyRange) obj;
+        if (length != other.length) return false;
+        if (length == 0) return true;
+        if (start != other.start) return false;
+
+        return length == 1 || step == other.step;
+    }
+
+    @Override
+    public int hashCode() {
+        if (length == 0) return 0;
+        if (length == 1) return Long.hashCode(start) * 31 + 1;
+
+        return (Long.hashCode(start) * 31 + Long.hashCode(length)) * 31 + Long.hashCode(step);
+    }
+
+    @Override
+    public String toString() {
+        if (step == 1) return "range(" + start + ", " + stop + ")";
+        return "range(" + start + ", " + stop + ", " + step + ")";
+    }
+}
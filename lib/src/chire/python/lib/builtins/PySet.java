@@ -0,0 +1,120 @@
+package chire.python.lib.builtins;
+
+import chire.python.lib.escape.JPUtil;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 与 Python 的 set 对应，按插入顺序迭代。
+ */
+public class PySet extends PyObject implements Iterable<Object> {
+    private final LinkedHashSet<Object> data;
+
+    public static PyDict __dict__;
+
+    public PySet() {
+        this.data = new LinkedHashSet<>();
+    }
+
+    public PySet(Object iterable) {
+        this.data = new LinkedHashSet<>();
+
+        Iterator<Object> iterator = JPUtil.iterator(iterable);
+        while (iterator.hasNext()) {
+            data.add(iterator.next());
+        }
+    }
+
+    private PySet(int capacity) {
+        this.data = new LinkedHashSet<>(capacity(capacity));
+    }
+
+    /**预先分配容量，添加capacity个元素之前不会扩容*/
+    public static PySet withCapacity(int capacity) {
+        return new PySet(capacity);
+    }
+
+    static int capacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f);
+    }
+
+    public void add(Object item) {
+        data.add(item);
+    }
+
+    public void remove(Object item) {
+        if (!data.remove(item)) throw new NoSuchElementException("Key not found: " + item);
+    }
+
+    public void discard(Object item) {
+        data.remove(item);
+    }
+
+    public boolean __contains__(Object item) {
+        return data.contains(item);
+    }
+
+    public int __len__() {
+        return data.size();
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public void clear() {
+        data.clear();
+    }
+
+    public PySet copy() {
+        return new PySet(data);
+    }
+
+    public String __str__() {
+        if (data.isEmpty()) return "set()";
+
+        return data.stream()
+                .map(obj -> {
+                    if (obj instanceof String) return "'" + obj + "'";
+                    return Objects.toString(obj);
+                })
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    // 迭代过程中修改集合会抛出ConcurrentModificationException
+    public PyIterator __iter__() {
+        Iterator<Object> items = data.iterator();
+
+        return new PyIterator() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+            @Override
+            public Object next() {
+                return items.next();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return __iter__();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PySet && data.equals(((PySet) obj).data);
+    }
+
+    @Override
+    public int hashCode() {
+        return data.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return __str__();
+    }
+}
@@ -0,0 +1,44 @@
+package chire.python.lib.builtins;
+
+import java.util.Objects;
+
+/**
+ * 下标中的切片 a[start:stop:step]，省略的部分为null(None)。
+ * 只保存三个值，由被切片的对象解释，例如{@link PyRange#subRange(Long, Long, Long)}。
+ */
+public final class PySlice extends PyObject {
+    public final Object start;
+    public final Object stop;
+    public final Object step;
+
+    public static PyDict __dict__;
+
+    public PySlice(Object start, Object stop, Object step) {
+        this.start = start;
+        this.stop = stop;
+        this.step = step;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof PySlice)) return false;
+
+        PySlice other = (PySlice) obj;
+        return Objects.equals(start, other.start) && Objects.equals(stop, other.stop) && Objects.equals(step, other.step);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, stop, step);
+    }
+
+    @Override
+    public String toString() {
+        return "slice(" + repr(start) + ", " + repr(stop) + ", " + repr(step) + ")";
+    }
+
+    private static String repr(Object value) {
+        return value == null ? "None" : value.toString();
+    }
+}
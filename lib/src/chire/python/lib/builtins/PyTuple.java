@@ -131,9 +131,8 @@ public final class PyTuple extends PyObject implements Iterable<Object>, Compara
         return elements.clone();
     }
 
-    @Override
-    public Iterator<Object> iterator() {
-        return new Iterator<Object>() {
+    public PyIterator __iter__() {
+        return new PyIterator() {
             private int cursor = 0;
             @Override
             public boolean hasNext() {
@@ -147,6 +146,11 @@ public final class PyTuple extends PyObject implements Iterable<Object>, Compara
         };
     }
 
+    @Override
+    public Iterator<Object> iterator() {
+        return __iter__();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -0,0 +1,226 @@
+package chire.python.lib.escape;
+
+import chire.python.lib.PyTypes;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * 方法调用的invokedynamic调用点，查找顺序与{@link JPUtil#callMethod(Object, String, Object...)}一致。
+ * 解析出的MethodHandle以接收者与参数的类型(参数为None时以null)为条件缓存：先是单态，出现新的类型时在前面追加分支，
+ * 无法直接调用的类型组合(例如参数中有BaseValue)同样追加分支，分支中使用JPUtil.callMethod，不会每次都重新解析。
+ * 分支超过{@link #MAX_DEPTH}后不再缓存，直接使用JPUtil.callMethod。
+ */
+public class JPCallSite extends MutableCallSite {
+    public static final int MAX_DEPTH = 8;
+
+    private static final MethodHandle RELINK;
+    private static final MethodHandle CALL_METHOD;
+    private static final MethodHandle CALL_FUNCTION;
+    private static final MethodHandle UNWRAP;
+    private static final MethodHandle SAME;
+    private static final MethodHandle SAME_CLASS;
+    private static final MethodHandle IS_NULL;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            RELINK = lookup.findVirtual(JPCallSite.class, "relink", MethodType.methodType(Object.class, Object[].class));
+            CALL_METHOD = lookup.findStatic(JPUtil.class, "callMethod", MethodType.methodType(Object.class, Object.class, String.class, Object[].class)).asFixedArity();
+            CALL_FUNCTION = lookup.findVirtual(JPFunction.class, "call", MethodType.methodType(Object.class, Object[].class)).asFixedArity();
+            UNWRAP = lookup.findStatic(JPCallSite.class, "unwrap", MethodType.methodType(Object.class, Object.class, Object[].class));
+            SAME = lookup.findStatic(JPCallSite.class, "same", MethodType.methodType(boolean.class, Object.class, Object.class));
+            SAME_CLASS = lookup.findStatic(JPCallSite.class, "sameClass", MethodType.methodType(boolean.class, Class.class, Object.class));
+            IS_NULL = lookup.findStatic(JPCallSite.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final MethodHandles.Lookup lookup;
+    private final String name;
+    private int depth = 0;
+
+    private JPCallSite(MethodHandles.Lookup lookup, String name, MethodType type) {
+        super(type);
+        this.lookup = lookup;
+        this.name = name;
+
+        setTarget(RELINK.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type));
+    }
+
+    /**
+     * @param type (Object receiver, Object... args)Object
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return new JPCallSite(lookup, name, type);
+    }
+
+    /**
+     * @return 调用点的参数类型，接收者与count个参数均为Object
+     */
+    public static Class<?>[] parameters(int count) {
+        Class<?>[] parameters = new Class<?>[count + 1];
+        Arrays.fill(parameters, Object.class);
+        return parameters;
+    }
+
+    private Object relink(Object[] values) throws Throwable {
+        Object receiver = values[0];
+        Object[] args = Arrays.copyOfRange(values, 1, values.length);
+
+        if (receiver == null) return JPUtil.callMethod(receiver, name, args);
+
+        MethodHandle target;
+
+        try {
+            target = resolve(receiver, args);
+        } catch (IllegalAccessException e) {
+            target = null;
+        }
+
+        // 无法直接调用时同样以类型为条件缓存，之后相同类型的调用不再重新解析
+        if (target == null) target = generic(args.length);
+
+        target = target.asType(type());
+
+        if (depth < MAX_DEPTH) {
+            setTarget(guard(target, receiver, args));
+            depth++;
+        } else {
+            setTarget(generic(args.length).asType(type()));
+        }
+
+        return target.invokeWithArguments(values);
+    }
+
+    private MethodHandle generic(int count) {
+        return MethodHandles.insertArguments(CALL_METHOD, 1, name).asCollector(Object[].class, count);
+    }
+
+    /**
+     * @return 无法直接调用时为null，例如参数中有BaseValue，此时由JPUtil.callMethod处理
+     */
+    private MethodHandle resolve(Object receiver, Object[] args) throws IllegalAccessException {
+        Class<?>[] classes = new Class<?>[args.length];
+        Class<?>[] objects = new Class<?>[args.length];
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof JPUtil.BaseValue) return null;
+
+            // None没有类型，与JPUtil.callMethod一样按Object查找
+            classes[i] = args[i] == null ? Object.class : args[i].getClass();
+            objects[i] = Object.class;
+        }
+
+        boolean isStatic = receiver instanceof Class<?>;
+        Class<?> owner = isStatic ? (Class<?>) receiver : receiver.getClass();
+
+        Method method = method(owner, classes);
+        if (method != null) return invoker(method, isStatic, args.length, false);
+
+        if (!isStatic) {
+            method = JPUtil.selfMethod(owner, name, args.length);
+            if (method != null) return invoker(method, false, args.length, true);
+        }
+
+        method = method(owner, objects);
+        if (method != null) return invoker(method, isStatic, args.length, true);
+
+        JPFunction<?> function = PyTypes.funs.get(name);
+        if (function != null) {
+            return MethodHandles.dropArguments(
+                    CALL_FUNCTION.bindTo(function).asCollector(Object[].class, args.length), 0, Object.class
+            );
+        }
+
+        Class<?> clazz = JPUtil.forClass(owner.getName() + "$" + name);
+        if (clazz == null) return null;
+
+        Constructor<?> constructor = constructor(clazz, classes);
+        if (constructor == null) constructor = constructor(clazz, objects);
+        if (constructor == null) return null;
+
+        return MethodHandles.dropArguments(lookup.unreflectConstructor(constructor).asFixedArity(), 0, Object.class);
+    }
+
+    private MethodHandle invoker(Method method, boolean isStatic, int count, boolean unwrap) throws IllegalAccessException {
+        MethodHandle handle = lookup.unreflect(method).asFixedArity();
+
+        // 以self为第一个参数的静态方法直接接收调用点的接收者
+        if (Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == count) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        } else if (isStatic && !Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+
+        handle = handle.asType(MethodType.genericMethodType(count + 1));
+
+        // 返回值为JPFunction时继续以相同的参数调用
+        if (unwrap && method.getReturnType().isAssignableFrom(JPFunction.class)) {
+            MethodHandle post = MethodHandles.dropArguments(UNWRAP.asCollector(Object[].class, count), 1, Object.class);
+            handle = MethodHandles.foldArguments(post, handle);
+        }
+
+        return handle;
+    }
+
+    private MethodHandle guard(MethodHandle target, Object receiver, Object[] args) {
+        MethodHandle fallback = getTarget();
+        MethodHandle guarded = target;
+
+        for (int i = args.length; i >= 0; i--) {
+            Object value = i == 0 ? receiver : args[i - 1];
+            MethodHandle test;
+
+            if (i == 0 && receiver instanceof Class<?>) {
+                test = SAME.bindTo(receiver);
+            } else if (value == null) {
+                test = IS_NULL;
+            } else {
+                test = SAME_CLASS.bindTo(value.getClass());
+            }
+
+            test = MethodHandles.dropArguments(test, 0, type().parameterList().subList(0, i));
+            guarded = MethodHandles.guardWithTest(test, guarded, fallback);
+        }
+
+        return guarded;
+    }
+
+    private Method method(Class<?> owner, Class<?>[] parameters) {
+        try {
+            return owner.getMethod(name, parameters);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Constructor<?> constructor(Class<?> owner, Class<?>[] parameters) {
+        try {
+            return owner.getDeclaredConstructor(parameters);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object unwrap(Object result, Object[] args) {
+        return result instanceof JPFunction<?> ? ((JPFunction<?>) result).call(args) : result;
+    }
+
+    private static boolean same(Object expected, Object actual) {
+        return expected == actual;
+    }
+
+    private static boolean sameClass(Class<?> expected, Object actual) {
+        return actual != null && actual.getClass() == expected;
+    }
+
+    private static boolean isNull(Object value) {
+        return value == null;
+    }
+}
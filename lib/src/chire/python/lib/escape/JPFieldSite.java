@@ -0,0 +1,177 @@
+package chire.python.lib.escape;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性读写的invokedynamic调用点，属性名即调用点的方法名。
+ * 接收者为Class时读写其静态变量，否则读写实例变量，与{@link JPUtil#callVar}、{@link JPUtil#setVar}一致。
+ * 字段的MethodHandle按类缓存在{@link ClassValue}中，读取时不加锁；
+ * 调用点按接收者的类型追加分支，超过{@link #MAX_DEPTH}后直接查缓存。
+ */
+public class JPFieldSite extends MutableCallSite {
+    public static final int MAX_DEPTH = 4;
+
+    private static final MethodHandle RELINK;
+    private static final MethodHandle GET;
+    private static final MethodHandle SET;
+    private static final MethodHandle SAME;
+    private static final MethodHandle SAME_CLASS;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            RELINK = lookup.findVirtual(JPFieldSite.class, "relink", MethodType.methodType(Object.class, Object[].class));
+            GET = lookup.findStatic(JPFieldSite.class, "get", MethodType.methodType(Object.class, Object.class, String.class));
+            SET = lookup.findStatic(JPFieldSite.class, "set", MethodType.methodType(void.class, Object.class, String.class, Object.class));
+            SAME = lookup.findStatic(JPFieldSite.class, "same", MethodType.methodType(boolean.class, Object.class, Object.class));
+            SAME_CLASS = lookup.findStatic(JPFieldSite.class, "sameClass", MethodType.methodType(boolean.class, Class.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 类 -> 实例变量的读写
+    private static final ClassValue<Fields> INSTANCE = new ClassValue<Fields>() {
+        @Override
+        protected Fields computeValue(Class<?> type) {
+            return new Fields(type, false);
+        }
+    };
+
+    // 类 -> 静态变量的读写
+    private static final ClassValue<Fields> STATIC = new ClassValue<Fields>() {
+        @Override
+        protected Fields computeValue(Class<?> type) {
+            return new Fields(type, true);
+        }
+    };
+
+    private final String name;
+    private final boolean setter;
+    private int depth = 0;
+
+    private JPFieldSite(MethodType type, String name) {
+        super(type);
+        this.name = name;
+        this.setter = type.parameterCount() == 2;
+
+        setTarget(RELINK.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type));
+    }
+
+    /**
+     * @param type 读取为(Object)Object，写入为(Object, Object)void
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return new JPFieldSite(type, name);
+    }
+
+    private Object relink(Object[] values) throws Throwable {
+        Object receiver = values[0];
+        if (receiver == null) throw new NullPointerException(name);
+
+        MethodHandle target = fields(receiver).handle(name, setter).asType(type());
+
+        if (depth < MAX_DEPTH) {
+            MethodHandle test = receiver instanceof Class<?>
+                    ? SAME.bindTo(receiver)
+                    : SAME_CLASS.bindTo(receiver.getClass());
+
+            if (setter) test = MethodHandles.dropArguments(test, 1, Object.class);
+
+            setTarget(MethodHandles.guardWithTest(test, target, getTarget()));
+            depth++;
+        } else {
+            MethodHandle generic = setter ? MethodHandles.insertArguments(SET, 1, name) : MethodHandles.insertArguments(GET, 1, name);
+            setTarget(generic.asType(type()));
+        }
+
+        return target.invokeWithArguments(values);
+    }
+
+    public static Object get(Object target, String name) {
+        MethodHandle handle = fields(target).handle(name, false);
+
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void set(Object target, String name, Object value) {
+        MethodHandle handle = fields(target).handle(name, true);
+
+        try {
+            handle.invokeExact(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Fields fields(Object target) {
+        return target instanceof Class<?> ? STATIC.get((Class<?>) target) : INSTANCE.get(target.getClass());
+    }
+
+    private static boolean same(Object expected, Object actual) {
+        return expected == actual;
+    }
+
+    private static boolean sameClass(Class<?> expected, Object actual) {
+        return actual != null && actual.getClass() == expected;
+    }
+
+    /**一个类的字段读写，读取为(Object)Object，写入为(Object, Object)void，静态变量忽略第一个参数*/
+    private static class Fields {
+        private final Class<?> type;
+        private final boolean isStatic;
+        private final Map<String, MethodHandle> getters = new ConcurrentHashMap<>();
+        private final Map<String, MethodHandle> setters = new ConcurrentHashMap<>();
+
+        Fields(Class<?> type, boolean isStatic) {
+            this.type = type;
+            this.isStatic = isStatic;
+        }
+
+        MethodHandle handle(String name, boolean setter) {
+            Map<String, MethodHandle> cache = setter ? setters : getters;
+            MethodHandle handle = cache.get(name);
+
+            if (handle == null) {
+                handle = resolve(name, setter);
+                cache.put(name, handle);
+            }
+
+            return handle;
+        }
+
+        private MethodHandle resolve(String name, boolean setter) {
+            try {
+                Field field = type.getDeclaredField(name);
+
+                // 通过实例也能读写静态变量，反之不行
+                boolean staticField = Modifier.isStatic(field.getModifiers());
+                if (isStatic && !staticField) throw new NoSuchFieldException(name);
+
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                MethodHandle handle = setter ? lookup.unreflectSetter(field) : lookup.unreflectGetter(field);
+
+                if (staticField) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+
+                return handle.asType(setter
+                        ? MethodType.methodType(void.class, Object.class, Object.class)
+                        : MethodType.methodType(Object.class, Object.class));
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
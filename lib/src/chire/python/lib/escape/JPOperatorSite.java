@@ -0,0 +1,216 @@
+package chire.python.lib.escape;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一元与二元运算符的invokedynamic调用点，运算符由引导方法的静态参数给出。
+ * 按观察到的操作数类型从{@link JPOperators}中选择重载并缓存，类型改变时追加新的分支，
+ * 分支超过{@link #MAX_DEPTH}后使用按类型查表的通用实现。
+ */
+public class JPOperatorSite extends MutableCallSite {
+    public static final int MAX_DEPTH = 4;
+
+    private static final MethodHandle RELINK;
+    private static final MethodHandle BINARY;
+    private static final MethodHandle UNARY;
+    private static final MethodHandle SAME_CLASS;
+    private static final MethodHandle AS_INT;
+    private static final MethodHandle AS_LONG;
+    private static final MethodHandle AS_DOUBLE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            RELINK = lookup.findVirtual(JPOperatorSite.class, "relink", MethodType.methodType(Object.class, Object[].class));
+            BINARY = lookup.findStatic(JPOperatorSite.class, "binary", MethodType.methodType(Object.class, String.class, Object.class, Object.class));
+            UNARY = lookup.findStatic(JPOperatorSite.class, "unary", MethodType.methodType(Object.class, String.class, Object.class));
+            SAME_CLASS = lookup.findStatic(JPOperatorSite.class, "sameClass", MethodType.methodType(boolean.class, Class.class, Object.class));
+            AS_INT = lookup.findStatic(JPOperators.class, "asInt", MethodType.methodType(int.class, Object.class));
+            AS_LONG = lookup.findStatic(JPOperators.class, "asLong", MethodType.methodType(long.class, Object.class));
+            AS_DOUBLE = lookup.findStatic(JPOperators.class, "asDouble", MethodType.methodType(double.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 运算符方法名与操作数的查找类型(见keyOf) -> 适配为(Object...)Object的实现
+    private static final Map<List<Object>, MethodHandle> handles = new ConcurrentHashMap<>();
+
+    private final String operator;
+    private final String name;
+    private int depth = 0;
+
+    private JPOperatorSite(MethodType type, String operator, String name) {
+        super(type);
+        this.operator = operator;
+        this.name = name;
+
+        setTarget(RELINK.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type));
+    }
+
+    /**
+     * @param type 二元运算为(Object, Object)Object，一元运算为(Object)Object
+     * @param operator python中的运算符，例如 {@code +}、{@code not in}
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type, String operator) {
+        String method = (type.parameterCount() == 2 ? JPOperators.NAMES : JPOperators.UNARY_NAMES).get(operator);
+        if (method == null) throw new RuntimeException("no key: " + operator);
+
+        return new JPOperatorSite(type, operator, method);
+    }
+
+    private Object relink(Object[] values) throws Throwable {
+        Class<?>[] types = new Class<?>[values.length];
+        for (int i = 0; i < values.length; i++) {
+            types[i] = values[i] == null ? null : values[i].getClass();
+        }
+
+        MethodHandle target = handle(operator, name, types);
+
+        if (depth < MAX_DEPTH) {
+            MethodHandle guarded = target;
+
+            for (int i = types.length - 1; i >= 0; i--) {
+                MethodHandle test = MethodHandles.dropArguments(SAME_CLASS.bindTo(types[i]), 0, type().parameterList().subList(0, i));
+                guarded = MethodHandles.guardWithTest(test, guarded, getTarget());
+            }
+
+            setTarget(guarded);
+            depth++;
+        } else {
+            setTarget(MethodHandles.insertArguments(values.length == 2 ? BINARY : UNARY, 0, operator).asType(type()));
+        }
+
+        return target.invokeWithArguments(values);
+    }
+
+    public static Object binary(String operator, Object a, Object b) throws Throwable {
+        return handle(operator, JPOperators.NAMES.get(operator), classOf(a), classOf(b)).invokeExact(a, b);
+    }
+
+    public static Object unary(String operator, Object a) throws Throwable {
+        return handle(operator, JPOperators.UNARY_NAMES.get(operator), classOf(a)).invokeExact(a);
+    }
+
+    private static MethodHandle handle(String operator, String name, Class<?>... types) {
+        Class<?>[] keys = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            keys[i] = keyOf(types[i]);
+        }
+
+        List<Object> key = new ArrayList<>(types.length + 1);
+        key.add(name);
+        key.addAll(Arrays.asList(keys));
+
+        MethodHandle handle = handles.get(key);
+
+        if (handle == null) {
+            handle = resolve(name, keys);
+
+            if (handle == null) {
+                StringBuilder message = new StringBuilder("unsupported operand type(s) for ").append(operator).append(":");
+                for (int i = 0; i < types.length; i++) {
+                    message.append(i == 0 ? " '" : " and '").append(types[i] == null ? "NoneType" : types[i].getSimpleName()).append("'");
+                }
+
+                throw new RuntimeException(message.toString());
+            }
+
+            handles.put(key, handle);
+        }
+
+        return handle;
+    }
+
+    /**先按提升后的类型查找重载，找不到时使用Object参数的版本*/
+    private static MethodHandle resolve(String name, Class<?>[] types) {
+        Class<?>[] promoted = new Class<?>[types.length];
+        Class<?> widest = null;
+
+        for (int i = 0; i < types.length; i++) {
+            promoted[i] = promote(types[i]);
+            if (promoted[i] != null && promoted[i].isPrimitive()) widest = wider(widest, promoted[i]);
+        }
+
+        // 数字之间的运算统一提升到较宽的类型，例如 int + double
+        for (int i = 0; i < types.length; i++) {
+            if (promoted[i] != null && promoted[i].isPrimitive()) promoted[i] = widest;
+        }
+
+        Class<?>[] objects = new Class<?>[types.length];
+        Arrays.fill(objects, Object.class);
+
+        for (Class<?>[] parameters : new Class<?>[][]{promoted, objects}) {
+            if (Arrays.asList(parameters).contains(null)) continue;
+
+            try {
+                Method method = JPOperators.class.getMethod(name, parameters);
+                return adapt(MethodHandles.publicLookup().unreflect(method));
+            } catch (NoSuchMethodException | IllegalAccessException ignored) {
+            }
+        }
+
+        return null;
+    }
+
+    private static MethodHandle adapt(MethodHandle handle) {
+        MethodType type = handle.type();
+
+        for (int i = 0; i < type.parameterCount(); i++) {
+            Class<?> parameter = type.parameterType(i);
+
+            if (parameter == int.class) {
+                handle = MethodHandles.filterArguments(handle, i, AS_INT);
+            } else if (parameter == long.class) {
+                handle = MethodHandles.filterArguments(handle, i, AS_LONG);
+            } else if (parameter == double.class) {
+                handle = MethodHandles.filterArguments(handle, i, AS_DOUBLE);
+            }
+        }
+
+        return handle.asType(MethodType.genericMethodType(type.parameterCount()));
+    }
+
+    /**
+     * JPOperators中只有数字、str与list等内置类型的重载，其他类型总是使用Object参数的版本，查找时视为Object。
+     * 缓存的键因此不会引用其他类加载器中的类，例如常驻进程每次运行重新加载的模块，旧的类加载器可以被回收
+     */
+    private static Class<?> keyOf(Class<?> type) {
+        if (type == null) return null;
+
+        Class<?> promoted = promote(type);
+        if (promoted.isPrimitive()) return promoted;
+
+        ClassLoader loader = type.getClassLoader();
+        return loader == null || loader == JPOperators.class.getClassLoader() ? type : Object.class;
+    }
+
+    private static Class<?> promote(Class<?> type) {
+        if (type == Integer.class || type == Short.class || type == Byte.class) return int.class;
+        if (type == Long.class) return long.class;
+        if (type == Double.class || type == Float.class) return double.class;
+        return type;
+    }
+
+    private static Class<?> wider(Class<?> a, Class<?> b) {
+        if (a == null) return b;
+        if (a == double.class || b == double.class) return double.class;
+        if (a == long.class || b == long.class) return long.class;
+        return int.class;
+    }
+
+    private static Class<?> classOf(Object value) {
+        return value == null ? null : value.getClass();
+    }
+
+    private static boolean sameClass(Class<?> expected, Object actual) {
+        return expected == null ? actual == null : actual != null && actual.getClass() == expected;
+    }
+}
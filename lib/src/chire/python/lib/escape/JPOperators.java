@@ -0,0 +1,489 @@
+package chire.python.lib.escape;
+
+import chire.python.lib.builtins.PyDict;
+import chire.python.lib.builtins.PyList;
+import chire.python.lib.builtins.PyRange;
+import chire.python.lib.builtins.PySet;
+import chire.python.lib.builtins.PyTuple;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 运算符的实现，按操作数类型重载，由{@link JPOperatorSite}按运行时类型选择。
+ * 方法名由{@link #NAMES}从python的运算符得到。
+ */
+public final class JPOperators {
+    public static final Map<String, String> NAMES = new HashMap<String, String>(){{
+        put("+", "add");
+        put("-", "sub");
+        put("*", "mul");
+        put("/", "div");
+        put("//", "floordiv");
+        put("%", "mod");
+        put("**", "pow");
+        put("&", "bitand");
+        put("|", "bitor");
+        put("^", "bitxor");
+        put("<<", "lshift");
+        put(">>", "rshift");
+        put("<", "lt");
+        put(">", "gt");
+        put("<=", "le");
+        put(">=", "ge");
+        put("==", "eq");
+        put("!=", "ne");
+        put("<>", "ne");
+        put("is", "is");
+        put("is not", "isNot");
+        put("in", "in");
+        put("not in", "notIn");
+        put("and", "and");
+        put("or", "or");
+    }};
+
+    public static final Map<String, String> UNARY_NAMES = new HashMap<String, String>(){{
+        put("-", "neg");
+        put("+", "pos");
+        put("~", "invert");
+    }};
+
+    private JPOperators() {
+    }
+
+    // int，溢出时提升为long
+
+    public static Object add(int a, int b) {
+        int r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) return (long) a + b;
+        return r;
+    }
+
+    public static Object sub(int a, int b) {
+        int r = a - b;
+        if (((a ^ b) & (a ^ r)) < 0) return (long) a - b;
+        return r;
+    }
+
+    public static Object mul(int a, int b) {
+        long r = (long) a * b;
+        if ((int) r != r) return r;
+        return (int) r;
+    }
+
+    public static Object div(int a, int b) {
+        if (a == Integer.MIN_VALUE && b == -1) return -(long) a;
+        return a / b;
+    }
+
+    public static Object floordiv(int a, int b) {
+        if (a == Integer.MIN_VALUE && b == -1) return -(long) a;
+        return Math.floorDiv(a, b);
+    }
+
+    public static int mod(int a, int b) {
+        return Math.floorMod(a, b);
+    }
+
+    public static double pow(int a, int b) {
+        return Math.pow(a, b);
+    }
+
+    public static int bitand(int a, int b) {
+        return a & b;
+    }
+
+    public static int bitor(int a, int b) {
+        return a | b;
+    }
+
+    public static int bitxor(int a, int b) {
+        return a ^ b;
+    }
+
+    public static Object lshift(int a, int b) {
+        return box(lshift((long) a, (long) b));
+    }
+
+    public static int rshift(int a, int b) {
+        if (b < 0) throw negativeShift();
+        return a >> Math.min(b, Integer.SIZE - 1);
+    }
+
+    public static boolean lt(int a, int b) {
+        return a < b;
+    }
+
+    public static boolean gt(int a, int b) {
+        return a > b;
+    }
+
+    public static boolean le(int a, int b) {
+        return a <= b;
+    }
+
+    public static boolean ge(int a, int b) {
+        return a >= b;
+    }
+
+    public static boolean eq(int a, int b) {
+        return a == b;
+    }
+
+    public static boolean ne(int a, int b) {
+        return a != b;
+    }
+
+    public static Object neg(int a) {
+        if (a == Integer.MIN_VALUE) return -(long) a;
+        return -a;
+    }
+
+    public static int pos(int a) {
+        return a;
+    }
+
+    public static int invert(int a) {
+        return ~a;
+    }
+
+    // long，超出long范围时抛出ArithmeticException而不是回绕
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long sub(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long mul(long a, long b) {
+        return Math.multiplyExact(a, b);
+    }
+
+    public static long div(long a, long b) {
+        if (a == Long.MIN_VALUE && b == -1) throw overflow();
+        return a / b;
+    }
+
+    public static long floordiv(long a, long b) {
+        if (a == Long.MIN_VALUE && b == -1) throw overflow();
+        return Math.floorDiv(a, b);
+    }
+
+    public static long mod(long a, long b) {
+        return Math.floorMod(a, b);
+    }
+
+    public static double pow(long a, long b) {
+        return Math.pow(a, b);
+    }
+
+    public static long bitand(long a, long b) {
+        return a & b;
+    }
+
+    public static long bitor(long a, long b) {
+        return a | b;
+    }
+
+    public static long bitxor(long a, long b) {
+        return a ^ b;
+    }
+
+    public static long lshift(long a, long b) {
+        if (b < 0) throw negativeShift();
+        if (a == 0) return 0;
+        if (b >= Long.SIZE || (a << b) >> b != a) throw overflow();
+        return a << b;
+    }
+
+    public static long rshift(long a, long b) {
+        if (b < 0) throw negativeShift();
+        return a >> Math.min(b, Long.SIZE - 1);
+    }
+
+    public static boolean lt(long a, long b) {
+        return a < b;
+    }
+
+    public static boolean gt(long a, long b) {
+        return a > b;
+    }
+
+    public static boolean le(long a, long b) {
+        return a <= b;
+    }
+
+    public static boolean ge(long a, long b) {
+        return a >= b;
+    }
+
+    public static boolean eq(long a, long b) {
+        return a == b;
+    }
+
+    public static boolean ne(long a, long b) {
+        return a != b;
+    }
+
+    public static long neg(long a) {
+        return Math.negateExact(a);
+    }
+
+    public static long pos(long a) {
+        return a;
+    }
+
+    public static long invert(long a) {
+        return ~a;
+    }
+
+    // double
+
+    public static double add(double a, double b) {
+        return a + b;
+    }
+
+    public static double sub(double a, double b) {
+        return a - b;
+    }
+
+    public static double mul(double a, double b) {
+        return a * b;
+    }
+
+    public static double div(double a, double b) {
+        return a / b;
+    }
+
+    public static double floordiv(double a, double b) {
+        return Math.floor(a / b);
+    }
+
+    public static double mod(double a, double b) {
+        return a - b * Math.floor(a / b);
+    }
+
+    public static double pow(double a, double b) {
+        return Math.pow(a, b);
+    }
+
+    public static boolean lt(double a, double b) {
+        return a < b;
+    }
+
+    public static boolean gt(double a, double b) {
+        return a > b;
+    }
+
+    public static boolean le(double a, double b) {
+        return a <= b;
+    }
+
+    public static boolean ge(double a, double b) {
+        return a >= b;
+    }
+
+    public static boolean eq(double a, double b) {
+        return a == b;
+    }
+
+    public static boolean ne(double a, double b) {
+        return a != b;
+    }
+
+    public static double neg(double a) {
+        return -a;
+    }
+
+    public static double pos(double a) {
+        return a;
+    }
+
+    // str
+
+    public static String add(String a, String b) {
+        return a.concat(b);
+    }
+
+    public static String mul(String a, int b) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < b; i++) builder.append(a);
+        return builder.toString();
+    }
+
+    public static String mul(int a, String b) {
+        return mul(b, a);
+    }
+
+    public static boolean lt(String a, String b) {
+        return a.compareTo(b) < 0;
+    }
+
+    public static boolean gt(String a, String b) {
+        return a.compareTo(b) > 0;
+    }
+
+    public static boolean le(String a, String b) {
+        return a.compareTo(b) <= 0;
+    }
+
+    public static boolean ge(String a, String b) {
+        return a.compareTo(b) >= 0;
+    }
+
+    public static boolean eq(String a, String b) {
+        return a.equals(b);
+    }
+
+    public static boolean ne(String a, String b) {
+        return !a.equals(b);
+    }
+
+    // list
+
+    public static PyList add(PyList a, PyList b) {
+        PyList list = new PyList();
+        list.addAll(a);
+        list.addAll(b);
+        return list;
+    }
+
+    public static PyList mul(PyList a, int b) {
+        PyList list = new PyList();
+        for (int i = 0; i < b; i++) list.addAll(a);
+        return list;
+    }
+
+    public static PyList mul(int a, PyList b) {
+        return mul(b, a);
+    }
+
+    // 任意类型
+
+    public static boolean eq(Object a, Object b) {
+        return Objects.equals(a, b);
+    }
+
+    public static boolean ne(Object a, Object b) {
+        return !Objects.equals(a, b);
+    }
+
+    public static boolean is(Object a, Object b) {
+        return a == b;
+    }
+
+    public static boolean isNot(Object a, Object b) {
+        return a != b;
+    }
+
+    public static boolean in(Object a, Object b) {
+        if (b instanceof String) return ((String) b).contains(a.toString());
+        if (b instanceof PyList) return ((PyList) b).__contains__(a);
+        if (b instanceof PyDict) return ((PyDict) b).__contains__(a);
+        if (b instanceof PyTuple) return ((PyTuple) b).contains(a);
+        if (b instanceof PyRange) return ((PyRange) b).contains(a);
+        if (b instanceof PySet) return ((PySet) b).__contains__(a);
+        if (b instanceof Collection<?>) return ((Collection<?>) b).contains(a);
+        if (b instanceof Map<?, ?>) return ((Map<?, ?>) b).containsKey(a);
+
+        throw new RuntimeException("argument of type '" + typeName(b) + "' is not iterable");
+    }
+
+    public static boolean notIn(Object a, Object b) {
+        return !in(a, b);
+    }
+
+    public static Object and(Object a, Object b) {
+        return truthy(a) ? b : a;
+    }
+
+    public static Object or(Object a, Object b) {
+        return truthy(a) ? a : b;
+    }
+
+    public static boolean truthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean) return (Boolean) value;
+        if (value instanceof Integer) return (Integer) value != 0;
+        if (value instanceof Long) return (Long) value != 0;
+        if (value instanceof Double) return (Double) value != 0;
+        if (value instanceof Number) return ((Number) value).doubleValue() != 0;
+        if (value instanceof String) return !((String) value).isEmpty();
+        if (value instanceof PyList) return ((PyList) value).__len__() != 0;
+        if (value instanceof PyDict) return ((PyDict) value).__len__() != 0;
+        if (value instanceof PyTuple) return ((PyTuple) value).size() != 0;
+        if (value instanceof PyRange) return ((PyRange) value).length() != 0;
+        if (value instanceof PySet) return ((PySet) value).size() != 0;
+        if (value instanceof Collection<?>) return !((Collection<?>) value).isEmpty();
+        if (value instanceof Map<?, ?>) return !((Map<?, ?>) value).isEmpty();
+        return JPTruthSite.truthy(value);
+    }
+
+    // 类型转换，由JPOperatorSite在调用前插入
+
+    public static int asInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    public static long asLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    public static double asDouble(Object value) {
+        return ((Number) value).doubleValue();
+    }
+
+    public static boolean asBoolean(Object value) {
+        return (Boolean) value;
+    }
+
+    // 按类型注解拆箱，只接受正好为注解类型的值，不做转换
+
+    public static long unboxLong(Object value) {
+        if (value instanceof Integer) return (Integer) value;
+        if (value instanceof Long) return (Long) value;
+        throw mismatch("int", value);
+    }
+
+    public static double unboxDouble(Object value) {
+        if (value instanceof Double) return (Double) value;
+        throw mismatch("float", value);
+    }
+
+    public static boolean unboxBoolean(Object value) {
+        if (value instanceof Boolean) return (Boolean) value;
+        throw mismatch("bool", value);
+    }
+
+    private static ClassCastException mismatch(String type, Object value) {
+        return new ClassCastException(type + " expected, got " + (value == null ? "None" : value.getClass().getName()));
+    }
+
+    /**编译后python的int以long保存在局部变量中，装箱时在int范围内仍为Integer，与运算符的结果一致*/
+    public static Object box(long value) {
+        int small = (int) value;
+        return small == value ? (Object) small : (Object) value;
+    }
+
+    /**编译为计数循环的range的步长，不能为0*/
+    public static long rangeStep(long step) {
+        if (step == 0) throw new IllegalArgumentException("range() arg 3 must not be zero");
+        return step;
+    }
+
+    private static ArithmeticException overflow() {
+        return new ArithmeticException("long overflow");
+    }
+
+    private static IllegalArgumentException negativeShift() {
+        return new IllegalArgumentException("negative shift count");
+    }
+
+    static String typeName(Object value) {
+        return value == null ? "NoneType" : value.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,223 @@
+package chire.python.lib.escape;
+
+import chire.python.lib.builtins.PyDict;
+import chire.python.lib.builtins.PyList;
+import chire.python.lib.builtins.PyRange;
+import chire.python.lib.builtins.PySet;
+import chire.python.lib.builtins.PyTuple;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 条件判断的invokedynamic调用点，类型为(Object)boolean，按 Python 的规则判断真假：
+ * None为False，先调用__bool__，没有时按__len__是否为0，都没有时为True。
+ * 每个类的判断方式缓存在{@link ClassValue}中，内置类型直接判断不经过反射；
+ * 调用点按观察到的类型追加分支，超过{@link #MAX_DEPTH}后使用{@link #truthy(Object)}。
+ */
+public class JPTruthSite extends MutableCallSite {
+    public static final int MAX_DEPTH = 4;
+
+    private static final MethodType TYPE = MethodType.methodType(boolean.class, Object.class);
+
+    private static final MethodHandle RELINK;
+    private static final MethodHandle TRUTHY;
+    private static final MethodHandle IS_NULL;
+    private static final MethodHandle SAME_CLASS;
+    private static final MethodHandle FALSE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            RELINK = lookup.findVirtual(JPTruthSite.class, "relink", MethodType.methodType(boolean.class, Object.class));
+            TRUTHY = lookup.findStatic(JPTruthSite.class, "truthy", TYPE);
+            IS_NULL = lookup.findStatic(JPTruthSite.class, "isNull", TYPE);
+            SAME_CLASS = lookup.findStatic(JPTruthSite.class, "sameClass", MethodType.methodType(boolean.class, Class.class, Object.class));
+            FALSE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, Object.class);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 类 -> 该类实例的真假判断，类型为(Object)boolean
+    private static final ClassValue<MethodHandle> HANDLES = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    private int depth = 0;
+
+    private JPTruthSite(MethodType type) {
+        super(type);
+
+        setTarget(RELINK.bindTo(this).asType(type));
+    }
+
+    /**
+     * @param type (Object)boolean
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return new JPTruthSite(type);
+    }
+
+    private boolean relink(Object value) throws Throwable {
+        MethodHandle target = value == null ? FALSE : HANDLES.get(value.getClass());
+
+        if (depth < MAX_DEPTH) {
+            MethodHandle test = value == null ? IS_NULL : SAME_CLASS.bindTo(value.getClass());
+
+            setTarget(MethodHandles.guardWithTest(test, target, getTarget()));
+            depth++;
+        } else {
+            setTarget(TRUTHY.asType(type()));
+        }
+
+        return (boolean) target.invokeExact(value);
+    }
+
+    public static boolean truthy(Object value) {
+        if (value == null) return false;
+
+        try {
+            return (boolean) HANDLES.get(value.getClass()).invokeExact(value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static MethodHandle resolve(Class<?> type) {
+        String name;
+
+        if (type == Boolean.class) {
+            name = "ofBoolean";
+        } else if (type == Integer.class) {
+            name = "ofInteger";
+        } else if (type == Long.class) {
+            name = "ofLong";
+        } else if (type == Double.class) {
+            name = "ofDouble";
+        } else if (type == String.class) {
+            name = "ofString";
+        } else if (type == PyList.class) {
+            name = "ofList";
+        } else if (type == PyDict.class) {
+            name = "ofDict";
+        } else if (type == PyTuple.class) {
+            name = "ofTuple";
+        } else if (type == PySet.class) {
+            name = "ofSet";
+        } else if (type == PyRange.class) {
+            name = "ofRange";
+        } else {
+            return protocol(type);
+        }
+
+        try {
+            return MethodHandles.lookup().findStatic(JPTruthSite.class, name, TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * __bool__与__len__可以是实例方法，也可以是以self为唯一参数的静态方法(python中定义的类)
+     */
+    private static MethodHandle protocol(Class<?> type) {
+        try {
+            MethodHandle bool = method(type, "__bool__");
+            if (bool != null) {
+                return MethodHandles.filterReturnValue(bool, MethodHandles.lookup().findStatic(JPOperators.class, "truthy", MethodType.methodType(boolean.class, Object.class)));
+            }
+
+            MethodHandle len = method(type, "__len__");
+            if (len != null) {
+                return MethodHandles.filterReturnValue(len, MethodHandles.lookup().findStatic(JPTruthSite.class, "nonZero", MethodType.methodType(boolean.class, Object.class)));
+            }
+
+            MethodHandle builtin = MethodHandles.lookup().findStatic(JPTruthSite.class, "builtin", TYPE);
+            if (Number.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) return builtin;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        return MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, Object.class);
+    }
+
+    /**@return 适配为(Object)Object的方法，没有时为null*/
+    private static MethodHandle method(Class<?> type, String name) throws IllegalAccessException {
+        for (Method method : type.getMethods()) {
+            if (!name.equals(method.getName())) continue;
+
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            if (method.getParameterCount() != (isStatic ? 1 : 0)) continue;
+
+            return MethodHandles.publicLookup().unreflect(method).asType(MethodType.methodType(Object.class, Object.class));
+        }
+
+        return null;
+    }
+
+    private static boolean nonZero(Object len) {
+        return ((Number) len).longValue() != 0;
+    }
+
+    private static boolean builtin(Object value) {
+        return JPOperators.truthy(value);
+    }
+
+    private static boolean ofBoolean(Object value) {
+        return (Boolean) value;
+    }
+
+    private static boolean ofInteger(Object value) {
+        return (Integer) value != 0;
+    }
+
+    private static boolean ofLong(Object value) {
+        return (Long) value != 0;
+    }
+
+    private static boolean ofDouble(Object value) {
+        return (Double) value != 0;
+    }
+
+    private static boolean ofString(Object value) {
+        return !((String) value).isEmpty();
+    }
+
+    private static boolean ofList(Object value) {
+        return ((PyList) value).size() != 0;
+    }
+
+    private static boolean ofDict(Object value) {
+        return ((PyDict) value).__len__() != 0;
+    }
+
+    private static boolean ofTuple(Object value) {
+        return ((PyTuple) value).size() != 0;
+    }
+
+    private static boolean ofSet(Object value) {
+        return ((PySet) value).size() != 0;
+    }
+
+    private static boolean ofRange(Object value) {
+        return ((PyRange) value).length() != 0;
+    }
+
+    private static boolean isNull(Object value) {
+        return value == null;
+    }
+
+    private static boolean sameClass(Class<?> expected, Object actual) {
+        return actual != null && actual.getClass() == expected;
+    }
+}
@@ -3,11 +3,17 @@ package chire.python.lib.escape;
 import chire.python.lib.PyConfig;
 import chire.python.lib.PyTypes;
 import chire.python.lib.builtins.PyDict;
+import chire.python.lib.builtins.PyIterator;
 import chire.python.lib.builtins.PyList;
+import chire.python.lib.builtins.PyRange;
+import chire.python.lib.builtins.PySet;
+import chire.python.lib.builtins.PySlice;
 import chire.python.lib.builtins.PyTuple;
 import chire.python.lib.builtins.PyObject;
 
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -70,7 +76,7 @@ public class JPUtil {
         throw new RuntimeException("no key");
     }
 
-    private static Class<?> forClass(String className) {
+    static Class<?> forClass(String className) {
         try {
             return Class.forName(className);
         } catch (ClassNotFoundException e) {
@@ -110,10 +116,27 @@ public class JPUtil {
             if (!(key instanceof Integer)) throw new RuntimeException("no key");
             return ((PyTuple) instance).get((Integer) key);
         }
+        if (instance instanceof PyRange) {
+            if (key instanceof PySlice) {
+                PySlice slice = (PySlice) key;
+                return ((PyRange) instance).subRange(sliceIndex(slice.start), sliceIndex(slice.stop), sliceIndex(slice.step));
+            }
+
+            if (!(key instanceof Integer || key instanceof Long)) throw new RuntimeException("no key");
+            return ((PyRange) instance).get(((Number) key).longValue());
+        }
 
         throw new RuntimeException("no key");
     }
 
+    /**切片中省略的部分为null*/
+    private static Long sliceIndex(Object value) {
+        if (value == null) return null;
+        if (!(value instanceof Integer || value instanceof Long)) throw new RuntimeException("no key");
+
+        return ((Number) value).longValue();
+    }
+
     public static void setSerial(Object instance, Object key, Object value) {
         if (instance instanceof PyDict) {
             ((PyDict) instance).update(key, value);
@@ -148,16 +171,63 @@ public class JPUtil {
         return PyTuple.of(objects);
     }
 
+    public static PySlice slice(Object start, Object stop, Object step) {
+        return new PySlice(start, stop, step);
+    }
+
     public static PyList asPyList(Object... objects) {
         return new PyList(objects);
     }
 
-    public static PyList iterator(Object key) {
-        if (key instanceof PyList) {
-            return ((PyList) key);
-        } else {
-            throw new RuntimeException("no key");
+    /**
+     * for循环的迭代协议，每次调用都返回新的迭代器，同一个对象可以被嵌套或重复迭代。
+     * 内置类型按类型返回各自的迭代器(list、tuple、字符串按下标，dict迭代键)，不复制数据；
+     * 其余对象依次尝试Iterator、Iterable、Map的键、数组以及__iter__方法
+     */
+    @SuppressWarnings("unchecked")
+    public static Iterator<Object> iterator(Object key) {
+        if (key instanceof PyList) return ((PyList) key).__iter__();
+        if (key instanceof PyTuple) return ((PyTuple) key).__iter__();
+        if (key instanceof PyRange) return ((PyRange) key).__iter__();
+        if (key instanceof PyDict) return ((PyDict) key).__iter__();
+        if (key instanceof PySet) return ((PySet) key).__iter__();
+        if (key instanceof String) return PyIterator.of((String) key);
+
+        if (key instanceof Iterator<?>) return (Iterator<Object>) key;
+        if (key instanceof Iterable<?>) return ((Iterable<Object>) key).iterator();
+        if (key instanceof Map<?, ?>) return ((Map<Object, ?>) key).keySet().iterator();
+        if (key instanceof Object[]) return Arrays.asList((Object[]) key).iterator();
+
+        if (key != null && !(key instanceof Class<?>)) {
+            for (Method method : key.getClass().getMethods()) {
+                if (!"__iter__".equals(method.getName())) continue;
+
+                Object iterator = callMethod(key, "__iter__");
+                if (iterator instanceof Iterator<?>) return (Iterator<Object>) iterator;
+                break;
+            }
         }
+
+        throw new RuntimeException("'" + JPOperators.typeName(key) + "' object is not iterable");
+    }
+
+    /**
+     * 推导式按来源的长度预先分配容量
+     * @return 不需要遍历就能得到的长度，无法得到时为0
+     */
+    public static int sizeHint(Object iterable) {
+        if (iterable instanceof PyList) return ((PyList) iterable).size();
+        if (iterable instanceof PyTuple) return ((PyTuple) iterable).size();
+        if (iterable instanceof PyRange) return (int) Math.min(((PyRange) iterable).length(), Integer.MAX_VALUE - 8);
+        if (iterable instanceof PyDict) return ((PyDict) iterable).__len__();
+        if (iterable instanceof PySet) return ((PySet) iterable).size();
+        if (iterable instanceof String) return ((String) iterable).length();
+
+        if (iterable instanceof Collection<?>) return ((Collection<?>) iterable).size();
+        if (iterable instanceof Map<?, ?>) return ((Map<?, ?>) iterable).size();
+        if (iterable instanceof Object[]) return ((Object[]) iterable).length;
+
+        return 0;
     }
 
     public static Object operation(Object k, Object p, String f) {
@@ -206,9 +276,9 @@ public class JPUtil {
         }
     }
 
-    /**对于部分操作来讲，更可控*/
+    /**与if、while中的条件一致，按 Python 的规则判断真假*/
     public static boolean toBoolean(Object object) {
-        return (boolean) object;
+        return JPOperators.truthy(object);
     }
 
     public static Boolean comparison(Object k, Object p, String f) {
@@ -252,35 +322,14 @@ public class JPUtil {
         }
     }
 
+    /**type为Class时写入静态变量，否则写入实例变量*/
     public static void setVar(Object type, String name, Object value) {
-        try {
-            if (type instanceof Class<?>) {
-                ((Class<?>) type).getDeclaredField(name).set(null, value);
-            }
-//            else if (type instanceof PyObject) {
-//                ((PyObject) type).__dict__(name, value);
-//            }
-            else {
-                type.getClass().getDeclaredField(name).set(type, value);
-            }
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
+        JPFieldSite.set(type, name, value);
     }
 
+    /**type为Class时读取静态变量，否则读取实例变量*/
     public static Object callVar(Object type, String name) {
-        try {
-            if (type instanceof Class<?>) {
-                return ((Class<?>) type).getDeclaredField(name).get(null);
-//            }
-//            else if (type instanceof PyObject) {
-//                return ((PyObject) type).__dict__().get(name);
-            } else {
-                return type.getClass().getDeclaredField(name).get(type);
-            }
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
+        return JPFieldSite.get(type, name);
     }
 
     public static Object callMethod(Object obj, String name, Object... args) {
@@ -293,8 +342,8 @@ public class JPUtil {
                 reArgs.add(((BaseValue) arg).getValue());
                 continue;
             }
-            //TODO 如何存在java传递的错误类型，arg将为null，所以这里暂时如此
-            classes.add(arg.getClass());
+            // None没有类型，按Object查找
+            classes.add(arg == null ? Object.class : arg.getClass());
             reArgs.add(arg);
         }
 
@@ -336,11 +385,12 @@ public class JPUtil {
             //TODO 可能存在int.class这一类的存在，未修复。
             if (obj instanceof Class<?>) {
                 return ((Class<?>) obj).getMethod(name, classes.toArray(new Class[0])).invoke(null, reArgs.toArray(new Object[0]));
-            } else if (obj instanceof PyObject) {//TODO 过于宽泛！
-                reArgs.add(0, obj);
-                return obj.getClass().getMethod(name, classes.toArray(new Class[0])).invoke(null, reArgs.toArray(new Object[0]));
             } else {
-                return obj.getClass().getMethod(name, classes.toArray(new Class[0])).invoke(obj, reArgs.toArray(new Object[0]));
+                Method self = selfMethod(obj.getClass(), name, args.length);
+                if (self == null) return obj.getClass().getMethod(name, classes.toArray(new Class<?>[0])).invoke(obj, reArgs.toArray(new Object[0]));
+
+                reArgs.add(0, obj);
+                return self.invoke(null, reArgs.toArray(new Object[0]));
             }
 
         } catch (NoSuchMethodException e) {
@@ -354,6 +404,29 @@ public class JPUtil {
         }
     }
 
+    /**
+     * python中定义的类的方法编译为以self为第一个参数的静态方法，类本身没有参数个数相同的实例方法时以接收者作为self调用
+     * @return 参数均为Object、个数为count + 1的静态方法，有参数个数为count的同名方法或没有时为null
+     */
+    static Method selfMethod(Class<?> owner, String name, int count) {
+        Class<?>[] objects = new Class<?>[count + 1];
+        Arrays.fill(objects, Object.class);
+
+        try {
+            owner.getMethod(name, Arrays.copyOf(objects, count));
+            return null;
+        } catch (NoSuchMethodException e) {
+            // 没有实例方法时继续查找静态方法
+        }
+
+        try {
+            Method method = owner.getMethod(name, objects);
+            return Modifier.isStatic(method.getModifiers()) ? method : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
     private static Object callClazz(Object clazz, String name, Object... args) {
         Class<?> retClazz = forClass(
                 ((Class)(clazz instanceof Class ? clazz : clazz.getClass())).getName() + "$" + name
@@ -370,8 +443,8 @@ public class JPUtil {
                 reArgs.add(((BaseValue) arg).getValue());
                 continue;
             }
-            //TODO 如何存在java传递的错误类型，arg将为null，所以这里暂时如此
-            classes.add(arg.getClass());
+            // None没有类型，按Object查找
+            classes.add(arg == null ? Object.class : arg.getClass());
             reArgs.add(arg);
         }
 
@@ -0,0 +1,58 @@
+def add(a: int, b: int) -> int:
+    return a + b
+
+
+def scale(x: float, k: float) -> float:
+    return x * k
+
+
+def clamp(x: int, low: int, high: int) -> int:
+    if x < low:
+        return low
+    elif x > high:
+        return high
+    else:
+        return x
+
+
+def flag(on: bool) -> bool:
+    if on:
+        return False
+    return True
+
+
+def area(w: float, h: float):
+    return w * h
+
+
+def fib(n: int) -> int:
+    if n < 2:
+        return n
+    return fib(n - 1) + fib(n - 2)
+
+
+def typed_caller(n: int) -> int:
+    return add(n, 1) * 2
+
+
+# 类型一致时直接调用typed方法
+print(add(2, 3))
+print(scale(0.1, 3.0))
+print(clamp(-4, 0, 10))
+print(clamp(40, 0, 10))
+print(clamp(4, 0, 10))
+print(fib(20))
+print(typed_caller(20))
+if flag(False):
+    print("flag on")
+print(area(1.5, 2.0))
+
+# 与注解不一致的参数走桥接方法中未类型化的代码
+print(add(2.5, 1))
+print(add("a", "b"))
+print(add([1], [2]))
+print(scale(2, 3))
+print(scale(0.5, 4))
+print(clamp(2.5, 0, 10))
+print(area(3, 4))
+print(fib(10.0))
@@ -0,0 +1,21 @@
+class Config:
+    size = 3
+    name = "cfg"
+    items = [1, 2]
+
+
+def grow(n):
+    Config.size = Config.size + n
+    return Config.size
+
+
+print(Config.size)
+print(Config.name)
+Config.size = 5
+print(Config.size)
+print(grow(2))
+print(grow(-10))
+Config.items.append(3)
+print(Config.items)
+Config.name = Config.name + "!"
+print(Config.name)
@@ -0,0 +1,86 @@
+# 调用点按接收者与参数的类型缓存，类型变化或超过缓存深度后仍按 Python 的规则调用
+
+
+def same(x):
+    return x
+
+
+def describe(x):
+    if x is None:
+        return "none"
+    return "value"
+
+
+class Square:
+    def area(self):
+        return 9
+
+    def scale(self, by):
+        return 3 * by
+
+
+class Circle:
+    def area(self):
+        return 3
+
+
+class Echo:
+    def back(self, value):
+        return value
+
+
+def polymorphic(echo):
+    count = 0
+    for value in [1, 2.5, "s", [1], (2,), {"k": 1}, None, True, Square(), range(2)]:
+        if same(value) is value:
+            count += 1
+        if echo.back(value) is value:
+            count += 1
+    return count
+
+
+def areas(shapes):
+    total = 0
+    for shape in shapes:
+        total += shape.area()
+    return total
+
+
+def collect(values):
+    items = []
+    for item in values:
+        items.append(item)
+    return items
+
+
+# 同一个调用点依次收到十种类型的参数，超过缓存深度后回退到通用调用
+print(polymorphic(Echo()))
+
+# None参数没有类型，按Object查找方法
+print(describe(None))
+print(describe(0))
+print(describe(None))
+
+# 接收者的类型变化
+print(areas([Square(), Circle(), Square(), Circle()]))
+
+square = Square()
+print(square.scale(2))
+print(square.scale(0.5))
+print(square.scale("ab"))
+
+# 内置函数的参数个数不同
+print(len(range(5)))
+print(len(range(1, 5)))
+print(len(range(0, 10, 3)))
+print("a", 1, 2.5)
+print()
+
+# Java方法的参数类型变化
+items = collect([1, "x", None, 2.5, [3]])
+print(len(items))
+print(items[1])
+
+lookup = {"a": 1}
+print(lookup.get("a"))
+print(lookup.get("b", 7))
@@ -0,0 +1,63 @@
+# list、dict、set推导式编译为单独的循环
+
+
+def total(values):
+    s = 0
+    for v in values:
+        s += v
+    return s
+
+
+def lists(n):
+    k = 3
+    print([i * k for i in range(n)])
+    print([i for i in range(n) if i % 2 == 1])
+    print([x + y for x in [1, 2] for y in (10, 20)])
+    print([c + c for c in "abc"])
+    print([i * j for i in range(1, 4) if i != 2 for j in range(i)])
+    print([[j for j in range(i)] for i in range(3)])
+    print([x for x in []])
+
+
+def dicts(words):
+    lengths = {w: len(w) for w in words}
+    print(len(lengths), lengths["ab"], lengths["abcd"])
+    squares = {i: i * i for i in range(5) if i > 1}
+    print(len(squares), squares[2], squares[4])
+
+
+def sets(items):
+    unique = {x % 3 for x in items}
+    print(len(unique), total(unique))
+
+
+def versions():
+    k = 2
+    a = [i * k for i in range(3)]
+    k = 0.5
+    b = [i * k for i in range(3)]
+    print(a, b)
+
+
+def from_values(table):
+    print([table[key] * 2 for key in table])
+
+
+def clauses(n):
+    r = range(n)
+    a = [x * x for x in r[::2]]
+    b = [x + y for x in range(3) for y in range(x)]
+    c = [x for x in r if x % 2 if x > 2]
+    x = "outer"
+    d = [x for x in range(2)]
+    print(a, b, c, d, x)
+
+
+lists(5)
+dicts(["ab", "abcd", "xyz"])
+sets([1, 2, 3, 4, 5, 6, 7])
+versions()
+from_values({"a": 1, "b": 2})
+print([n * n for n in (1, 2, 3)])
+clauses(7)
+clauses(0)
@@ -0,0 +1,101 @@
+# and、or、not与链式比较编译为跳转
+
+
+def probe(name, value):
+    print("eval", name)
+    return value
+
+
+def show(label, condition):
+    if condition:
+        print(label, "yes")
+    else:
+        print(label, "no")
+        print(label, "done")
+
+
+def short_circuit():
+    show("and", probe("a", 0) and probe("b", 1))
+    show("or", probe("c", 1) or probe("d", 0))
+    show("and2", probe("e", 1) and probe("f", 2))
+    show("or2", probe("g", "") or probe("h", []))
+    show("not", not probe("i", 0))
+    show("mixed", probe("j", 0) or probe("k", 1) and not probe("l", 0))
+
+
+def values():
+    print(0 or "fallback")
+    print(3 and 4)
+    print("" and 5)
+    print([] or [1])
+    x = 2
+    y = x > 1 and x * 10
+    print(y)
+
+
+def chained(n):
+    show("range", 0 <= n < 10)
+    show("eq", 1 == 1 < n)
+    show("desc", 10 > n > 5 >= 2)
+    show("middle", 0 < probe("m", n) < 100)
+    show("stops", 100 < probe("n", n) < probe("o", 200))
+
+
+def numbers(i, f):
+    show("int", i < 3)
+    show("float", f >= 2.5)
+    show("mix", i < f)
+    show("mixchain", 1 < i <= f)
+    show("ne", i != 4)
+
+
+def loop(limit):
+    i = 0
+    steps = 0
+    while i < limit and not i == 7:
+        i += 1
+        steps += 1
+    print(i, steps)
+
+
+def branches(n):
+    if n < 0 and n > -10:
+        print("small negative")
+    elif n == 0 or n == 100:
+        print("special")
+    elif not n < 50:
+        print("large")
+        print("really")
+    else:
+        print("other")
+        print("done")
+
+
+def typed(a: int, b: int):
+    if a < b <= 10 and not a == 0:
+        print("inside", a, b)
+    else:
+        print("outside", a, b)
+    c: int = a + b
+    while c > 0 and c != 3:
+        c -= 1
+    print(c)
+
+
+short_circuit()
+values()
+chained(7)
+chained(150)
+numbers(2, 2.5)
+numbers(4, 1.0)
+loop(10)
+loop(3)
+branches(-5)
+branches(0)
+branches(70)
+branches(20)
+
+typed(1, 5)
+typed(0, 5)
+typed(4, 12)
+typed(-3, 1)
@@ -0,0 +1,44 @@
+def total(n):
+    s = 0
+    for i in range(n):
+        s = s + 1000
+    return s
+
+
+def signs():
+    return [1000, -1000, 1000.0, -1000.0, 0.0, -0.0, 2.5, -2.5]
+
+
+def point():
+    return (1, 2.5, (300, -300))
+
+
+def points(n):
+    result = []
+    for i in range(n):
+        result.append((1, 2.5, (300, -300)))
+    return result
+
+
+def record():
+    return ("a", None, 3000, (300, "b"))
+
+
+def fields():
+    r = record()
+    pair = r[3]
+    return [r[0], r[2], pair[0], pair[1], len(r)]
+
+
+def small():
+    return [127, 128, -128, -129]
+
+
+print(total(5))
+print(signs())
+print(point())
+print(points(2))
+print(fields())
+print(small())
+if point() == point():
+    print("equal")
@@ -0,0 +1,35 @@
+def total(n):
+    s = 0.0
+    for i in range(n):
+        s = s + 0.1
+    return s
+
+
+def mean(n):
+    s = 0.0
+    for i in range(1, n + 1):
+        s = s + i * 0.5
+    return s / n
+
+
+def mixed(n):
+    a = 0.1
+    b = 0.2
+    c = a + b
+    d = c * n - 0.3
+    return [c, d, -a, a - b, b / a]
+
+
+def poly(x):
+    y = 1.5
+    y = y * x + 0.25
+    y = y * x - 0.125
+    return y
+
+
+print(total(10))
+print(total(3))
+print(mean(7))
+print(mixed(3))
+print(poly(0.1))
+print(poly(3))
@@ -0,0 +1,27 @@
+print(0.1 + 0.2)
+print(0.1 * 3)
+print(1.1 - 0.3)
+print(2.5 * 4)
+print(-0.7 + 0.2)
+print(1 + 0.1)
+if 0.3 == 0.1 + 0.2:
+    print("equal")
+else:
+    print("differ")
+if 0.1 + 0.2 < 0.5:
+    print("less")
+
+x = 0.1
+y = 0.2
+print(x + y)
+print(x * y)
+
+
+def scale(a, b):
+    return a * b + 0.05
+
+
+print(scale(0.1, 3))
+print(scale(2, 0.3))
+
+print([v * 0.1 for v in range(4)])
@@ -0,0 +1,32 @@
+print(1 + 2 * 3)
+print((1 + 2) * 3)
+print(7 // 2)
+print(-7 // 2)
+print(7 % 3)
+print(-7 % 3)
+print(7.0 / 2)
+print(2.0 ** 10)
+print(0.5 ** 2)
+print(2147483647 + 1)
+print(1.5 * 4 - 0.25)
+print("ab" * 3)
+print("a" + "b" + "c")
+print(-(3 - 10))
+print(1 < 2 and 3)
+print(0 or "x")
+if 3 > 2:
+    print("taken")
+else:
+    print("not taken")
+if 0:
+    print("dead")
+while False:
+    print("dead")
+
+
+def apply(a, b):
+    return [a + b * 3, a // b, a % b, a * 1.0 / b, (a * 1.0) ** b, -a // b, -a % b]
+
+
+print(apply(7, 2))
+print([1 + 2 * 3, 7 // 2, 7 % 2, 7.0 / 2, 7.0 ** 2, -7 // 2, -7 % 2])
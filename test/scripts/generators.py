@@ -0,0 +1,83 @@
+# 含有yield的函数编译为可以恢复执行的生成器
+
+
+def count_up(n):
+    i = 0
+    while i < n:
+        yield i
+        i += 1
+
+
+def squares(items):
+    for x in items:
+        if x % 2 == 0:
+            yield x * x
+        else:
+            yield -x
+
+
+def stop_early(n):
+    for i in range(n):
+        if i == 2:
+            return
+        yield i
+    yield "never"
+
+
+def locals_survive(a, b):
+    total = a
+    yield total
+    total = total + b
+    yield total
+    name = "sum"
+    yield name + "!"
+
+
+def fib(limit):
+    a = 0
+    b = 1
+    while a < limit:
+        yield a
+        c = a + b
+        a = b
+        b = c
+
+
+def chained(n):
+    for x in count_up(n):
+        yield x * 10
+
+
+def repeat_last(values):
+    for v in values:
+        yield v
+    yield v * 1.5
+
+
+def consume(gen):
+    out = []
+    for x in gen:
+        out.append(x)
+    return out
+
+
+def interleave():
+    first = count_up(3)
+    second = count_up(3)
+    print(first.__next__(), second.__next__(), first.__next__(), first.__next__(), second.__next__())
+
+
+print(consume(count_up(4)))
+print(consume(squares([1, 2, 3, 4])))
+print(consume(stop_early(5)))
+print(consume(locals_survive(2, 3)))
+print(consume(fib(50)))
+print(consume(chained(3)))
+print(consume(count_up(0)))
+g = count_up(2)
+print(consume(g))
+print(consume(g))
+interleave()
+print([x + 1 for x in count_up(3)])
+print(consume(repeat_last([4, 5])))
+print(consume(repeat_last(range(3))))
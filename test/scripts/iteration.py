@@ -0,0 +1,94 @@
+# for循环对list、tuple、dict、set、str、range的遍历
+
+
+def literals():
+    for x in [1, 2, 3]:
+        print(x)
+    for x in (4, 5):
+        print(x)
+    for c in "ab":
+        print(c)
+    for x in []:
+        print("never")
+    for c in "":
+        print("never")
+
+
+def variables():
+    items = [1, 2, 3]
+    pair = ("a", "b")
+    word = "hey"
+    table = {"x": 1, "y": 2}
+    for x in items:
+        print(x)
+    for x in pair:
+        print(x)
+    for c in word:
+        print(c)
+    for k in table:
+        print(k, table[k])
+
+
+def nested():
+    items = [1, 2, 3]
+    count = 0
+    for a in items:
+        for b in items:
+            count += a * b
+    print(count)
+
+
+def twice():
+    items = [7, 8]
+    for x in items:
+        print(x)
+    for x in items:
+        print(x)
+    r = range(2)
+    for i in r:
+        print(i)
+    for i in r:
+        print(i)
+
+
+def growing():
+    items = [1]
+    for x in items:
+        if x < 4:
+            items.append(x + 1)
+    print(items)
+
+
+def sets():
+    total = 0
+    for x in {n for n in [1, 2, 3]}:
+        total += x
+    print(total)
+
+
+def argument(values):
+    out = []
+    for v in values:
+        out.append(v)
+    return out
+
+
+def last(values):
+    for v in values:
+        pass
+    for c in "xyz":
+        pass
+    return [v, c]
+
+
+literals()
+variables()
+nested()
+twice()
+growing()
+sets()
+print(argument((1, 2)))
+print(argument("xy"))
+print(argument({"k": 0}))
+print(last([1, 2, 3]))
+print(last(range(4)))
@@ -0,0 +1,90 @@
+# break与模块顶层循环中的赋值
+
+
+def first_over(values, limit):
+    found = -1
+    for v in values:
+        if v > limit:
+            found = v
+            break
+    return found
+
+
+def countdown(n):
+    while True:
+        if n == 0:
+            break
+        n -= 1
+    return n
+
+
+def nested():
+    for i in range(3):
+        for j in range(10):
+            if j == 2:
+                break
+            print(i, j)
+
+
+def upto(limit):
+    n = 0
+    while True:
+        if n >= limit:
+            break
+        yield n
+        n += 1
+
+
+def pick():
+    for s in "abcdef":
+        if s == "d":
+            break
+        print(s)
+    for v in [4, 5, 6]:
+        if v == 5:
+            break
+    return v
+
+
+print(first_over([1, 5, 9, 12], 6))
+print(first_over([1, 2], 6))
+print(countdown(5))
+nested()
+for v in upto(4):
+    print(v)
+print(pick())
+
+n = 10
+steps = 0
+while n:
+    if n % 3 == 0:
+        hit = n
+    n -= 1
+    steps = steps + 1
+    if steps == 6:
+        break
+print(n, steps, hit)
+
+
+def read_hit():
+    return hit * 2
+
+
+print(read_hit())
+total = 0
+for x in range(5):
+    total = total + x
+print(total, x)
+for k in range(100):
+    if k * k > 20:
+        break
+print(k)
+i = 0
+while i < 3:
+    j = 0
+    while True:
+        j += 1
+        if j > i:
+            break
+    print(i, j)
+    i += 1
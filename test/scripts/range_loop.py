@@ -0,0 +1,77 @@
+# for i in range(...) 编译为计数循环
+
+
+def forms():
+    for i in range(3):
+        print(i)
+    for i in range(2, 5):
+        print(i)
+    for i in range(10, 0, -3):
+        print(i)
+    for i in range(-2, -8, -2):
+        print(i)
+    for i in range(0):
+        print("never")
+    for i in range(5, 2):
+        print("never")
+
+
+def total(n):
+    s = 0
+    for i in range(n):
+        s += i
+    return s
+
+
+def escape(n):
+    items = []
+    for i in range(n):
+        items.append(i * i)
+    return items
+
+
+def bounds_once():
+    n = 3
+    count = 0
+    for i in range(n):
+        n = n + 1
+        count += 1
+    print(count, n)
+
+
+def step_arg(step):
+    items = []
+    for i in range(1, 10, step):
+        items.append(i)
+    return items
+
+
+def last_value():
+    for i in range(4):
+        pass
+    return i
+
+
+def nested(n):
+    pairs = 0
+    for i in range(n):
+        for j in range(i, n):
+            pairs += 1
+    return pairs
+
+
+def mixed(n):
+    t = 0.0
+    for i in range(n):
+        t = t + i * 0.5
+    return t
+
+
+forms()
+print(total(100000))
+print(escape(5))
+bounds_once()
+print(step_arg(4))
+print(last_value())
+print(nested(10))
+print(mixed(4))
@@ -0,0 +1,59 @@
+def check(label, value):
+    if value:
+        print(label, "yes")
+    else:
+        print(label, "no")
+
+
+r = range(3, 20, 4)
+print(r)
+print(len(r))
+print(len(range(10)), len(range(5, 2)), len(range(10, 0, -3)), len(range(-5, 5, 2)))
+print(r[0], r[1], r[-1], r[-2], r[-5])
+
+check("7 in r", 7 in r)
+check("8 in r", 8 in r)
+check("19 in r", 19 in r)
+check("23 in r", 23 in r)
+check("-1 in r", -1 in r)
+check("3.0 in r", 3.0 in r)
+check("3.5 in r", 3.5 in r)
+check("'a' in r", "a" in r)
+check("7 not in r", 7 not in r)
+check("4 in range(10, 0, -3)", 4 in range(10, 0, -3))
+check("5 in range(10, 0, -3)", 5 in range(10, 0, -3))
+
+print(r[1:])
+print(r[:2])
+print(r[1:-1])
+print(r[::2])
+print(r[::-1])
+print(r[-2::-2])
+print(r[10:])
+print(r[:-10])
+print([x for x in r[1::2]])
+print(len(r[::-1]))
+
+big = range(10000000000)
+print(big)
+print(len(range(0, 10000000000, 1000)))
+print(big[-1])
+print(big[9999999999])
+print(big[5000000000:5000000003])
+check("9999999999 in big", 9999999999 in big)
+check("10000000000 in big", 10000000000 in big)
+wide = range(-3000000000, 3000000000, 1000000000)
+print(wide[2])
+print(2147483648 + 1, -2147483649 - 1, 9223372036854775807)
+
+
+def window(n, lo, hi):
+    total = 0
+    r = range(n)
+    for i in r[lo:hi]:
+        total = total + i
+    return total
+
+
+print(window(100, 10, 20))
+print(window(100, -5, 1000))
@@ -0,0 +1,98 @@
+# if、while的条件按 Python 的规则判断真假
+
+
+class Falsy:
+    def __bool__(self):
+        return False
+
+
+class Empty:
+    def __len__(self):
+        return 0
+
+
+class Full:
+    def __len__(self):
+        return 2
+
+
+class Plain:
+    def name(self):
+        return "plain"
+
+
+def check(label, value):
+    if value:
+        print(label, "true")
+    else:
+        print(label, "false")
+
+
+def negated(label, value):
+    if not value:
+        print(label, "empty")
+
+
+def count_down(n):
+    steps = 0
+    while n:
+        n -= 1
+        steps += 1
+    return steps
+
+
+def halve(x):
+    steps = 0
+    while x:
+        x -= 0.5
+        steps += 1
+    return steps
+
+
+def until(n):
+    steps = 0
+    while not n == 0:
+        n -= 1
+        steps += 1
+    while not steps:
+        steps += 1
+    return steps
+
+
+def mixed(values):
+    count = 0
+    for value in values:
+        if value:
+            count += 1
+    return count
+
+
+check("None", None)
+check("zero", 0)
+check("one", 1)
+check("negative", -3)
+check("float zero", 0.0)
+check("float", 0.5)
+check("empty str", "")
+check("str", "a")
+check("empty list", [])
+check("list", [0])
+check("empty tuple", ())
+check("tuple", (0,))
+check("empty dict", {})
+check("dict", {"k": 0})
+check("empty range", range(0))
+check("range", range(2))
+check("False", False)
+check("True", True)
+check("Falsy", Falsy())
+check("Empty", Empty())
+check("Full", Full())
+check("Plain", Plain())
+negated("list", [])
+negated("str", "x")
+print(count_down(5))
+print(halve(2.0))
+print(until(3))
+print(mixed([0, 1, "", "a", [], [1], None, 0.0, 2.5, (), (1,), {}, Falsy(), Full(), Plain()]))
+print(mixed([0, 1, "", "a", [], [1], None, 0.0, 2.5, (), (1,), {}, Empty(), Full()]))
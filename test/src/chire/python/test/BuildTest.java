@@ -0,0 +1,732 @@
+package chire.python.test;
+
+import chire.python.PyClient;
+import chire.python.PyCompiler;
+import chire.python.PyDaemon;
+import chire.python.PyInterpreter;
+import chire.python.PyLauncher;
+import chire.python.cache.BytecodeCache;
+import chire.python.jar.JarExporter;
+import chire.python.lib.PyConfig;
+import chire.python.lib.func.Prov;
+import chire.python.optimize.SymbolTable;
+import chire.python.util.SourceScanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * 编译器自身行为的检查：解析、并行编译、扫描、缓存、增量构建与输出。
+ * 以scripts中的py文件作为编译的输入，每项检查使用单独的临时目录，有失败的检查时以状态1退出。
+ */
+public class BuildTest {
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Check> checks = new ArrayList<>();
+
+    private static Path scripts;
+
+    static {
+        add("two-stage parse gives the same bytecode as LL", BuildTest::twoStageParse);
+        add("parser reused after a syntax error", BuildTest::parserReuse);
+        add("parallel build gives the same classes as one thread", BuildTest::parallelBuild);
+        add("scanner derives module names and applies include/exclude", BuildTest::scanner);
+        add("folded constants print the same as the unfolded build", BuildTest::constantFolding);
+        add("calls into other modules bind statically", BuildTest::staticBinding);
+        add("module attributes use fields or the field site", BuildTest::moduleFields);
+        add("equal literals share one hoisted constant", BuildTest::constantHoisting);
+        add("bytecode cache hits and invalidates", BuildTest::bytecodeCache);
+        add("incremental build recompiles changed modules and their importers", BuildTest::incrementalBuild);
+        add("jar output is byte-identical across builds", BuildTest::reproducibleJar);
+        add("failed build leaves the existing jar untouched", BuildTest::failedBuild);
+        add("interpreter compiles eagerly unless --lazy is given", BuildTest::lazyLoading);
+        add("daemon runs, compiles and stops on client requests", BuildTest::daemon);
+        add("launcher dumps and uses a CDS archive", BuildTest::launcher);
+    }
+
+    /**
+     * @param args [scripts directory]
+     */
+    public static void main(String[] args) throws IOException {
+        scripts = Path.of(args.length > 0 ? args[0] : "test/scripts");
+
+        int failed = 0;
+        for (int i = 0; i < checks.size(); i++) {
+            Path dir = Files.createTempDirectory("build-test");
+
+            try {
+                checks.get(i).run(dir);
+                System.out.println("PASS " + names.get(i));
+            } catch (Exception | Error e) {
+                failed++;
+                System.out.println("FAIL " + names.get(i));
+                System.out.println("    " + e);
+            } finally {
+                delete(dir);
+            }
+        }
+
+        System.out.println(checks.size() - failed + "/" + checks.size() + " passed");
+        if (failed > 0) System.exit(1);
+    }
+
+    private static void add(String name, Check check) {
+        names.add(name);
+        checks.add(check);
+    }
+
+    private static void twoStageParse(Path dir) throws IOException {
+        boolean twoStage = PyCompiler.twoStageParse;
+
+        try {
+            for (String module : modules()) {
+                String code = source(module);
+
+                PyCompiler.twoStageParse = true;
+                Map<String, byte[]> sll = PyCompiler.compile(module, code);
+                PyCompiler.twoStageParse = false;
+                Map<String, byte[]> ll = PyCompiler.compile(module, code);
+
+                expectSame(ll, sll, module);
+            }
+        } finally {
+            PyCompiler.twoStageParse = twoStage;
+        }
+    }
+
+    /**解析失败后回退到LL并恢复错误，同一线程之后解析的文件不能受到影响*/
+    private static void parserReuse(Path dir) throws IOException {
+        String module = modules().get(0);
+        Map<String, byte[]> before = PyCompiler.compile(module, source(module));
+
+        try {
+            PyCompiler.parse("def broken(:\n    pass\n");
+        } catch (RuntimeException ignored) {
+        }
+
+        expectSame(before, PyCompiler.compile(module, source(module)), module);
+    }
+
+    private static void parallelBuild(Path dir) throws IOException {
+        int threads = PyCompiler.threads;
+
+        try {
+            for (Path input : Arrays.asList(scripts, project(dir))) {
+                PyCompiler.threads = 1;
+                Map<String, byte[]> serial = PyCompiler.compileDir(input.toFile());
+                PyCompiler.threads = 4;
+                Map<String, byte[]> parallel = PyCompiler.compileDir(input.toFile());
+
+                expect(!serial.isEmpty(), "no classes from " + input);
+                expectSame(serial, parallel, input.toString());
+            }
+        } finally {
+            PyCompiler.threads = threads;
+        }
+    }
+
+    private static void scanner(Path dir) throws IOException {
+        Path src = project(dir);
+        write(src.resolve("p/notes.txt"), "not python\n");
+        write(src.resolve("p/tests/check.py"), "print(1)\n");
+
+        expect(scanned(new SourceScanner(src)).equals(Arrays.asList("p.main", "p.q.util", "p.tests.check")), "scan: " + scanned(new SourceScanner(src)));
+        expect(scanned(new SourceScanner(src).exclude("p/tests")).equals(Arrays.asList("p.main", "p.q.util")), "exclude directory");
+        expect(scanned(new SourceScanner(src).include("p/q/**")).equals(Collections.singletonList("p.q.util")), "include glob");
+
+        SourceScanner excluding = new SourceScanner(src).exclude("p/tests");
+        expect(excluding.source("p.q.util") != null && excluding.source("p.q.util").path.equals(src.resolve("p/q/util.py")), "source lookup");
+        expect(excluding.source("p.tests.check") == null, "lookup of an excluded module");
+        expect(excluding.source("p.missing") == null && excluding.source("p.notes") == null, "lookup of a missing module");
+    }
+
+    /**折叠在编译期执行的运算与运行时的结果一致：关闭优化编译同一脚本，输出不变*/
+    private static void constantFolding(Path dir) throws Exception {
+        boolean optimize = PyCompiler.optimize;
+        String module = "folding";
+
+        try {
+            PyCompiler.optimize = true;
+            Map<String, byte[]> folded = PyCompiler.compile(module, source(module));
+            PyCompiler.optimize = false;
+            Map<String, byte[]> plain = PyCompiler.compile(module, source(module));
+
+            expect(!Arrays.equals(folded.get(module), plain.get(module)), "nothing folded in " + module);
+
+            JarExporter.saveTo(folded, dir.resolve("folded.jar").toFile());
+            JarExporter.saveTo(plain, dir.resolve("plain.jar").toFile());
+
+            String expected = run(dir.resolve("plain.jar"), module);
+            String actual = run(dir.resolve("folded.jar"), module);
+            expect(expected.equals(actual), "output differs after folding:\n" + expected + "---\n" + actual);
+        } finally {
+            PyCompiler.optimize = optimize;
+        }
+    }
+
+    /**同时查询同一模块的线程得到同一份定义；p.main中对p.q.util的调用与读取编译为invokestatic与getstatic*/
+    private static void staticBinding(Path dir) throws Exception {
+        Path src = project(dir);
+        Map<String, Path> sources = new TreeMap<>();
+        sources.put("p.main", src.resolve("p/main.py"));
+        sources.put("p.q.util", src.resolve("p/q/util.py"));
+
+        SymbolTable table = new SymbolTable(sources);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> queries = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                queries.add(executor.submit(() -> table.arity("p.q.util", "twice") == 1 && table.hasField("p.q.util", "count")));
+            }
+
+            for (Future<Boolean> query : queries) {
+                expect(query.get(), "concurrent queries see the definitions of p.q.util");
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        expect(!table.take("p.q.util").statements.isEmpty(), "syntax tree kept for the compile task");
+        try {
+            table.take("p.q.util");
+            throw new AssertionError("syntax tree taken twice");
+        } catch (RuntimeException expected) {
+        }
+
+        Map<String, byte[]> classes = PyCompiler.compileDir(src.toFile());
+        List<String> references = references(classes.get("p/main"), "p/q/util");
+        expect(references.contains("invokestatic twice") && references.contains("getstatic count"), "references to p.q.util: " + references);
+
+        JarExporter.saveTo(classes, dir.resolve("out.jar").toFile());
+        expect(run(dir.resolve("out.jar"), "p.main").equals("42\n3\n"), "output of p.main");
+    }
+
+    /**已知模块的属性直接读写静态变量，参数上的属性经过JPFieldSite，同一调用点上可以是不同的模块*/
+    private static void moduleFields(Path dir) throws Exception {
+        Path src = project(dir);
+        write(src.resolve("p/q/other.py"), "count = \"many\"\n");
+        write(src.resolve("p/main.py"), "import p.q.util as u\nimport p.q.other as o\n\n\ndef count_of(m):\n    return m.count\n\n\n"
+                + "u.count = u.count + 4\nprint(u.count)\nprint(count_of(u))\nprint(count_of(o))\no.count = \"lots\"\nprint(count_of(o))\nprint(count_of(u))\n");
+
+        Map<String, byte[]> classes = PyCompiler.compileDir(src.toFile());
+        List<String> references = references(classes.get("p/main"), "p/q/util");
+        expect(references.contains("getstatic count") && references.contains("putstatic count"), "references to p.q.util: " + references);
+
+        JarExporter.saveTo(classes, dir.resolve("out.jar").toFile());
+        String output = run(dir.resolve("out.jar"), "p.main");
+        expect(output.equals("7\n7\nmany\nlots\n7\n"), "output of p.main: " + output);
+    }
+
+    /**scripts/constants.py中需要提升的字面量各占一个字段，关闭优化时不生成常量类*/
+    private static void constantHoisting(Path dir) throws Exception {
+        boolean optimize = PyCompiler.optimize;
+        String module = "constants";
+
+        try {
+            PyCompiler.optimize = true;
+            Map<String, byte[]> classes = PyCompiler.compile(module, source(module));
+
+            // ±1000、±1000.0、±0.0、±2.5、128、-129与两个元组，point与points中相同的元组只有一个字段
+            List<String> fields = new ArrayList<>();
+            new ClassReader(classes.get(module + "$$Const")).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                    fields.add(name);
+                    return null;
+                }
+            }, 0);
+            expect(fields.size() == 12, "constant fields: " + fields);
+
+            List<String> references = references(classes.get(module), module + "$$Const");
+            expect(new HashSet<>(references).size() == fields.size(), "every constant is read: " + references);
+
+            PyCompiler.optimize = false;
+            expect(!PyCompiler.compile(module, source(module)).containsKey(module + "$$Const"), "constant class without optimization");
+        } finally {
+            PyCompiler.optimize = optimize;
+        }
+    }
+
+    /**@return 类中对owner的方法调用与字段读写，例如 "invokestatic twice"*/
+    private static List<String> references(byte[] bytecode, String owner) {
+        List<String> references = new ArrayList<>();
+
+        new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String insnOwner, String insnName, String insnDescriptor, boolean isInterface) {
+                        if (insnOwner.equals(owner)) references.add((opcode == Opcodes.INVOKESTATIC ? "invokestatic " : "invoke ") + insnName);
+                    }
+
+                    @Override
+                    public void visitFieldInsn(int opcode, String insnOwner, String insnName, String insnDescriptor) {
+                        if (insnOwner.equals(owner)) references.add((opcode == Opcodes.GETSTATIC ? "getstatic " : "putstatic ") + insnName);
+                    }
+                };
+            }
+        }, 0);
+
+        return references;
+    }
+
+    /**命中时返回缓存中的内容而不重新编译，源码或编译选项改变、缓存文件损坏时重新编译*/
+    private static void bytecodeCache(Path dir) throws IOException {
+        BytecodeCache cache = PyCompiler.cache;
+        boolean optimize = PyCompiler.optimize;
+
+        try {
+            PyCompiler.cache = new BytecodeCache(dir.resolve("cache"));
+
+            String module = modules().get(0);
+            String code = source(module);
+            Map<String, byte[]> compiled = PyCompiler.compile(module, code);
+
+            List<Path> entries = cacheEntries(dir);
+            expect(entries.size() == 1, "one cache entry after the first compile: " + entries);
+
+            // 以标记替换缓存的内容，再次编译得到标记说明没有重新编译
+            String key = entries.get(0).getFileName().toString().replace(".jpc", "");
+            Map<String, byte[]> marker = Collections.singletonMap("marker", new byte[]{1, 2, 3});
+            PyCompiler.cache.put(key, marker);
+            expectSame(marker, PyCompiler.compile(module, code), "cache hit");
+
+            expectSame(compiled, PyCompiler.compile(module, code + "\n"), "changed source");
+            PyCompiler.optimize = !optimize;
+            expect(!PyCompiler.compile(module, code).containsKey("marker"), "changed options");
+            expect(cacheEntries(dir).size() == 3, "one entry per source and option: " + cacheEntries(dir));
+
+            Files.write(entries.get(0), new byte[]{0, 1});
+            PyCompiler.optimize = optimize;
+            expectSame(compiled, PyCompiler.compile(module, code), "corrupt entry");
+        } finally {
+            PyCompiler.cache = cache;
+            PyCompiler.optimize = optimize;
+        }
+    }
+
+    private static List<Path> cacheEntries(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("cache"))) {
+            return files.filter(file -> file.toString().endsWith(".jpc")).sorted().collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    private static void incrementalBuild(Path dir) throws Exception {
+        Path src = project(dir);
+        write(src.resolve("p/other.py"), "print(0)\n");
+        Path out = dir.resolve("out");
+
+        PyCompiler.compileIncremental(new SourceScanner(src), out.toFile());
+        expect(Files.isRegularFile(dir.resolve("out.index")), "index saved");
+        expect(run(out, "p.main").equals("42\n3\n"), "first build");
+
+        Map<String, FileTime> built = classTimes(out);
+        Thread.sleep(10);
+
+        // 只修改时间，内容不变
+        Files.setLastModifiedTime(src.resolve("p/q/util.py"), FileTime.fromMillis(System.currentTimeMillis()));
+        PyCompiler.compileIncremental(new SourceScanner(src), out.toFile());
+        expect(classTimes(out).equals(built), "touched without changes");
+
+        write(src.resolve("p/q/util.py"), "def twice(x):\n    return x * 3\n\ncount = 4\n");
+        Files.delete(src.resolve("p/other.py"));
+        PyCompiler.compileIncremental(new SourceScanner(src), out.toFile());
+
+        Map<String, FileTime> rebuilt = classTimes(out);
+        expect(!rebuilt.get("p/q/util.class").equals(built.get("p/q/util.class")), "changed module rebuilt");
+        expect(!rebuilt.get("p/main.class").equals(built.get("p/main.class")), "importer rebuilt");
+        expect(!rebuilt.containsKey("p/other.class"), "removed module deleted");
+        expect(run(out, "p.main").equals("63\n4\n"), "output after the rebuild: " + run(out, "p.main"));
+    }
+
+    private static void reproducibleJar(Path dir) throws Exception {
+        int method = JarExporter.method;
+
+        try {
+            for (int mode : new int[]{ZipEntry.DEFLATED, ZipEntry.STORED}) {
+                JarExporter.method = mode;
+
+                Path first = dir.resolve(mode + "-first.jar");
+                Path second = dir.resolve(mode + "-second.jar");
+                PyCompiler.compileFiles(scripts.toFile(), first.toFile());
+                PyCompiler.compileFiles(scripts.toFile(), second.toFile());
+
+                expect(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(second)), "jars differ, method " + mode);
+                expectSame(PyCompiler.compileDir(scripts.toFile()), entries(first), "jar entries, method " + mode);
+            }
+        } finally {
+            JarExporter.method = method;
+        }
+    }
+
+    private static void failedBuild(Path dir) throws Exception {
+        Path src = project(dir);
+        Path jar = dir.resolve("out/app.jar");
+
+        PyCompiler.compileFiles(src.toFile(), jar.toFile());
+        byte[] built = Files.readAllBytes(jar);
+
+        // 部分写出的jar一定与原来的不同：要么缺少模块，要么包含修改后的util
+        write(src.resolve("p/q/util.py"), "def twice(x):\n    return x * 3\n\ncount = 4\n");
+        write(src.resolve("p/broken.py"), "x = \n");
+        for (boolean incremental : new boolean[]{false, true}) {
+            try {
+                if (incremental) {
+                    PyCompiler.compileIncremental(new SourceScanner(src), jar.toFile());
+                } else {
+                    PyCompiler.compileFiles(src.toFile(), jar.toFile());
+                }
+                throw new AssertionError("build of a broken module succeeded");
+            } catch (RuntimeException expected) {
+            }
+
+            expect(Arrays.equals(built, Files.readAllBytes(jar)), "jar overwritten by a failed build, incremental: " + incremental);
+        }
+        try (Stream<Path> files = Files.list(jar.getParent())) {
+            expect(files.count() == 1, "temporary file left next to the jar");
+        }
+        expect(run(jar, "p.main").equals("42\n3\n"), "jar still runs");
+    }
+
+    /**默认在启动时编译全部模块并报告其中的错误；--lazy只编译被使用的模块*/
+    private static void lazyLoading(Path dir) throws Exception {
+        Path src = project(dir);
+        write(src.resolve("p/broken.py"), "x = \n");
+        // 单独编译的模块只能通过模块调用其他模块的函数
+        write(src.resolve("p/main.py"), "import p.q.util as u\n\nprint(u.twice(21))\nprint(u.count)\n");
+
+        try {
+            PyInterpreter.execute(dir, new String[]{"src", "p.main"});
+            throw new AssertionError("error in an unused module not reported");
+        } catch (RuntimeException expected) {
+        }
+
+        String output = capture(() -> PyInterpreter.execute(dir, new String[]{"src", "p.main", "--lazy"}));
+        expect(output.equals("42\n3\n"), "lazy run: " + output);
+    }
+
+    private static void daemon(Path dir) throws Exception {
+        Path src = project(dir);
+        Path socket = dir.resolve("daemon.sock");
+
+        try {
+            PyClient.forward(socket, new String[]{"stop"}, System.out, System.err);
+            throw new AssertionError("connected without a daemon");
+        } catch (ConnectException expected) {
+        }
+
+        Thread server = new Thread(() -> {
+            try {
+                new PyDaemon(socket).serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+            // socket文件在开始监听前就已出现，以空请求等待常驻进程开始接收请求
+            for (int i = 0; ; i++) {
+                try {
+                    request(socket, out, err);
+                    break;
+                } catch (ConnectException e) {
+                    if (i >= 500) throw e;
+                    Thread.sleep(10);
+                }
+            }
+            out.reset();
+            err.reset();
+
+            expect(request(socket, out, err, "run", src.toString(), "p.main") == 0, "run: " + err);
+            expect(out.toString(StandardCharsets.UTF_8).equals("42\n3\n"), "run output: " + out);
+
+            // 每次运行前丢弃已加载的模块，修改后的源码会被重新编译
+            write(src.resolve("p/q/util.py"), "def twice(x):\n    return x * 3\n\ncount = 4\n");
+            out.reset();
+            expect(request(socket, out, err, "run", src.toString(), "p.main") == 0, "second run: " + err);
+            expect(out.toString(StandardCharsets.UTF_8).equals("63\n4\n"), "second run output: " + out);
+
+            expect(request(socket, out, err, "compile", src.toString(), dir.resolve("out").toString()) == 0, "compile: " + err);
+            expect(Files.isRegularFile(dir.resolve("out/p/main.class")), "compiled classes");
+
+            err.reset();
+            expect(request(socket, out, err, "run", dir.resolve("missing").toString()) == 1, "failed request exit code");
+            expect(err.size() > 0, "failed request reports an error");
+
+            expect(request(socket, out, err, "stop") == 0, "stop");
+            server.join(5000);
+            expect(!server.isAlive() && !Files.exists(socket), "daemon stopped and removed its socket");
+        } finally {
+            if (server.isAlive()) request(socket, new ByteArrayOutputStream(), new ByteArrayOutputStream(), "stop");
+        }
+    }
+
+    private static int request(Path socket, ByteArrayOutputStream out, ByteArrayOutputStream err, String... args) throws IOException {
+        return PyClient.forward(socket, args, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    private static void launcher(Path dir) throws Exception {
+        Path jar = dir.resolve("app.jar");
+        Path archive = dir.resolve("app.jsa");
+        PyCompiler.compileFiles(project(dir).toFile(), jar.toFile());
+
+        String classPath = jarClassPath(dir) + File.pathSeparator + jar;
+
+        expect(launch(dir, classPath, "--dump-cds", archive.toString(), "p.main").equals("42\n3\n"), "training run output");
+        expect(Files.isRegularFile(archive), "archive written");
+        expect(launch(dir, classPath, "--cds", archive.toString(), "p.main").equals("42\n3\n"), "run with the archive");
+        expect(launchLog(dir).contains("p.main source: shared objects file"), "module class mapped from the archive");
+        expect(launch(dir, classPath, "p.main").equals("42\n3\n"), "run without an archive");
+
+        try {
+            launch(dir, classPath, "--cds", dir.resolve("missing.jsa").toString(), "p.main");
+            throw new AssertionError("missing archive accepted");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * 在新的JVM中运行{@link PyLauncher}
+     * @return 标准输出
+     * @throws IllegalStateException 退出码不为0
+     */
+    private static String launch(Path dir, String classPath, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", classPath,
+                PyLauncher.class.getName()
+        ));
+        command.addAll(Arrays.asList(args));
+
+        // 记录最后一次运行中类的来源，由launcher启动的JVM同样会读取JAVA_TOOL_OPTIONS
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(dir.resolve("launch.err").toFile());
+        Path logs = Files.createDirectories(dir.resolve("logs"));
+        try (Stream<Path> files = Files.list(logs)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        builder.environment().put("JAVA_TOOL_OPTIONS", "-Xlog:class+load=info:file=" + logs.resolve("load-%p.log") + "::filecount=0");
+
+        Process process = builder.start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        if (process.waitFor() != 0) throw new IllegalStateException("exit " + process.exitValue() + ": " + Files.readString(dir.resolve("launch.err")));
+        return output;
+    }
+
+    /**@return 最后一次{@link #launch}中各个JVM的类加载日志*/
+    private static String launchLog(Path dir) throws IOException {
+        StringBuilder log = new StringBuilder();
+
+        try (Stream<Path> files = Files.list(dir.resolve("logs"))) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                log.append(Files.readString(file));
+            }
+        }
+
+        return log.toString();
+    }
+
+    /**
+     * CDS归档只接受classpath中的jar，当前classpath中的目录(例如构建输出的classes)打包为dir中的jar
+     * @return 只包含jar的classpath
+     */
+    private static String jarClassPath(Path dir) throws IOException {
+        List<String> entries = new ArrayList<>();
+
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path path = Path.of(entry);
+
+            if (Files.isDirectory(path)) {
+                Path jar = dir.resolve("classpath-" + entries.size() + ".jar");
+                pack(path, jar);
+                entries.add(jar.toString());
+            } else if (Files.isRegularFile(path)) {
+                entries.add(entry);
+            }
+        }
+
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void pack(Path directory, Path jar) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar));
+             Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                out.putNextEntry(new ZipEntry(directory.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static Map<String, byte[]> entries(Path jar) throws IOException {
+        Map<String, byte[]> clazzes = new TreeMap<>();
+
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    clazzes.put(entry.getName().replace(".class", "").replace('/', '.'), in.readAllBytes());
+                }
+            }
+        }
+
+        return clazzes;
+    }
+
+    /**@return 输出目录中的类 -> 修改时间*/
+    private static Map<String, FileTime> classTimes(Path out) throws IOException {
+        Map<String, FileTime> times = new TreeMap<>();
+
+        try (Stream<Path> files = Files.walk(out)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                times.put(out.relativize(file).toString().replace(File.separatorChar, '/'), Files.getLastModifiedTime(file));
+            }
+        }
+
+        return times;
+    }
+
+    /**
+     * 在新的类加载器中加载输出目录或jar中的模块，模块的代码在类初始化时执行
+     * @return 执行期间的输出
+     */
+    static String run(Path output, String module) throws Exception {
+        Prov<ClassLoader> loading = PyConfig.loader;
+
+        // import在运行时通过PyConfig.loader查找其他模块
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{output.toUri().toURL()}, BuildTest.class.getClassLoader())) {
+            PyConfig.loader = () -> loader;
+            return capture(() -> Class.forName(module, true, loader));
+        } finally {
+            PyConfig.loader = loading;
+        }
+    }
+
+    /**@return action执行期间的输出*/
+    static String capture(Action action) throws Exception {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        try {
+            System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+            action.run();
+        } finally {
+            System.setOut(out);
+        }
+
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> scanned(SourceScanner scanner) throws IOException {
+        List<String> modules = new ArrayList<>();
+        for (SourceScanner.Source source : scanner.scan()) {
+            modules.add(source.module);
+        }
+
+        Collections.sort(modules);
+        return modules;
+    }
+
+    /**
+     * 在dir/src中写入两个模块，p.main import了p.q.util中的函数与变量
+     * @return 源码目录
+     */
+    static Path project(Path dir) throws IOException {
+        Path src = dir.resolve("src");
+
+        write(src.resolve("p/q/util.py"), "def twice(x):\n    return x * 2\n\ncount = 3\n");
+        write(src.resolve("p/main.py"), "from p.q.util import twice\nimport p.q.util as u\n\nprint(twice(21))\nprint(u.count)\n");
+
+        return src;
+    }
+
+    static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    /**@return scripts中全部的模块名，按名称排序*/
+    static List<String> modules() throws IOException {
+        try (Stream<Path> files = Files.list(scripts)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".py"))
+                    .map(name -> name.substring(0, name.length() - 3))
+                    .sorted()
+                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    static String source(String module) throws IOException {
+        return Files.readString(scripts.resolve(module + ".py"));
+    }
+
+    static void expect(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    /**两次编译生成的类相同，字节码逐字节一致*/
+    static void expectSame(Map<String, byte[]> expected, Map<String, byte[]> actual, String what) {
+        expect(expected.keySet().equals(actual.keySet()), what + ": classes " + new TreeMap<>(expected).keySet() + " != " + new TreeMap<>(actual).keySet());
+
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            expect(Arrays.equals(entry.getValue(), actual.get(entry.getKey())), what + ": bytecode of " + entry.getKey() + " differs");
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Check {
+        void run(Path dir) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+}
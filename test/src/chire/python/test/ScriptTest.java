@@ -0,0 +1,83 @@
+package chire.python.test;
+
+import chire.python.PyInterpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 编译并执行目录中的py文件，将输出与同名的.out文件比较，.out为CPython执行同一文件的输出。
+ * 有不一致的文件时以状态1退出。
+ */
+public class ScriptTest {
+    /**
+     * @param args [directory] [module]...，不指定模块时执行目录中全部的py文件
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "test/scripts");
+
+        List<String> modules = new ArrayList<>(Arrays.asList(args).subList(Math.min(1, args.length), args.length));
+        if (modules.isEmpty()) {
+            try (Stream<Path> files = Files.list(directory)) {
+                modules = files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(".py"))
+                        .map(name -> name.substring(0, name.length() - 3))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        PyInterpreter interpreter = new PyInterpreter();
+        interpreter.loadLazily(directory.toFile());
+
+        int failed = 0;
+        for (String module : modules) {
+            String expected = Files.readString(directory.resolve(module + ".out")).replace("\r\n", "\n");
+            String actual = run(interpreter, module).replace("\r\n", "\n");
+
+            if (expected.equals(actual)) {
+                System.out.println("PASS " + module);
+            } else {
+                failed++;
+                System.out.println("FAIL " + module);
+                System.out.println("--- expected");
+                System.out.print(expected);
+                System.out.println("--- actual");
+                System.out.print(actual);
+            }
+        }
+
+        System.out.println(modules.size() - failed + "/" + modules.size() + " passed");
+        if (failed > 0) System.exit(1);
+    }
+
+    /**
+     * 模块的代码在类初始化时执行
+     * @return 执行期间的输出，出现异常时在最后追加异常
+     */
+    private static String run(PyInterpreter interpreter, String module) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        try {
+            interpreter.execClass(module);
+        } catch (RuntimeException | Error e) {
+            Throwable cause = e instanceof ExceptionInInitializerError && e.getCause() != null ? e.getCause() : e;
+            System.out.println(cause);
+        } finally {
+            System.setOut(out);
+        }
+
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}